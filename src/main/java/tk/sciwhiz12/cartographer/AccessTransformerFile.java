@@ -0,0 +1,430 @@
+package tk.sciwhiz12.cartographer;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimaps;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.util.AccessTransformers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A normalized access transformer file for one mapping version, with the problems found while building it.
+ *
+ * <p>Files are built either by checking the lines of an existing file, or from queries naming the entries to make
+ * accessible. Lines are resolved against the SRG database in parallel, and then collected in order into one
+ * transformer per class or member, sorted by class and member, with the MCP names of numbered fields and methods as
+ * their comments. Lines naming entries which moved to another class, were renamed or changed their signature are
+ * fixed, and lines naming entries which no longer exist are left out; both are reported as issues.</p>
+ *
+ * @param transformers the transformers, sorted by class and member
+ * @param issues       the problems, in the order of the lines
+ */
+public record AccessTransformerFile(List<Transformer> transformers, List<Issue> issues) {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // From narrowest to widest
+    private static final List<String> ACCESS_LEVELS = List.of("private", "default", "protected", "public");
+
+    public enum Problem {
+        INVALID, DUPLICATE, MISSING_CLASS, MISSING_MEMBER, MOVED, RENAMED, SIGNATURE_CHANGED, NO_MATCH
+    }
+
+    /**
+     * A problem with a line.
+     *
+     * @param fix the line which replaces it, or null if it was left out
+     */
+    public record Issue(int line, Problem problem, String text, @Nullable String fix) {
+        public String write() {
+            return line + "\t" + problem + '\t' + text + '\t' + Objects.requireNonNullElse(fix, "-");
+        }
+    }
+
+    /**
+     * A single access transformer.
+     *
+     * @param access    the access level, with {@code +f} or {@code -f} to add or remove the final modifier
+     * @param className the dotted class name
+     * @param member    the member, which is empty for the class itself, {@code *} or {@code *()} for every field or
+     *                  method, the name for fields, or the name and signature for methods
+     * @param comment   the comment, usually the MCP name of the member
+     */
+    public record Transformer(String access, String className, String member, @Nullable String comment) {
+        // Classes sort before their members (and before their inner classes), and wildcards before named members
+        String target() {
+            return className + ' ' + member;
+        }
+
+        public String write() {
+            return AccessTransformers.write(access, className, member, comment);
+        }
+
+        /**
+         * Combines two transformers of the same target into the one which gives the widest access.
+         */
+        Transformer merge(Transformer other) {
+            final String level = ACCESS_LEVELS.indexOf(level(other.access)) > ACCESS_LEVELS.indexOf(level(access))
+                ? level(other.access)
+                : level(access);
+            final String finality = access.endsWith("-f") || other.access.endsWith("-f") ? "-f"
+                : access.endsWith("+f") || other.access.endsWith("+f") ? "+f" : "";
+            return new Transformer(level + finality, className, member, comment != null ? comment : other.comment);
+        }
+
+        private static String level(String access) {
+            return access.endsWith("-f") || access.endsWith("+f") ? access.substring(0, access.length() - 2) : access;
+        }
+    }
+
+    private record Resolved(int line, String text, List<Transformer> transformers, @Nullable Issue issue) {}
+
+    /**
+     * Checks the lines of an access transformer file. Comments and blank lines are left out, as every transformer is
+     * written with the MCP name of its member instead.
+     */
+    public static AccessTransformerFile check(SRGDatabase srg, MCPDatabase mcp, List<String> lines) {
+        final Resolver resolver = new Resolver(srg, mcp);
+        return collect(IntStream.range(0, lines.size()).parallel()
+            .mapToObj(i -> resolver.check(i + 1, lines.get(i)))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()), true);
+    }
+
+    /**
+     * Makes the transformers for the entries named by the queries, one per line. Each query is optionally preceded by
+     * the access level (default {@code public}), and is one of:
+     *
+     * <pre>
+     *   1234                             the entries with the SRG ID
+     *   func_1234_a, net.minecraft.A     the entries with the SRG name, or with the MCP name if there are none
+     *   net.minecraft.A func_1234_a      the members of the class with the SRG or MCP name
+     * </pre>
+     * <p>Class and member names may contain {@code *} to match any characters, such as {@code net.minecraft.A *} for
+     * every member of a class, or {@code func_1234_*}.</p>
+     */
+    public static AccessTransformerFile generate(SRGDatabase srg, MCPDatabase mcp, List<String> queries) {
+        final Resolver resolver = new Resolver(srg, mcp);
+        return collect(IntStream.range(0, queries.size()).parallel()
+            .mapToObj(i -> resolver.generate(i + 1, queries.get(i)))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()), false);
+    }
+
+    private static AccessTransformerFile collect(List<Resolved> resolved, boolean reportDuplicates) {
+        final Map<String, Transformer> transformers = new TreeMap<>();
+        final List<Issue> issues = new ArrayList<>();
+        for (Resolved line : resolved) {
+            if (line.issue() != null) issues.add(line.issue());
+            for (Transformer transformer : line.transformers()) {
+                final Transformer previous = transformers.putIfAbsent(transformer.target(), transformer);
+                if (previous == null) continue;
+                final Transformer merged = previous.merge(transformer);
+                transformers.put(transformer.target(), merged);
+                if (reportDuplicates && line.issue() == null) {
+                    issues.add(new Issue(line.line(), Problem.DUPLICATE, line.text().strip(), merged.write()));
+                }
+            }
+        }
+        return new AccessTransformerFile(List.copyOf(transformers.values()), issues);
+    }
+
+    /**
+     * Combines the transformers of both files, keeping the issues of this one followed by those of the other.
+     */
+    public AccessTransformerFile merge(AccessTransformerFile other) {
+        final Map<String, Transformer> merged = new TreeMap<>();
+        for (Transformer transformer : transformers) merged.put(transformer.target(), transformer);
+        for (Transformer transformer : other.transformers) merged.merge(transformer.target(), transformer,
+            Transformer::merge);
+        final List<Issue> allIssues = new ArrayList<>(issues);
+        allIssues.addAll(other.issues);
+        return new AccessTransformerFile(List.copyOf(merged.values()), allIssues);
+    }
+
+    public void write(Path file) throws IOException {
+        final List<String> lines = new ArrayList<>(transformers.size());
+        for (Transformer transformer : transformers) lines.add(transformer.write());
+        Files.write(file, lines);
+    }
+
+    static boolean isAccess(String token) {
+        return ACCESS_LEVELS.contains(Transformer.level(token));
+    }
+
+    /**
+     * The SRG ID in a numbered name ({@code field_1234_a} or {@code func_1234_a}), or -1 if it is not one.
+     */
+    static int parseSrgID(String name) {
+        final int start = name.startsWith("field_") ? 6 : name.startsWith("func_") ? 5 : -1;
+        if (start == -1) return -1;
+        final int end = name.indexOf('_', start);
+        return end == -1 ? -1 : QueryHandler.parseID(name.substring(start, end));
+    }
+
+    /**
+     * Resolves lines against one mapping version. The databases are only read, so lines are resolved in parallel.
+     */
+    private static final class Resolver {
+        private final SRGDatabase srg;
+        private final MCPDatabase mcp;
+        private final Map<SRGEntry.Class, String> dottedNames = new ConcurrentHashMap<>();
+        private final ImmutableListMultimap<SRGEntry.Class, SRGEntry.Constructor> constructors;
+        private final ImmutableListMultimap<SRGEntry.Class, SRGEntry.NamedMethod> namedMethods;
+        // Every class and member, which patterns are matched against
+        private final Supplier<List<SRGEntry>> entries;
+
+        Resolver(SRGDatabase srg, MCPDatabase mcp) {
+            this.srg = srg;
+            this.mcp = mcp;
+            this.constructors = Multimaps.index(srg.constructors().values(), SRGEntry.ClassMember::parentClass);
+            this.namedMethods = Multimaps.index(srg.namedMethods().values(), SRGEntry.ClassMember::parentClass);
+            this.entries = Suppliers.memoize(() -> ImmutableList.<SRGEntry>builder()
+                .addAll(srg.classes().values())
+                .addAll(srg.fields().values())
+                .addAll(srg.enumValues().values())
+                .addAll(srg.numberedMethods().values())
+                .addAll(srg.namedMethods().values())
+                .addAll(srg.constructors().values())
+                .build());
+        }
+
+        @Nullable
+        Resolved check(int line, String text) {
+            final String[] tokens = tokens(text);
+            if (tokens == null) return null;
+            if (tokens.length < 2 || tokens.length > 3 || !isAccess(tokens[0])) {
+                return issue(line, text, Problem.INVALID, null);
+            }
+            final String access = tokens[0];
+            final SRGEntry.Class clz = srg.classes().get(tokens[1].replace('.', '/'));
+            if (tokens.length == 2) {
+                return clz != null ? resolved(line, text, transformer(access, clz), null)
+                    : issue(line, text, Problem.MISSING_CLASS, null);
+            }
+
+            final String member = tokens[2];
+            final int descriptorStart = member.indexOf('(');
+            final String name = descriptorStart == -1 ? member : member.substring(0, descriptorStart);
+            final String descriptor = descriptorStart == -1 ? null : member.substring(descriptorStart);
+            final int id = parseSrgID(name);
+            if (id != -1) return checkNumbered(line, text, access, clz, name, descriptor, id);
+            if (clz == null) return issue(line, text, Problem.MISSING_CLASS, null);
+
+            if (name.equals("*") && (descriptor == null || descriptor.equals("()"))) {
+                return resolved(line, text, new Transformer(access, dottedName(clz), member, null), null);
+            }
+            if (descriptor == null) {
+                for (SRGEntry.EnumValue value : srg.enumValues().get(clz)) {
+                    if (value.valueName().equals(name)) return resolved(line, text, transformer(access, value), null);
+                }
+            } else {
+                final List<? extends SRGEntry.Method> methods = name.equals("<init>")
+                    ? constructors.get(clz)
+                    : namedMethods.get(clz).stream()
+                        .filter(method -> method.deobfName().equals(name))
+                        .collect(Collectors.toList());
+                for (SRGEntry.Method method : methods) {
+                    if (method.methodSignature().equals(descriptor)) {
+                        return resolved(line, text, transformer(access, method), null);
+                    }
+                }
+                if (methods.size() == 1 && !name.equals("<init>")) {
+                    return issue(line, text, Problem.SIGNATURE_CHANGED, transformer(access, methods.get(0)));
+                }
+            }
+
+            // The MCP name may have been used instead of the SRG name
+            final List<SRGEntry> renamed = new ArrayList<>();
+            for (MCPEntry entry : mcp.getEntriesByName(name)) {
+                if (descriptor == null && entry instanceof MCPEntry.Field) {
+                    final SRGEntry.Field field = srg.getFieldForID(entry.srgID());
+                    if (field != null && field.parentClass().equals(clz)) renamed.add(field);
+                } else if (descriptor != null && entry instanceof MCPEntry.Method) {
+                    final SRGEntry.NumberedMethod method = srg.numberedMethods().get(entry.srgID(), clz);
+                    if (method != null) renamed.add(method);
+                }
+            }
+            return renamed.size() == 1
+                ? issue(line, text, Problem.RENAMED, transformer(access, renamed.get(0)))
+                : issue(line, text, Problem.MISSING_MEMBER, null);
+        }
+
+        /**
+         * Checks a numbered field or method, which is found by its SRG ID even if it moved to another class.
+         */
+        private Resolved checkNumbered(int line, String text, String access, SRGEntry.@Nullable Class clz,
+            String name, @Nullable String descriptor, int id) {
+            final SRGEntry.HasSrgName entry;
+            final SRGEntry.Class parent;
+            if (name.startsWith("field_")) {
+                final SRGEntry.Field field = srg.getFieldForID(id);
+                if (field == null) return issue(line, text, Problem.MISSING_MEMBER, null);
+                entry = field;
+                parent = field.parentClass();
+            } else {
+                // Overriding methods share the ID of the method they override
+                final ImmutableMap<SRGEntry.Class, SRGEntry.NumberedMethod> methods = srg.numberedMethods().row(id);
+                SRGEntry.NumberedMethod method = clz != null ? methods.get(clz) : null;
+                if (method == null && methods.size() == 1) method = methods.values().iterator().next();
+                if (method == null) return issue(line, text, Problem.MISSING_MEMBER, null);
+                if (descriptor == null) return issue(line, text, Problem.INVALID, transformer(access, method));
+                entry = method;
+                parent = method.parentClass();
+            }
+
+            final Transformer fix = transformer(access, (SRGEntry) entry);
+            if (!parent.equals(clz)) return issue(line, text, Problem.MOVED, fix);
+            if (!entry.srgName().equals(name)) return issue(line, text, Problem.RENAMED, fix);
+            if (entry instanceof SRGEntry.Method method && !method.methodSignature().equals(descriptor)) {
+                return issue(line, text, Problem.SIGNATURE_CHANGED, fix);
+            }
+            if (entry instanceof SRGEntry.Field && descriptor != null) return issue(line, text, Problem.INVALID, fix);
+            return resolved(line, text, fix, null);
+        }
+
+        @Nullable
+        Resolved generate(int line, String text) {
+            final String[] tokens = tokens(text);
+            if (tokens == null) return null;
+            final boolean hasAccess = isAccess(tokens[0]);
+            final String access = hasAccess ? tokens[0] : AccessTransformers.PUBLIC;
+            final int queryTokens = tokens.length - (hasAccess ? 1 : 0);
+            if (queryTokens < 1 || queryTokens > 2) return issue(line, text, Problem.INVALID, null);
+
+            final List<SRGEntry> found = queryTokens == 1
+                ? find(tokens[tokens.length - 1])
+                : findMembers(tokens[tokens.length - 2], tokens[tokens.length - 1]);
+            final List<Transformer> transformers = new ArrayList<>(found.size());
+            for (SRGEntry entry : found) {
+                final Transformer transformer = transformer(access, entry);
+                if (transformer != null) transformers.add(transformer);
+            }
+            if (transformers.isEmpty()) return issue(line, text, Problem.NO_MATCH, null);
+            return new Resolved(line, text, transformers, null);
+        }
+
+        private List<SRGEntry> find(String query) {
+            if (query.indexOf('*') != -1) {
+                final Predicate<String> pattern = glob(query.replace('/', '.'));
+                return entries.get().stream()
+                    .filter(entry -> entry instanceof SRGEntry.Class clz ? pattern.test(dottedName(clz))
+                        : matches(entry, pattern))
+                    .collect(Collectors.toList());
+            }
+            final int id = QueryHandler.parseID(query);
+            if (id != -1) return entriesForID(id);
+
+            final List<SRGEntry> bySrgName = srg.getEntriesBySrgName(query);
+            if (!bySrgName.isEmpty()) return bySrgName;
+            final List<SRGEntry> byMcpName = new ArrayList<>();
+            for (MCPEntry entry : mcp.getEntriesByName(query)) byMcpName.addAll(entriesForID(entry.srgID()));
+            return byMcpName;
+        }
+
+        private List<SRGEntry> findMembers(String classQuery, String memberQuery) {
+            final Predicate<String> classPattern = glob(classQuery.replace('/', '.'));
+            final Predicate<String> memberPattern = glob(memberQuery);
+            return entries.get().stream()
+                .filter(entry -> entry instanceof SRGEntry.ClassMember member
+                    && classPattern.test(dottedName(member.parentClass())) && matches(entry, memberPattern))
+                .collect(Collectors.toList());
+        }
+
+        /**
+         * Whether the name of the member (or its name and signature, for patterns with a signature) or its MCP name
+         * matches the pattern.
+         */
+        private boolean matches(SRGEntry entry, Predicate<String> pattern) {
+            final String member = AccessTransformers.memberFor(entry);
+            if (member == null) return false;
+            final int descriptorStart = member.indexOf('(');
+            if (pattern.test(descriptorStart == -1 ? member : member.substring(0, descriptorStart))) return true;
+            if (descriptorStart != -1 && pattern.test(member)) return true;
+            final String mcpName = mcpName(entry);
+            return mcpName != null && pattern.test(mcpName);
+        }
+
+        private List<SRGEntry> entriesForID(int id) {
+            final List<SRGEntry> found = new ArrayList<>(srg.numberedMethods().row(id).values());
+            final SRGEntry.Field field = srg.getFieldForID(id);
+            if (field != null) found.add(field);
+            final SRGEntry.Constructor constructor = srg.getConstructorForID(id);
+            if (constructor != null) found.add(constructor);
+            return found;
+        }
+
+        @Nullable
+        private Transformer transformer(String access, SRGEntry entry) {
+            final String member = AccessTransformers.memberFor(entry);
+            if (member == null) return null;
+            final SRGEntry.Class clz = entry instanceof SRGEntry.ClassMember classMember
+                ? classMember.parentClass()
+                : (SRGEntry.Class) entry;
+            return new Transformer(access, dottedName(clz), member, mcpName(entry));
+        }
+
+        @Nullable
+        private String mcpName(SRGEntry entry) {
+            final MCPEntry mcpEntry;
+            if (entry instanceof SRGEntry.Field field) mcpEntry = mcp.fields().get(field.srgID());
+            else if (entry instanceof SRGEntry.NumberedMethod method) mcpEntry = mcp.methods().get(method.srgID());
+            else return null;
+            return mcpEntry != null ? mcpEntry.name() : null;
+        }
+
+        private String dottedName(SRGEntry.Class clz) {
+            return dottedNames.computeIfAbsent(clz, AccessTransformers::dottedName);
+        }
+
+        /**
+         * The tokens of a line without its comment, or null if nothing is left.
+         */
+        private static String @Nullable [] tokens(String text) {
+            final int commentStart = text.indexOf('#');
+            final String body = (commentStart == -1 ? text : text.substring(0, commentStart)).strip();
+            return body.isEmpty() ? null : WHITESPACE.split(body);
+        }
+
+        private static Predicate<String> glob(String query) {
+            if (query.indexOf('*') == -1) return query::equals;
+            final StringBuilder regex = new StringBuilder();
+            int start = 0;
+            int star;
+            while ((star = query.indexOf('*', start)) != -1) {
+                if (star > start) regex.append(Pattern.quote(query.substring(start, star)));
+                regex.append(".*");
+                start = star + 1;
+            }
+            if (start < query.length()) regex.append(Pattern.quote(query.substring(start)));
+            return Pattern.compile(regex.toString()).asMatchPredicate();
+        }
+
+        private static Resolved resolved(int line, String text, @Nullable Transformer transformer,
+            @Nullable Issue issue) {
+            return new Resolved(line, text, transformer != null ? List.of(transformer) : List.of(), issue);
+        }
+
+        private static Resolved issue(int line, String text, Problem problem, @Nullable Transformer fix) {
+            return resolved(line, text, fix, new Issue(line, problem, text.strip(), fix != null ? fix.write() : null));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package tk.sciwhiz12.cartographer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.srg.SRGLookup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Runs the queries read from an input, one per line, and writes one JSON object per line for each of them (see
+ * {@link QueryHandler} for the queries and their answers). Blank lines are skipped.
+ *
+ * <p>Queries are mostly bare SRG IDs, so those are looked up in batches through the bulk lookups of the databases.
+ * Every answer is written to the buffered output as it is formatted.</p>
+ */
+public final class BatchQuery {
+    private static final int BATCH_SIZE = 8192;
+
+    private final SRGLookup srgDatabase;
+    private final MCPDatabase mcpDatabase;
+    private final QueryHandler handler;
+    private final StringBuilder line = new StringBuilder(256);
+
+    public BatchQuery(SRGLookup srgDatabase, MCPDatabase mcpDatabase, @Nullable NameSearch search) {
+        this.srgDatabase = srgDatabase;
+        this.mcpDatabase = mcpDatabase;
+        this.handler = new QueryHandler(srgDatabase, mcpDatabase, search);
+    }
+
+    /**
+     * Runs every query of the input, writing the results in the same order.
+     *
+     * @return the number of queries
+     */
+    public long run(BufferedReader input, Writer output) throws IOException {
+        final String[] queries = new String[BATCH_SIZE];
+        long count = 0;
+        int size;
+        do {
+            size = 0;
+            String query;
+            while (size < BATCH_SIZE && (query = input.readLine()) != null) {
+                query = query.strip();
+                if (!query.isEmpty()) queries[size++] = query;
+            }
+            write(queries, size, output);
+            count += size;
+        } while (size == BATCH_SIZE);
+        output.flush();
+        return count;
+    }
+
+    private void write(String[] queries, int size, Writer output) throws IOException {
+        final int[] queryIDs = new int[size];
+        int idCount = 0;
+        for (int i = 0; i < size; i++) {
+            queryIDs[i] = QueryHandler.parseID(queries[i]);
+            if (queryIDs[i] != -1) idCount++;
+        }
+        final int[] ids = new int[idCount];
+        idCount = 0;
+        for (int id : queryIDs) if (id != -1) ids[idCount++] = id;
+        final SRGEntry[] srgEntries = srgDatabase.getEntriesForIDs(ids);
+        final MCPEntry[] mcpEntries = mcpDatabase.getEntriesForIDs(ids);
+
+        int result = 0;
+        for (int i = 0; i < size; i++) {
+            line.setLength(0);
+            if (queryIDs[i] == -1) {
+                handler.handle(queries[i], line);
+            } else {
+                handler.id(ids[result], srgEntries[result], mcpEntries[result], line);
+                result++;
+            }
+            line.append('\n');
+            output.append(line);
+        }
+    }
+}
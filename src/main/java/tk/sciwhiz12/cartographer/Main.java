@@ -1,15 +1,38 @@
 package tk.sciwhiz12.cartographer;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.hash.HashCode;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.remap.JarRemapper;
+import tk.sciwhiz12.cartographer.remap.SourceRemapper;
+import tk.sciwhiz12.cartographer.srg.MappedSRGDatabase;
 import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGDelta;
+import tk.sciwhiz12.cartographer.srg.SRGLookup;
+import tk.sciwhiz12.cartographer.util.DatabaseCache;
+import tk.sciwhiz12.cartographer.util.StringPool;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Path.of;
-import static java.nio.file.StandardOpenOption.CREATE;
 import static tk.sciwhiz12.cartographer.util.Logging.logf;
 
 public class Main {
@@ -22,68 +45,612 @@ public class Main {
     public static final Path METHODS = of("mcp/methods.csv");
     public static final Path PARAMS = of("mcp/params.csv");
 
-    public static final Path SRG_DATABASE_OUTPUT = of("srg_database.txt");
+    public static final Path CACHE_DIRECTORY = of("cache");
+    public static final long DEFAULT_CACHE_SIZE_MIB = 256;
 
     public static void main(String[] args) throws Exception {
-        boolean deserializeSRGs = Files.exists(SRG_DATABASE_OUTPUT);
+        final List<String> options = Arrays.asList(args);
+        final boolean parallelImport = options.contains("--parallel-import");
+        final boolean binaryDatabase = options.contains("--binary-database");
+        final boolean mappedDatabase = options.contains("--mapped-database");
+        final boolean parallelExport = options.contains("--parallel-export");
+        final boolean incrementalUpdate = !options.contains("--no-incremental");
+        final String cacheSize = options.stream()
+            .filter(option -> option.startsWith("--cache-size="))
+            .map(option -> option.substring("--cache-size=".length()))
+            .findFirst().orElse(null);
+        final Path versionsDirectory = options.stream()
+            .filter(option -> option.startsWith("--versions="))
+            .map(option -> of(option.substring("--versions=".length())))
+            .findFirst().orElse(null);
+        final String heapBudget = options.stream()
+            .filter(option -> option.startsWith("--heap-budget="))
+            .map(option -> option.substring("--heap-budget=".length()))
+            .findFirst().orElse(null);
+        final String batchInput = options.stream()
+            .filter(option -> option.startsWith("--batch="))
+            .map(option -> option.substring("--batch=".length()))
+            .findFirst().orElse(null);
+        final Path batchOutput = options.stream()
+            .filter(option -> option.startsWith("--batch-output="))
+            .map(option -> of(option.substring("--batch-output=".length())))
+            .findFirst().orElse(null);
+        final String serverPortOption = options.stream()
+            .filter(option -> option.startsWith("--server="))
+            .map(option -> option.substring("--server=".length()))
+            .findFirst().orElse(null);
+        final String serverThreadsOption = options.stream()
+            .filter(option -> option.startsWith("--server-threads="))
+            .map(option -> option.substring("--server-threads=".length()))
+            .findFirst().orElse(null);
+        final boolean watch = options.contains("--watch");
+        final Path remapSource = options.stream()
+            .filter(option -> option.startsWith("--remap="))
+            .map(option -> of(option.substring("--remap=".length())))
+            .findFirst().orElse(null);
+        final boolean remapInPlace = options.contains("--remap-in-place");
+        final Path remapOutput = options.stream()
+            .filter(option -> option.startsWith("--remap-output="))
+            .map(option -> of(option.substring("--remap-output=".length())))
+            .findFirst().orElse(remapInPlace ? remapSource : null);
+        final String remapTo = options.stream()
+            .filter(option -> option.startsWith("--remap-to="))
+            .map(option -> option.substring("--remap-to=".length()))
+            .findFirst().orElse("mcp");
+        final Path remapJar = options.stream()
+            .filter(option -> option.startsWith("--remap-jar="))
+            .map(option -> of(option.substring("--remap-jar=".length())))
+            .findFirst().orElse(null);
+        final Path remapJarOutput = options.stream()
+            .filter(option -> option.startsWith("--remap-jar-output="))
+            .map(option -> of(option.substring("--remap-jar-output=".length())))
+            .findFirst().orElse(null);
+        final List<Path> remapJarLibraries = options.stream()
+            .filter(option -> option.startsWith("--remap-jar-libraries="))
+            .flatMap(option -> Arrays.stream(option.substring("--remap-jar-libraries=".length()).split(",")))
+            .map(Path::of)
+            .collect(Collectors.toList());
+        final String remapJarTo = options.stream()
+            .filter(option -> option.startsWith("--remap-jar-to="))
+            .map(option -> option.substring("--remap-jar-to=".length()))
+            .findFirst().orElse("srg");
+        final Path atCheck = options.stream()
+            .filter(option -> option.startsWith("--at-check="))
+            .map(option -> of(option.substring("--at-check=".length())))
+            .findFirst().orElse(null);
+        final Path atGenerate = options.stream()
+            .filter(option -> option.startsWith("--at-generate="))
+            .map(option -> of(option.substring("--at-generate=".length())))
+            .findFirst().orElse(null);
+        final Path atOutput = options.stream()
+            .filter(option -> option.startsWith("--at-output="))
+            .map(option -> of(option.substring("--at-output=".length())))
+            .findFirst().orElse(null);
+
+        // Batch results written to stdout must not be mixed with the progress messages, which go to stderr instead
+        final PrintStream stdout = System.out;
+        if (batchInput != null && batchOutput == null) System.setOut(System.err);
+
+        final long cacheSizeMiB = cacheSize == null ? DEFAULT_CACHE_SIZE_MIB : parseMiB(cacheSize);
+        if (cacheSizeMiB <= 0) {
+            System.out.printf("Invalid cache size: %s; please specify the size in MiB as a positive number with "
+                + "--cache-size=<MiB>.%n", cacheSize);
+            return;
+        }
+        final long heapBudgetMiB = heapBudget == null
+            ? Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024)
+            : parseMiB(heapBudget);
+        if (heapBudgetMiB <= 0) {
+            System.out.printf("Invalid heap budget: %s; please specify the budget in MiB as a positive number with "
+                + "--heap-budget=<MiB>.%n", heapBudget);
+            return;
+        }
+        final Integer serverPort = serverPortOption == null ? null : parseInt(serverPortOption, 0, 0xFFFF);
+        if (serverPortOption != null && serverPort == null) {
+            System.out.printf("Invalid port: %s; please specify a port from 0 to 65535 with --server=<port>.%n",
+                serverPortOption);
+            return;
+        }
+        final Integer serverThreads = serverThreadsOption == null
+            ? Integer.valueOf(Runtime.getRuntime().availableProcessors())
+            : parseInt(serverThreadsOption, 1, Integer.MAX_VALUE);
+        if (serverThreads == null) {
+            System.out.printf("Invalid number of worker threads: %s; please specify a positive number with "
+                + "--server-threads=<count>.%n", serverThreadsOption);
+            return;
+        }
+        final DatabaseCache cache = new DatabaseCache(CACHE_DIRECTORY, cacheSizeMiB * 1024 * 1024);
+        if (versionsDirectory != null) {
+            if (batchInput != null || serverPort != null || remapSource != null || remapJar != null
+                || atCheck != null || atGenerate != null) {
+                System.out.println("Batch queries, the query server, remapping and access transformers need a single "
+                    + "mapping version, without --versions.");
+                return;
+            }
+            final MappingRegistry registry = new MappingRegistry(versionsDirectory, cache, binaryDatabase,
+                heapBudgetMiB * 1024 * 1024);
+            System.out.printf("Mapping versions in %s: %s%n", versionsDirectory, registry.availableVersions());
+            System.out.printf("Heap budget for loaded versions: %d MiB%n", heapBudgetMiB);
+
+            System.out.println();
+            System.out.println("Ready!");
+            QueryConsole console = new QueryConsole(registry, System.in);
+            console.run();
+            return;
+        }
+        final LoadOptions loadOptions = new LoadOptions(parallelImport, binaryDatabase, mappedDatabase,
+            parallelExport, incrementalUpdate);
+        if (batchInput != null) {
+            final MappingReloader.Mappings mappings = loadMappings(cache, loadOptions, true);
+            runBatch(new BatchQuery(mappings.srg(), mappings.mcp(), mappings.search()), batchInput, batchOutput,
+                stdout);
+            return;
+        }
+        if (atCheck != null || atGenerate != null) {
+            if (atGenerate != null && atOutput == null) {
+                System.out.println("Please specify the generated access transformer file with --at-output=<file>.");
+                return;
+            }
+            final MappingReloader.Mappings mappings = loadMappings(cache, loadOptions, false);
+            if (!(mappings.srg() instanceof SRGDatabase database)) {
+                System.out.println("Access transformers need the fully loaded SRG database, without "
+                    + "--mapped-database.");
+                return;
+            }
+            runAccessTransformers(database, mappings.mcp(), atCheck, atGenerate, atOutput);
+            return;
+        }
+        if (remapJar != null) {
+            if (remapJarOutput == null) {
+                System.out.println("Please specify the remapped jar with --remap-jar-output=<file>.");
+                return;
+            }
+            if (!remapJarTo.equals("srg") && !remapJarTo.equals("reobf")) {
+                System.out.printf("Unknown names to remap to: %s; please specify --remap-jar-to=srg or "
+                    + "--remap-jar-to=reobf.%n", remapJarTo);
+                return;
+            }
+            final boolean remapJarToReobf = remapJarTo.equals("reobf");
+            final MappingReloader.Mappings mappings = loadMappings(cache, loadOptions, false);
+            if (!(mappings.srg() instanceof SRGDatabase database)) {
+                System.out.println("Jar remapping needs the fully loaded SRG database, without --mapped-database.");
+                return;
+            }
+            final JarRemapper remapper = remapJarToReobf
+                ? JarRemapper.srgToReobf(database)
+                : JarRemapper.reobfToSrg(database);
+            runJarRemap(remapper, remapJar, remapJarOutput, remapJarLibraries, remapJarToReobf ? "reobf" : "SRG");
+            return;
+        }
+        if (remapSource != null) {
+            if (remapOutput == null) {
+                System.out.println("Please specify the folder for the remapped sources with --remap-output=<folder>, "
+                    + "or --remap-in-place to overwrite the sources.");
+                return;
+            }
+            if (!remapTo.equals("mcp") && !remapTo.equals("srg")) {
+                System.out.printf("Unknown names to remap to: %s; please specify --remap-to=mcp or --remap-to=srg.%n",
+                    remapTo);
+                return;
+            }
+            final boolean remapToSrg = remapTo.equals("srg");
+            final MappingReloader.Mappings mappings = loadMappings(cache, loadOptions, false);
+            final SourceRemapper remapper = remapToSrg
+                ? SourceRemapper.toSrg(mappings.srg(), mappings.mcp())
+                : SourceRemapper.toMcp(mappings.mcp());
+            runRemap(remapper, remapSource, remapOutput, remapToSrg ? "SRG" : "MCP");
+            return;
+        }
+
+        final MappingReloader mappings = new MappingReloader(loadMappings(cache, loadOptions, true),
+            () -> loadMappings(cache, loadOptions, true));
+        if (watch) {
+            mappings.watch(TSRG.getParent(), FIELDS.getParent());
+            System.out.printf("Watching %s and %s for changed mappings files%n", TSRG.getParent(),
+                FIELDS.getParent());
+        }
+
+        if (serverPort != null) {
+            final QueryServer server = QueryServer.start(mappings, serverPort, serverThreads);
+            System.out.println();
+            System.out.printf("Serving queries on %s with %d worker threads%n", server.address(), serverThreads);
+            server.await();
+            return;
+        }
+
+        System.out.println();
+        System.out.println("Ready!");
+        QueryConsole console = new QueryConsole(mappings, System.in);
+        console.run();
+    }
+
+    /**
+     * Options for loading the databases, which are the same for every reload.
+     */
+    record LoadOptions(boolean parallelImport, boolean binaryDatabase, boolean mappedDatabase,
+                       boolean parallelExport, boolean incrementalUpdate) {
+        String databaseExtension() {
+            return binaryDatabase ? "bin" : "txt";
+        }
+    }
+
+    /**
+     * Loads the SRG database (from the cache where possible) and the MCP database from the mappings files, and builds
+     * the name search over them if requested.
+     */
+    static MappingReloader.Mappings loadMappings(DatabaseCache cache, LoadOptions options, boolean buildSearch)
+        throws IOException {
+        final HashCode srgInputs = DatabaseCache.digest(TSRG, STATIC_METHODS, CONSTRUCTORS);
+        System.out.printf("SRG input digest: %s%n", srgInputs);
+
+        final StringPool stringPool = new StringPool();
         SRGDatabase srgDatabase = null;
+        SRGLookup srgLookup = null;
         MCPDatabase mcpDatabase;
         Stopwatch stopwatch = null;
-        if (deserializeSRGs) {
-            System.out.println("SRG database exists on disk, deserializing...");
+        final Path mappedFile = options.mappedDatabase() ? cache.lookup("srg", srgInputs, "map") : null;
+        if (mappedFile != null) {
+            System.out.println("Mapped SRG database for these inputs exists in the cache, mapping...");
 
             stopwatch = Stopwatch.createStarted();
-            List<String> dbFile = Files.readAllLines(SRG_DATABASE_OUTPUT);
-            srgDatabase = SRGDatabase.deserialize(dbFile);
+            try {
+                MappedSRGDatabase mapped = MappedSRGDatabase.open(mappedFile);
+                System.out.printf("Mapped %s classes and %s SRG IDs%n", mapped.classCount(), mapped.entryCount());
+                srgLookup = mapped;
+            } catch (IOException e) {
+                System.out.printf("Cannot map cached SRG database, discarding it: %s%n", e.getMessage());
+                cache.invalidate(mappedFile);
+            }
             stopwatch.stop();
 
-            logf(" === SRG Deserialize === %n");
-            srgDatabase.printStatistics(System.out);
-            logf(" === === === === === === %n");
+            System.out.printf("Time elapsed for mapping: %s%n", stopwatch.elapsed());
+        }
+        final Path databaseFile = srgLookup == null
+            ? cache.lookup("srg", srgInputs, options.databaseExtension())
+            : null;
+        if (databaseFile != null) {
+            System.out.println("SRG database for these inputs exists in the cache, deserializing...");
 
-            System.out.printf("Time elapsed for deserialization: %s%n", stopwatch.elapsed());
+            stopwatch = Stopwatch.createStarted();
+            try {
+                srgDatabase = readDatabase(databaseFile, options.binaryDatabase(), stringPool);
+            } catch (IOException e) {
+                System.out.printf("Cannot read cached SRG database, discarding it: %s%n", e.getMessage());
+                cache.invalidate(databaseFile);
+            }
+            stopwatch.stop();
+
+            if (srgDatabase != null) {
+                logf(" === SRG Deserialize === %n");
+                srgDatabase.printStatistics(System.out);
+                logf(" === === === === === === %n");
+
+                System.out.printf("Time elapsed for deserialization: %s%n", stopwatch.elapsed());
+            }
         }
-        if (srgDatabase == null) {
-            System.out.println("Importing SRG database from MCPConfig files...");
+        final Path deltaFile = srgDatabase == null && srgLookup == null && options.incrementalUpdate()
+            ? cache.lookup("srg", srgInputs, "delta")
+            : null;
+        if (deltaFile != null) {
+            System.out.println("SRG delta log for these inputs exists in the cache, applying it...");
 
             stopwatch = Stopwatch.createStarted();
+            srgDatabase = applyCachedDelta(cache, deltaFile, options.databaseExtension(), options.binaryDatabase(),
+                Files.readAllLines(STATIC_METHODS), Files.readAllLines(CONSTRUCTORS), stringPool);
+            stopwatch.stop();
+
+            if (srgDatabase != null) {
+                System.out.printf("Time elapsed for applying the delta log: %s%n", stopwatch.elapsed());
+
+                // Otherwise every later load would read the base database and apply the delta log again
+                System.out.println("Exporting the updated SRG database to the cache...");
+                stopwatch = Stopwatch.createStarted();
+                final SRGDatabase database = srgDatabase;
+                cache.store("srg", srgInputs, options.databaseExtension(),
+                    file -> writeDatabase(database, file, options.binaryDatabase(), options.parallelExport()));
+                cache.invalidate(deltaFile);
+                stopwatch.stop();
+
+                System.out.printf("Time elapsed for export: %s%n", stopwatch.elapsed());
+            }
+        }
+        if (srgDatabase == null && srgLookup == null) {
             List<String> joined_tsrg = Files.readAllLines(TSRG);
             List<String> static_methods_txt = Files.readAllLines(STATIC_METHODS);
             List<String> constructors_txt = Files.readAllLines(CONSTRUCTORS);
-            srgDatabase = SRGDatabase.parse(joined_tsrg, static_methods_txt, constructors_txt);
-            stopwatch.stop();
+            final String staticsDigest = DatabaseCache.digest(STATIC_METHODS).toString();
+
+            if (options.incrementalUpdate()) {
+                stopwatch = Stopwatch.createStarted();
+                srgDatabase = updateFromCache(cache, srgInputs, options.databaseExtension(), options.binaryDatabase(),
+                    joined_tsrg, static_methods_txt, constructors_txt, staticsDigest, stringPool);
+                stopwatch.stop();
 
-            logf(" === SRG Import === %n");
-            srgDatabase.printStatistics(System.out);
-            logf(" === === == === === %n");
+                if (srgDatabase != null) {
+                    System.out.printf("Time elapsed for incremental update: %s%n", stopwatch.elapsed());
+                }
+            }
+            final boolean updated = srgDatabase != null;
+            if (srgDatabase == null) {
+                System.out.println("Importing SRG database from MCPConfig files...");
 
-            System.out.printf("Time elapsed for import: %s%n", stopwatch.elapsed());
+                stopwatch = Stopwatch.createStarted();
+                srgDatabase = SRGDatabase.parse(joined_tsrg, static_methods_txt, constructors_txt,
+                    options.parallelImport(), stringPool);
+                stopwatch.stop();
+
+                logf(" === SRG Import === %n");
+                srgDatabase.printStatistics(System.out);
+                logf(" === === == === === %n");
+
+                System.out.printf("Time elapsed for import: %s%n", stopwatch.elapsed());
+            }
             System.out.println();
-            System.out.println("Exporting imported SRG database to disk...");
+            System.out.println("Exporting SRG database to the cache...");
 
             stopwatch = Stopwatch.createStarted();
-            Files.write(SRG_DATABASE_OUTPUT, srgDatabase.serialize(), CREATE);
+            final SRGDatabase database = srgDatabase;
+            // An updated database is stored as the delta log against its base, which is applied on the next load
+            if (!updated) {
+                cache.store("srg", srgInputs, options.databaseExtension(),
+                    file -> writeDatabase(database, file, options.binaryDatabase(), options.parallelExport()));
+            }
+            final SRGDelta.Fingerprint fingerprint = SRGDelta.Fingerprint.of(joined_tsrg, staticsDigest);
+            cache.store("srg", srgInputs, "blocks", file -> Files.write(file, fingerprint.write()));
             stopwatch.stop();
 
             System.out.printf("Time elapsed for export: %s%n", stopwatch.elapsed());
         }
+        if (options.mappedDatabase() && srgLookup == null) {
+            System.out.println("Exporting mapped SRG database to the cache...");
+
+            stopwatch = Stopwatch.createStarted();
+            final SRGDatabase database = srgDatabase;
+            cache.store("srg", srgInputs, "map", file -> MappedSRGDatabase.write(database, file));
+            stopwatch.stop();
+
+            System.out.printf("Time elapsed for mapped export: %s%n", stopwatch.elapsed());
+        }
+        if (srgLookup == null) srgLookup = srgDatabase;
 
         {
             System.out.println();
             System.out.println("Importing MCP database from mappings files...");
 
-            List<String> fields_csv = Files.readAllLines(FIELDS);
-            List<String> methods_csv = Files.readAllLines(METHODS);
-            List<String> params_csv = Files.readAllLines(PARAMS);
-            mcpDatabase = MCPDatabase.parse(fields_csv, methods_csv, params_csv);
+            stopwatch = Stopwatch.createStarted();
+            mcpDatabase = MCPDatabase.parse(FIELDS, METHODS, PARAMS, stringPool);
 
             System.out.printf("Time elapsed for MCP database import: %s%n", stopwatch.elapsed());
         }
 
+        System.out.printf("String deduplication: %s%n", stringPool.statistics());
+        if (!buildSearch) return new MappingReloader.Mappings(srgLookup, mcpDatabase, null);
+
+        stopwatch = Stopwatch.createStarted();
+        final NameSearch search = NameSearch.build(srgLookup instanceof SRGDatabase database ? database : null,
+            mcpDatabase);
+        System.out.printf("Time elapsed for building the name search over %d names: %s%n", search.size(),
+            stopwatch.elapsed());
+        return new MappingReloader.Mappings(srgLookup, mcpDatabase, search);
+    }
+
+    /**
+     * The number of MiB, or -1 if the value is not a number or too large to count in bytes.
+     */
+    private static long parseMiB(String value) {
+        try {
+            final long mib = Long.parseLong(value);
+            return mib <= Long.MAX_VALUE / (1024 * 1024) ? mib : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The number, or null if the value is not a number from min to max.
+     */
+    @Nullable
+    private static Integer parseInt(String value, int min, int max) {
+        try {
+            final int number = Integer.parseInt(value);
+            return number >= min && number <= max ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void runBatch(BatchQuery batch, String input, @Nullable Path output, PrintStream stdout)
+        throws IOException {
         System.out.println();
-        System.out.println("Ready!");
-        QueryConsole console = new QueryConsole(srgDatabase, mcpDatabase, System.in);
-        console.run();
+        System.out.printf("Running batch queries from %s...%n", input.equals("-") ? "stdin" : input);
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final long count;
+        try (BufferedReader reader = input.equals("-")
+            ? new BufferedReader(new InputStreamReader(System.in, UTF_8), 1 << 16)
+            : Files.newBufferedReader(of(input));
+             Writer writer = new BufferedWriter(output == null
+                 ? new OutputStreamWriter(stdout, UTF_8)
+                 : Files.newBufferedWriter(output), 1 << 16)) {
+            count = batch.run(reader, writer);
+        }
+        stopwatch.stop();
+
+        System.out.printf("Time elapsed for %d batch queries: %s%n", count, stopwatch.elapsed());
+    }
+
+    private static void runRemap(SourceRemapper remapper, Path source, Path output, String names) throws IOException {
+        System.out.println();
+        System.out.printf("Remapping the sources in %s to %s names%s...%n", source, names,
+            source.equals(output) ? "" : " into " + output);
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final SourceRemapper.Statistics statistics = remapper.remapTree(source, output);
+        stopwatch.stop();
+
+        System.out.printf("Source files: %d, scanned: %d, changed: %d%n", statistics.files(),
+            statistics.scannedFiles(), statistics.changedFiles());
+        System.out.printf("Remapped names: %d, names without a mapping: %d%n", statistics.remappedNames(),
+            statistics.unmappedNames());
+        System.out.printf("Time elapsed for remapping: %s%n", stopwatch.elapsed());
+    }
+
+    private static void runJarRemap(JarRemapper remapper, Path input, Path output, List<Path> libraries,
+        String names) throws IOException {
+        System.out.println();
+        System.out.printf("Remapping the classes in %s to %s names into %s...%n", input, names, output);
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final JarRemapper.Statistics statistics = remapper.remap(input, output, libraries);
+        stopwatch.stop();
+
+        System.out.printf("Classes: %d, remapped: %d, malformed: %d, other entries: %d%n", statistics.classes(),
+            statistics.remappedClasses(), statistics.failedClasses(), statistics.otherEntries());
+        System.out.printf("Time elapsed for jar remapping: %s%n", stopwatch.elapsed());
+    }
+
+    private static void runAccessTransformers(SRGDatabase srg, MCPDatabase mcp, @Nullable Path check,
+        @Nullable Path generate, @Nullable Path output) throws IOException {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        AccessTransformerFile file = null;
+        if (check != null) {
+            System.out.println();
+            System.out.printf("Checking the access transformers in %s...%n", check);
+            file = AccessTransformerFile.check(srg, mcp, Files.readAllLines(check));
+            printIssues(file.issues());
+        }
+        if (generate != null) {
+            System.out.println();
+            System.out.printf("Generating access transformers from the queries in %s...%n", generate);
+            final AccessTransformerFile generated = AccessTransformerFile.generate(srg, mcp,
+                Files.readAllLines(generate));
+            printIssues(generated.issues());
+            file = file != null ? file.merge(generated) : generated;
+        }
+        if (output != null) {
+            file.write(output);
+            System.out.printf("Wrote %d access transformers to %s%n", file.transformers().size(), output);
+        }
+        stopwatch.stop();
+
+        System.out.printf("Time elapsed for access transformers: %s%n", stopwatch.elapsed());
+    }
+
+    private static void printIssues(List<AccessTransformerFile.Issue> issues) {
+        final Map<AccessTransformerFile.Problem, Integer> counts = new EnumMap<>(AccessTransformerFile.Problem.class);
+        for (AccessTransformerFile.Issue issue : issues) {
+            System.out.println(issue.write());
+            counts.merge(issue.problem(), 1, Integer::sum);
+        }
+        System.out.printf("Issues: %d %s%n", issues.size(), counts);
+    }
+
+    static SRGDatabase readDatabase(Path file, boolean binary, StringPool stringPool) throws IOException {
+        if (binary) {
+            return SRGDatabase.deserializeBinary(ByteBuffer.wrap(Files.readAllBytes(file)), stringPool);
+        }
+        return SRGDatabase.deserialize(file, stringPool);
+    }
+
+    static void writeDatabase(SRGDatabase database, Path file, boolean binary, boolean parallel) throws IOException {
+        if (binary) {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+                database.serializeBinary(output);
+            }
+        } else {
+            database.serialize(file, parallel);
+        }
+    }
+
+    /**
+     * Updates the most recently used cached database with the class blocks which changed since it was imported, and
+     * stores the delta log in the cache. Returns null if there is no suitable database to update.
+     */
+    @Nullable
+    static SRGDatabase updateFromCache(DatabaseCache cache, HashCode srgInputs, String databaseExtension,
+        boolean binaryDatabase, List<String> joined_tsrg, List<String> static_methods_txt,
+        List<String> constructors_txt, String staticsDigest, StringPool stringPool) throws IOException {
+        HashCode baseInputs = cache.latest("srg", "blocks");
+        if (baseInputs == null) return null;
+        // Delta logs are only applied to full databases, so a database which is itself a delta is updated from its base
+        final Path baseDelta = cache.lookup("srg", baseInputs, "delta");
+        if (baseDelta != null && cache.lookup("srg", baseInputs, databaseExtension) == null) {
+            try {
+                baseInputs = HashCode.fromString(SRGDelta.read(Files.readAllLines(baseDelta)).base());
+            } catch (IllegalArgumentException e) {
+                System.out.printf("Cannot read cached SRG delta log, discarding it: %s%n", e.getMessage());
+                cache.invalidate(baseDelta);
+                return null;
+            }
+        }
+        final Path baseBlocks = cache.lookup("srg", baseInputs, "blocks");
+        final Path baseFile = cache.lookup("srg", baseInputs, databaseExtension);
+        if (baseBlocks == null || baseFile == null) return null;
+
+        final SRGDelta.Fingerprint baseFingerprint = SRGDelta.Fingerprint.read(Files.readAllLines(baseBlocks));
+        if (!baseFingerprint.staticsDigest().equals(staticsDigest)) {
+            System.out.println("Static methods changed since the cached SRG database, cannot update it incrementally");
+            return null;
+        }
+        final SRGDelta delta = SRGDelta.between(baseInputs.toString(), baseFingerprint, joined_tsrg);
+        System.out.printf("Found %d changed and %d removed class blocks since SRG database %s%n",
+            delta.blocks().size(), delta.removedClasses().size(), baseInputs);
+
+        final SRGDatabase base;
+        try {
+            base = readDatabase(baseFile, binaryDatabase, stringPool);
+        } catch (IOException e) {
+            System.out.printf("Cannot read cached SRG database, discarding it: %s%n", e.getMessage());
+            cache.invalidate(baseFile);
+            return null;
+        }
+        if (!delta.canApplyTo(base)) {
+            System.out.println("Classes were removed or renamed, cannot update the SRG database incrementally");
+            return null;
+        }
+
+        final SRGDatabase updated = delta.applyTo(base, static_methods_txt, constructors_txt, stringPool);
+        cache.store("srg", srgInputs, "delta", file -> Files.write(file, delta.write()));
+        return updated;
+    }
+
+    /**
+     * Applies a cached delta log to the cached database it was made against. Returns null if that database is no longer
+     * cached, in which case the SRG database is updated or imported again.
+     */
+    @Nullable
+    static SRGDatabase applyCachedDelta(DatabaseCache cache, Path deltaFile, String databaseExtension,
+        boolean binaryDatabase, List<String> static_methods_txt, List<String> constructors_txt, StringPool stringPool)
+        throws IOException {
+        final SRGDelta delta;
+        final Path baseFile;
+        try {
+            delta = SRGDelta.read(Files.readAllLines(deltaFile));
+            baseFile = cache.lookup("srg", HashCode.fromString(delta.base()), databaseExtension);
+        } catch (IllegalArgumentException e) {
+            System.out.printf("Cannot read cached SRG delta log, discarding it: %s%n", e.getMessage());
+            cache.invalidate(deltaFile);
+            return null;
+        }
+        if (baseFile == null) {
+            System.out.printf("SRG database %s of the delta log is no longer cached%n", delta.base());
+            return null;
+        }
+
+        final SRGDatabase base;
+        try {
+            base = readDatabase(baseFile, binaryDatabase, stringPool);
+        } catch (IOException e) {
+            System.out.printf("Cannot read cached SRG database, discarding it: %s%n", e.getMessage());
+            cache.invalidate(baseFile);
+            return null;
+        }
+        if (!delta.canApplyTo(base)) {
+            System.out.println("Cached SRG delta log does not apply to its database, discarding it");
+            cache.invalidate(deltaFile);
+            return null;
+        }
+        return delta.applyTo(base, static_methods_txt, constructors_txt, stringPool);
     }
 
     static boolean compareDatabases(SRGDatabase primary, SRGDatabase secondary, boolean printComparisons) {
@@ -93,19 +660,14 @@ public class Main {
         boolean namedMethods = primary.namedMethods().equals(secondary.namedMethods());
         boolean numberedMethods = primary.numberedMethods().equals(secondary.numberedMethods());
         boolean constructors = primary.constructors().equals(secondary.constructors());
-        boolean namedMethodParameters = primary.namedMethodParameters().equals(secondary.namedMethodParameters());
-        boolean numberedMethodParameters = primary.numberedMethodParameters().equals(secondary.numberedMethodParameters());
-        boolean constructorParameters = primary.constructorParameters().equals(secondary.constructorParameters());
         if (printComparisons) {
             System.out.printf("    classes: %s%n", classes);
             System.out.printf("    fields: %s, enum values: %s%n", fields, enumValues);
-            System.out.printf("    named methods: %s, parameters: %s%n", namedMethods, namedMethodParameters);
-            System.out.printf("    numbered methods: %s, parameters: %s%n", numberedMethods, numberedMethodParameters);
-            System.out.printf("    constructors: %s, parameters: %s%n", constructors, constructorParameters);
+            System.out.printf("    named methods: %s, numbered methods: %s%n", namedMethods, numberedMethods);
+            System.out.printf("    constructors: %s%n", constructors);
         }
 
         return classes && fields && enumValues
-            && namedMethods && numberedMethods && constructors
-            && namedMethodParameters && numberedMethodParameters && constructorParameters;
+            && namedMethods && numberedMethods && constructors;
     }
 }
@@ -0,0 +1,445 @@
+package tk.sciwhiz12.cartographer;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.Multimaps;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.util.DescriptorRemapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The changes between two versions of the SRG database, and optionally of the MCP database.
+ *
+ * <p>The work is split into chunks of classes (for the class, named method and enum value changes) and of SRG IDs
+ * (for every entry with an ID), which are compared in parallel. The changes are still reported in a fixed order:
+ * classes in the order of the older database followed by the added classes, then entries by SRG ID.</p>
+ *
+ * <p>A class which is missing from the newer database is reported as renamed if most of its fields and numbered
+ * methods belong to the same added class there, as SRG IDs are stable between versions. Signatures are compared after
+ * renaming the classes in the older signature, so a class rename does not also change the signature of every method
+ * which refers to it.</p>
+ */
+public final class MappingDiff {
+    private static final int CLASS_CHUNK_SIZE = 256;
+    private static final int ID_CHUNK_SIZE = 2048;
+
+    public enum Element {
+        CLASS, FIELD, ENUM_VALUE, NUMBERED_METHOD, NAMED_METHOD, CONSTRUCTOR, MCP_FIELD, MCP_METHOD, MCP_PARAMETER
+    }
+
+    public enum Type {
+        ADDED, REMOVED, RENAMED, MOVED, SIGNATURE_CHANGED, STATIC_CHANGED
+    }
+
+    /**
+     * A single change. The key identifies the entry (its SRG ID, or its class and name for entries without one), and
+     * the before and after values describe what changed.
+     */
+    public record Change(Type type, Element element, String key, @Nullable String before, @Nullable String after) {
+        public String write() {
+            return type + "\t" + element + '\t' + key + '\t' + Objects.requireNonNullElse(before, "-") + '\t'
+                + Objects.requireNonNullElse(after, "-");
+        }
+    }
+
+    private record ClassPair(SRGEntry.@Nullable Class from, SRGEntry.@Nullable Class to) {}
+
+    private final SRGDatabase from;
+    private final SRGDatabase to;
+    @Nullable
+    private final MCPDatabase fromMcp;
+    @Nullable
+    private final MCPDatabase toMcp;
+    private final Map<String, String> renamedClasses;
+    private final DescriptorRemapper signatureRemapper;
+    private final ImmutableListMultimap<SRGEntry.Class, SRGEntry.NamedMethod> fromNamedMethods;
+    private final ImmutableListMultimap<SRGEntry.Class, SRGEntry.NamedMethod> toNamedMethods;
+
+    private MappingDiff(SRGDatabase from, SRGDatabase to, @Nullable MCPDatabase fromMcp, @Nullable MCPDatabase toMcp) {
+        this.from = from;
+        this.to = to;
+        this.fromMcp = fromMcp;
+        this.toMcp = toMcp;
+        this.renamedClasses = findRenamedClasses(from, to);
+        this.signatureRemapper = new DescriptorRemapper(renamedClasses::get);
+        this.fromNamedMethods = Multimaps.index(from.namedMethods().values(), SRGEntry.ClassMember::parentClass);
+        this.toNamedMethods = Multimaps.index(to.namedMethods().values(), SRGEntry.ClassMember::parentClass);
+    }
+
+    public static List<Change> compare(SRGDatabase from, SRGDatabase to, @Nullable MCPDatabase fromMcp,
+        @Nullable MCPDatabase toMcp) {
+        final List<Change> changes = new ArrayList<>();
+        compare(from, to, fromMcp, toMcp, changes::add);
+        return changes;
+    }
+
+    /**
+     * Compares the databases, passing every change to the consumer in order. The consumer is only called from the
+     * calling thread, as the changes of each chunk come in.
+     */
+    public static void compare(SRGDatabase from, SRGDatabase to, @Nullable MCPDatabase fromMcp,
+        @Nullable MCPDatabase toMcp, Consumer<Change> consumer) {
+        new MappingDiff(from, to, fromMcp, toMcp).chunks().parallelStream()
+            .map(Supplier::get)
+            .forEachOrdered(changes -> changes.forEach(consumer));
+    }
+
+    /**
+     * Streams the changes to a file, one tab-separated change per line. Returns the number of changes.
+     */
+    public static int write(SRGDatabase from, SRGDatabase to, @Nullable MCPDatabase fromMcp,
+        @Nullable MCPDatabase toMcp, Path file) throws IOException {
+        final int[] count = {0};
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file), 1 << 16)) {
+            compare(from, to, fromMcp, toMcp, change -> {
+                try {
+                    writer.append(change.write()).append('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    private List<Supplier<List<Change>>> chunks() {
+        final List<ClassPair> classes = new ArrayList<>(from.classes().size() + 64);
+        final Set<String> matched = new HashSet<>();
+        for (SRGEntry.Class clz : from.classes().values()) {
+            final String name = renamedClasses.getOrDefault(clz.srgName(), clz.srgName());
+            classes.add(new ClassPair(clz, to.classes().get(name)));
+            matched.add(name);
+        }
+        for (SRGEntry.Class clz : to.classes().values()) {
+            if (!matched.contains(clz.srgName())) classes.add(new ClassPair(null, clz));
+        }
+
+        final List<Supplier<List<Change>>> chunks = new ArrayList<>();
+        for (int start = 0; start < classes.size(); start += CLASS_CHUNK_SIZE) {
+            final List<ClassPair> chunk = classes.subList(start, Math.min(start + CLASS_CHUNK_SIZE, classes.size()));
+            chunks.add(() -> compareClasses(chunk));
+        }
+        // Chunks hold the same number of IDs, as the IDs in use can be sparse
+        final BitSet ids = ids();
+        for (int start = ids.nextSetBit(0); start != -1; ) {
+            int end = start;
+            for (int count = 0; count < ID_CHUNK_SIZE && end != -1; count++) end = ids.nextSetBit(end + 1);
+            final BitSet chunk = ids.get(start, end != -1 ? end : ids.length());
+            final int offset = start;
+            chunks.add(() -> compareIDs(chunk, offset));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private BitSet ids() {
+        final BitSet ids = new BitSet();
+        addKeys(ids, from.fields().keySet());
+        addKeys(ids, to.fields().keySet());
+        addKeys(ids, from.numberedMethods().rowKeySet());
+        addKeys(ids, to.numberedMethods().rowKeySet());
+        addKeys(ids, from.constructors().keySet());
+        addKeys(ids, to.constructors().keySet());
+        if (fromMcp != null && toMcp != null) {
+            addKeys(ids, fromMcp.fields().keySet());
+            addKeys(ids, toMcp.fields().keySet());
+            addKeys(ids, fromMcp.methods().keySet());
+            addKeys(ids, toMcp.methods().keySet());
+            addKeys(ids, fromMcp.parameters().keySet());
+            addKeys(ids, toMcp.parameters().keySet());
+        }
+        return ids;
+    }
+
+    private static void addKeys(BitSet ids, Collection<Integer> keys) {
+        for (int key : keys) ids.set(key);
+    }
+
+    /**
+     * Maps each removed class to the added class which holds most of its fields and numbered methods, if any.
+     */
+    private static Map<String, String> findRenamedClasses(SRGDatabase from, SRGDatabase to) {
+        final Map<SRGEntry.Class, IntList> removedMembers = new LinkedHashMap<>();
+        for (SRGEntry.Class clz : from.classes().values()) {
+            if (!to.classes().containsKey(clz.srgName())) removedMembers.put(clz, new IntArrayList());
+        }
+        final Map<String, String> renamed = new HashMap<>();
+        if (removedMembers.isEmpty()) return renamed;
+
+        for (SRGEntry.Field field : from.fields().values()) {
+            final IntList members = removedMembers.get(field.parentClass());
+            if (members != null) members.add(field.srgID());
+        }
+        for (SRGEntry.NumberedMethod method : from.numberedMethods().values()) {
+            final IntList members = removedMembers.get(method.parentClass());
+            if (members != null) members.add(method.srgID());
+        }
+
+        final Set<String> claimed = new HashSet<>();
+        removedMembers.forEach((clz, members) -> {
+            final Object2IntMap<String> votes = new Object2IntOpenHashMap<>();
+            for (int i = 0; i < members.size(); i++) {
+                final SRGEntry.Class parent = to.idIndex().getParentClass(members.getInt(i));
+                if (parent != null && !from.classes().containsKey(parent.srgName())) {
+                    votes.mergeInt(parent.srgName(), 1, Integer::sum);
+                }
+            }
+            votes.object2IntEntrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .filter(vote -> vote.getIntValue() * 2 > members.size() && claimed.add(vote.getKey()))
+                .ifPresent(vote -> renamed.put(clz.srgName(), vote.getKey()));
+        });
+        return renamed;
+    }
+
+    private List<Change> compareClasses(List<ClassPair> classes) {
+        final List<Change> changes = new ArrayList<>();
+        for (ClassPair pair : classes) {
+            final SRGEntry.Class fromClass = pair.from();
+            final SRGEntry.Class toClass = pair.to();
+            if (toClass == null) {
+                changes.add(new Change(Type.REMOVED, Element.CLASS, fromClass.srgName(), fromClass.srgName(), null));
+                continue;
+            }
+            if (fromClass == null) {
+                changes.add(new Change(Type.ADDED, Element.CLASS, toClass.srgName(), null, toClass.srgName()));
+                continue;
+            }
+            if (!fromClass.srgName().equals(toClass.srgName())) {
+                changes.add(new Change(Type.RENAMED, Element.CLASS, fromClass.srgName(), fromClass.srgName(),
+                    toClass.srgName()));
+            }
+            compareEnumValues(fromClass, toClass, changes);
+            compareNamedMethods(fromClass, toClass, changes);
+        }
+        return changes;
+    }
+
+    private void compareEnumValues(SRGEntry.Class fromClass, SRGEntry.Class toClass, List<Change> changes) {
+        final Collection<SRGEntry.EnumValue> fromValues = from.enumValues().get(fromClass);
+        final Collection<SRGEntry.EnumValue> toValues = to.enumValues().get(toClass);
+        if (fromValues.isEmpty() && toValues.isEmpty()) return;
+        final Set<String> fromNames = new HashSet<>();
+        for (SRGEntry.EnumValue value : fromValues) fromNames.add(value.valueName());
+        final Set<String> toNames = new HashSet<>();
+        for (SRGEntry.EnumValue value : toValues) toNames.add(value.valueName());
+
+        for (String name : fromNames) {
+            if (!toNames.contains(name)) {
+                final String key = toClass.srgName() + '.' + name;
+                changes.add(new Change(Type.REMOVED, Element.ENUM_VALUE, key, key, null));
+            }
+        }
+        for (SRGEntry.EnumValue value : toValues) {
+            if (!fromNames.contains(value.valueName())) {
+                final String key = toClass.srgName() + '.' + value.valueName();
+                changes.add(new Change(Type.ADDED, Element.ENUM_VALUE, key, null, key));
+            }
+        }
+    }
+
+    private void compareNamedMethods(SRGEntry.Class fromClass, SRGEntry.Class toClass, List<Change> changes) {
+        final List<SRGEntry.NamedMethod> fromMethods = fromNamedMethods.get(fromClass);
+        final List<SRGEntry.NamedMethod> toMethods = toNamedMethods.get(toClass);
+        if (fromMethods.isEmpty() && toMethods.isEmpty()) return;
+        // Named methods have no ID, so a method with a changed signature is reported as removed and added
+        final Set<String> fromKeys = new HashSet<>();
+        for (SRGEntry.NamedMethod method : fromMethods) {
+            final String signature = signatureRemapper.remap(method.methodSignature());
+            fromKeys.add(toClass.srgName() + '.' + method.deobfName() + signature);
+        }
+        final Set<String> toKeys = new HashSet<>();
+        for (SRGEntry.NamedMethod method : toMethods) {
+            toKeys.add(toClass.srgName() + '.' + method.deobfName() + method.methodSignature());
+        }
+
+        for (String key : fromKeys) {
+            if (!toKeys.contains(key)) changes.add(new Change(Type.REMOVED, Element.NAMED_METHOD, key, key, null));
+        }
+        for (SRGEntry.NamedMethod method : toMethods) {
+            final String key = toClass.srgName() + '.' + method.deobfName() + method.methodSignature();
+            if (!fromKeys.contains(key)) changes.add(new Change(Type.ADDED, Element.NAMED_METHOD, key, null, key));
+        }
+    }
+
+    private List<Change> compareIDs(BitSet chunk, int offset) {
+        final List<Change> changes = new ArrayList<>();
+        for (int bit = chunk.nextSetBit(0); bit != -1; bit = chunk.nextSetBit(bit + 1)) {
+            final int id = offset + bit;
+            final String key = Integer.toString(id);
+            compareField(key, from.fields().get(id), to.fields().get(id), changes);
+            compareNumberedMethods(key, from.numberedMethods().row(id), to.numberedMethods().row(id), changes);
+            compareConstructor(key, from.constructors().get(id), to.constructors().get(id), changes);
+            if (fromMcp != null && toMcp != null) {
+                compareMCP(Element.MCP_FIELD, key, fromMcp.fields().get(id), toMcp.fields().get(id), changes);
+                compareMCP(Element.MCP_METHOD, key, fromMcp.methods().get(id), toMcp.methods().get(id), changes);
+                compareMCPParameters(key, fromMcp.getParametersForMethod(id), toMcp.getParametersForMethod(id),
+                    changes);
+            }
+        }
+        return changes;
+    }
+
+    private void compareField(String key, SRGEntry.@Nullable Field fromField, SRGEntry.@Nullable Field toField,
+        List<Change> changes) {
+        if (fromField == null && toField == null) return;
+        if (toField == null) {
+            changes.add(new Change(Type.REMOVED, Element.FIELD, key, describe(fromField), null));
+        } else if (fromField == null) {
+            changes.add(new Change(Type.ADDED, Element.FIELD, key, null, describe(toField)));
+        } else {
+            compareMember(Element.FIELD, key, fromField.parentClass(), fromField.srgName(), toField.parentClass(),
+                toField.srgName(), changes);
+        }
+    }
+
+    private void compareNumberedMethods(String key, ImmutableMap<SRGEntry.Class, SRGEntry.NumberedMethod> fromRow,
+        ImmutableMap<SRGEntry.Class, SRGEntry.NumberedMethod> toRow, List<Change> changes) {
+        if (fromRow.isEmpty() && toRow.isEmpty()) return;
+        if (fromRow.size() == 1 && toRow.size() == 1) { // Almost always, as duplicated IDs are rare
+            compareNumberedMethod(key, fromRow.values().iterator().next(), toRow.values().iterator().next(), changes);
+            return;
+        }
+        // Duplicated IDs are matched up by their (renamed) class
+        final Map<String, SRGEntry.NumberedMethod> unmatched = new LinkedHashMap<>();
+        for (SRGEntry.NumberedMethod method : toRow.values()) unmatched.put(method.parentClass().srgName(), method);
+        for (SRGEntry.NumberedMethod fromMethod : fromRow.values()) {
+            final String className = fromMethod.parentClass().srgName();
+            final SRGEntry.NumberedMethod toMethod = unmatched.remove(renamedClasses.getOrDefault(className,
+                className));
+            if (toMethod != null) {
+                compareNumberedMethod(key, fromMethod, toMethod, changes);
+            } else {
+                changes.add(new Change(Type.REMOVED, Element.NUMBERED_METHOD, key, describe(fromMethod), null));
+            }
+        }
+        for (SRGEntry.NumberedMethod toMethod : unmatched.values()) {
+            changes.add(new Change(Type.ADDED, Element.NUMBERED_METHOD, key, null, describe(toMethod)));
+        }
+    }
+
+    private void compareNumberedMethod(String key, SRGEntry.NumberedMethod fromMethod,
+        SRGEntry.NumberedMethod toMethod, List<Change> changes) {
+        compareMember(Element.NUMBERED_METHOD, key, fromMethod.parentClass(), fromMethod.srgName(),
+            toMethod.parentClass(), toMethod.srgName(), changes);
+        compareSignature(Element.NUMBERED_METHOD, key, fromMethod, toMethod, changes);
+        if (fromMethod.isStatic() != toMethod.isStatic()) {
+            changes.add(new Change(Type.STATIC_CHANGED, Element.NUMBERED_METHOD, key, staticness(fromMethod),
+                staticness(toMethod)));
+        }
+    }
+
+    private void compareConstructor(String key, SRGEntry.@Nullable Constructor fromConstructor,
+        SRGEntry.@Nullable Constructor toConstructor, List<Change> changes) {
+        if (fromConstructor == null && toConstructor == null) return;
+        if (toConstructor == null) {
+            changes.add(new Change(Type.REMOVED, Element.CONSTRUCTOR, key, describe(fromConstructor), null));
+        } else if (fromConstructor == null) {
+            changes.add(new Change(Type.ADDED, Element.CONSTRUCTOR, key, null, describe(toConstructor)));
+        } else {
+            compareMember(Element.CONSTRUCTOR, key, fromConstructor.parentClass(), "<init>",
+                toConstructor.parentClass(), "<init>", changes);
+            compareSignature(Element.CONSTRUCTOR, key, fromConstructor, toConstructor, changes);
+        }
+    }
+
+    private void compareMember(Element element, String key, SRGEntry.Class fromClass, String fromName,
+        SRGEntry.Class toClass, String toName, List<Change> changes) {
+        if (!fromName.equals(toName)) {
+            changes.add(new Change(Type.RENAMED, element, key, fromName, toName));
+        }
+        final String renamedClass = renamedClasses.getOrDefault(fromClass.srgName(), fromClass.srgName());
+        if (!renamedClass.equals(toClass.srgName())) {
+            changes.add(new Change(Type.MOVED, element, key, fromClass.srgName(), toClass.srgName()));
+        }
+    }
+
+    private void compareSignature(Element element, String key, SRGEntry.Method fromMethod, SRGEntry.Method toMethod,
+        List<Change> changes) {
+        if (!signatureRemapper.remap(fromMethod.methodSignature()).equals(toMethod.methodSignature())) {
+            changes.add(new Change(Type.SIGNATURE_CHANGED, element, key, fromMethod.methodSignature(),
+                toMethod.methodSignature()));
+        }
+    }
+
+    private static void compareMCP(Element element, String key, @Nullable MCPEntry fromEntry,
+        @Nullable MCPEntry toEntry, List<Change> changes) {
+        if (fromEntry == null && toEntry == null) return;
+        if (toEntry == null) {
+            changes.add(new Change(Type.REMOVED, element, key, fromEntry.name(), null));
+        } else if (fromEntry == null) {
+            changes.add(new Change(Type.ADDED, element, key, null, toEntry.name()));
+        } else if (!fromEntry.name().equals(toEntry.name())) {
+            changes.add(new Change(Type.RENAMED, element, key, fromEntry.name(), toEntry.name()));
+        }
+    }
+
+    private static void compareMCPParameters(String key, Collection<MCPEntry.Parameter> fromParameters,
+        Collection<MCPEntry.Parameter> toParameters, List<Change> changes) {
+        if (fromParameters.isEmpty() && toParameters.isEmpty()) return;
+        // The same parameter may be listed more than once (for each side), so duplicates are matched up in order
+        final ListMultimap<String, MCPEntry.Parameter> unmatched = MultimapBuilder.linkedHashKeys().arrayListValues()
+            .build();
+        for (MCPEntry.Parameter parameter : toParameters) unmatched.put(parameterKey(key, parameter), parameter);
+        for (MCPEntry.Parameter parameter : fromParameters) {
+            final String parameterKey = parameterKey(key, parameter);
+            final List<MCPEntry.Parameter> candidates = unmatched.get(parameterKey);
+            compareMCP(Element.MCP_PARAMETER, parameterKey, parameter,
+                candidates.isEmpty() ? null : candidates.remove(0), changes);
+        }
+        unmatched.forEach((parameterKey, parameter) -> compareMCP(Element.MCP_PARAMETER, parameterKey, null,
+            parameter, changes));
+    }
+
+    private static String parameterKey(String methodKey, MCPEntry.Parameter parameter) {
+        final String prefix = parameter instanceof MCPEntry.ConstructorParameter ? "i" : "";
+        return prefix + methodKey + '_' + parameter.index();
+    }
+
+    private static String describe(SRGEntry.Field field) {
+        return field.parentClass().srgName() + '.' + field.srgName();
+    }
+
+    private static String describe(SRGEntry.NumberedMethod method) {
+        return method.parentClass().srgName() + '.' + method.srgName() + method.methodSignature();
+    }
+
+    private static String describe(SRGEntry.Constructor constructor) {
+        return constructor.parentClass().srgName() + ".<init>" + constructor.methodSignature();
+    }
+
+    private static String staticness(SRGEntry.Method method) {
+        return method.isStatic() ? "static" : "instance";
+    }
+}
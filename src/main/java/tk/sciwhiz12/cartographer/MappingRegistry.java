@@ -0,0 +1,192 @@
+package tk.sciwhiz12.cartographer;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.hash.HashCode;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.util.DatabaseCache;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static tk.sciwhiz12.cartographer.util.Logging.logf;
+
+/**
+ * The mapping versions in a directory, loaded on demand. Each version is a folder with the same {@code config} and
+ * {@code mcp} layout as a single version.
+ *
+ * <p>Loaded versions share their identical entries and strings (see {@link SharedEntries}), and SRG databases go
+ * through the same cache as a single version. Once the estimated heap size of the loaded versions is over the
+ * budget, the least recently used versions are dropped.</p>
+ */
+public final class MappingRegistry {
+    private final Path directory;
+    private final DatabaseCache cache;
+    private final boolean binaryDatabase;
+    private final long heapBudget;
+    private final SharedEntries sharedEntries = new SharedEntries();
+    // The entries of the loaded versions, added once loaded and removed once evicted
+    private final SharedEntries.HeapEstimate entriesSize = new SharedEntries.HeapEstimate();
+    private long searchSize; // Guarded by this
+    // Access ordered, so the least recently used version comes first
+    private final Map<String, CompletableFuture<MappingVersion>> versions = new LinkedHashMap<>(16, 0.75f, true);
+
+    public record MappingVersion(String name, SRGDatabase srg, MCPDatabase mcp, NameSearch search) {}
+
+    public MappingRegistry(Path directory, DatabaseCache cache, boolean binaryDatabase, long heapBudget) {
+        this.directory = directory;
+        this.cache = cache;
+        this.binaryDatabase = binaryDatabase;
+        this.heapBudget = heapBudget;
+    }
+
+    public List<String> availableVersions() throws IOException {
+        try (Stream<Path> folders = Files.list(directory)) {
+            return folders.filter(folder -> Files.isRegularFile(folder.resolve(Main.TSRG)))
+                .map(folder -> folder.getFileName().toString())
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The names of the loaded versions, from least to most recently used.
+     */
+    public synchronized List<String> loadedVersions() {
+        final List<String> loaded = new ArrayList<>(versions.size());
+        versions.forEach((name, version) -> {
+            if (version.isDone() && !version.isCompletedExceptionally()) loaded.add(name);
+        });
+        return loaded;
+    }
+
+    /**
+     * The estimated heap size of the loaded versions, counting their shared entries once.
+     */
+    public synchronized long estimatedSize() {
+        long nameIndexSize = 0;
+        for (CompletableFuture<MappingVersion> version : versions.values()) {
+            if (version.isDone() && !version.isCompletedExceptionally()) {
+                nameIndexSize += SharedEntries.nameIndexSize(version.join().srg(), version.join().mcp());
+            }
+        }
+        return entriesSize.bytes() + searchSize + nameIndexSize;
+    }
+
+    /**
+     * Returns the given version, loading it first if it is not loaded. Concurrent requests for a version which is
+     * being loaded wait for that load instead of starting another.
+     *
+     * @throws IllegalArgumentException if there is no such version in the directory
+     */
+    public MappingVersion get(String name) throws IOException {
+        final CompletableFuture<MappingVersion> version;
+        final boolean load;
+        synchronized (this) {
+            final CompletableFuture<MappingVersion> existing = versions.get(name);
+            load = existing == null;
+            version = load ? new CompletableFuture<>() : existing;
+            if (load) versions.put(name, version);
+        }
+        if (load) {
+            try {
+                version.complete(load(name));
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    versions.remove(name, version);
+                }
+                version.completeExceptionally(e);
+                throw e;
+            }
+            evict(name);
+        }
+        try {
+            return version.join();
+        } catch (CompletionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw e;
+        }
+    }
+
+    private MappingVersion load(String name) throws IOException {
+        final Path root = directory.resolve(name);
+        if (!root.getParent().equals(directory) || !Files.isRegularFile(root.resolve(Main.TSRG))) {
+            throw new IllegalArgumentException("Unknown mapping version " + name);
+        }
+        logf("Loading mapping version %s...%n", name);
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final StringPool stringPool = new StringPool();
+
+        final Path tsrg = root.resolve(Main.TSRG);
+        final Path staticMethods = root.resolve(Main.STATIC_METHODS);
+        final Path constructors = root.resolve(Main.CONSTRUCTORS);
+        final HashCode srgInputs = DatabaseCache.digest(tsrg, staticMethods, constructors);
+        final String extension = binaryDatabase ? "bin" : "txt";
+
+        SRGDatabase srgDatabase = null;
+        final Path databaseFile = cache.lookup("srg", srgInputs, extension);
+        if (databaseFile != null) {
+            try {
+                srgDatabase = Main.readDatabase(databaseFile, binaryDatabase, stringPool);
+            } catch (IOException e) {
+                logf("Cannot read cached SRG database, discarding it: %s%n", e.getMessage());
+                cache.invalidate(databaseFile);
+            }
+        }
+        if (srgDatabase == null) {
+            final SRGDatabase database = SRGDatabase.parse(Files.readAllLines(tsrg),
+                Files.readAllLines(staticMethods), Files.readAllLines(constructors), true, stringPool);
+            cache.store("srg", srgInputs, extension,
+                file -> Main.writeDatabase(database, file, binaryDatabase, false));
+            srgDatabase = database;
+        }
+        final MCPDatabase mcpDatabase = MCPDatabase.parse(root.resolve(Main.FIELDS), root.resolve(Main.METHODS),
+            root.resolve(Main.PARAMS), stringPool);
+
+        final SRGDatabase sharedSrg = sharedEntries.share(srgDatabase);
+        final MCPDatabase sharedMcp = sharedEntries.share(mcpDatabase);
+        final MappingVersion version = new MappingVersion(name, sharedSrg, sharedMcp,
+            NameSearch.build(sharedSrg, sharedMcp));
+        entriesSize.add(sharedSrg);
+        entriesSize.add(sharedMcp);
+        final long versionSearchSize = version.search().estimatedSize();
+        synchronized (this) {
+            searchSize += versionSearchSize;
+        }
+        stopwatch.stop();
+
+        logf("Loaded mapping version %s in %s%n", name, stopwatch.elapsed());
+        return version;
+    }
+
+    private synchronized void evict(String keep) {
+        long size = estimatedSize();
+        final Iterator<Map.Entry<String, CompletableFuture<MappingVersion>>> iterator = versions.entrySet().iterator();
+        while (size > heapBudget && iterator.hasNext()) {
+            final Map.Entry<String, CompletableFuture<MappingVersion>> entry = iterator.next();
+            final CompletableFuture<MappingVersion> version = entry.getValue();
+            if (entry.getKey().equals(keep) || !version.isDone() || version.isCompletedExceptionally()) continue;
+            logf("Evicting mapping version %s%n", entry.getKey());
+            iterator.remove();
+            // Entries of the evicted version may still be used by the others, which the estimate keeps count of
+            final MappingVersion evicted = version.join();
+            entriesSize.remove(evicted.srg());
+            entriesSize.remove(evicted.mcp());
+            searchSize -= evicted.search().estimatedSize();
+            size = estimatedSize();
+        }
+        logf("Loaded mapping versions take ~%d KiB%n", size / 1024);
+    }
+}
@@ -0,0 +1,145 @@
+package tk.sciwhiz12.cartographer;
+
+import com.google.common.base.Stopwatch;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGLookup;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static tk.sciwhiz12.cartographer.util.Logging.logf;
+
+/**
+ * The currently loaded mappings of a single version, which are replaced by reloading them from the mappings files
+ * while queries are still being answered.
+ *
+ * <p>Reloads run on a background thread. Once the new databases are fully loaded they are published with a single
+ * reference swap, so queries which already got the previous mappings finish against them, and later queries see the
+ * new ones. If a reload fails, the previous mappings stay in use. Both mappings are on the heap during a reload.</p>
+ */
+public final class MappingReloader implements Supplier<MappingReloader.Mappings> {
+    // Files are usually replaced one at a time, so reloads wait until none have changed for this long
+    private static final long WATCH_QUIET_PERIOD_MILLIS = 2000;
+
+    private final Loader loader;
+    private final AtomicReference<Mappings> current;
+    // The running reload and the one requested while it runs, both guarded by this
+    @Nullable
+    private CompletableFuture<Mappings> running;
+    @Nullable
+    private CompletableFuture<Mappings> queued;
+    private int generation = 1;
+
+    /**
+     * The databases of one load of the mappings, which are queried together.
+     *
+     * @param search the name search, or null if it was not built
+     */
+    public record Mappings(SRGLookup srg, MCPDatabase mcp, @Nullable NameSearch search) {}
+
+    @FunctionalInterface
+    public interface Loader {
+        Mappings load() throws IOException;
+    }
+
+    public MappingReloader(Mappings initial, Loader loader) {
+        this.loader = loader;
+        this.current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * The most recently published mappings. Callers should get them once for each query (or batch of queries), so the
+     * query is answered from one consistent set of databases.
+     */
+    @Override
+    public Mappings get() {
+        return current.get();
+    }
+
+    /**
+     * Reloads the mappings in the background. A reload requested while another is running starts once that one is
+     * done, as the files may have changed after they were read; further requests until then share that reload.
+     *
+     * @return the reloaded mappings once they are published
+     */
+    public synchronized CompletableFuture<Mappings> reload() {
+        if (running == null) {
+            running = new CompletableFuture<>();
+            start(running);
+            return running;
+        }
+        if (queued == null) queued = new CompletableFuture<>();
+        return queued;
+    }
+
+    private void start(CompletableFuture<Mappings> future) {
+        final int number = ++generation;
+        final Thread thread = new Thread(() -> {
+            logf("Reloading mappings (generation %d) in the background...%n", number);
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            try {
+                final Mappings mappings = loader.load();
+                current.set(mappings);
+                logf("Reloaded mappings (generation %d), time elapsed: %s%n", number, stopwatch.elapsed());
+                finish();
+                future.complete(mappings);
+            } catch (Throwable e) {
+                logf("Reloading mappings failed after %s, keeping the previous mappings: %s%n", stopwatch.elapsed(),
+                    e);
+                finish();
+                future.completeExceptionally(e);
+            }
+        }, "mapping-reload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private synchronized void finish() {
+        running = queued;
+        queued = null;
+        if (running != null) start(running);
+    }
+
+    /**
+     * Reloads the mappings whenever files in the given directories are created or modified, once they have stopped
+     * changing. The directories are watched on a daemon thread until the process ends.
+     */
+    public void watch(Path... directories) throws IOException {
+        final WatchService watcher = FileSystems.getDefault().newWatchService();
+        for (Path directory : directories) directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+        final Thread thread = new Thread(() -> {
+            try (watcher) {
+                while (true) {
+                    drain(watcher.take());
+                    // Wait for the remaining files of the same update
+                    WatchKey key;
+                    while ((key = watcher.poll(WATCH_QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                        drain(key);
+                    }
+                    logf("Mappings files changed%n");
+                    reload();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException | IOException e) {
+                // The watch ends with the process
+            }
+        }, "mapping-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+}
@@ -0,0 +1,273 @@
+package tk.sciwhiz12.cartographer;
+
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Case-insensitive search of the class names, SRG names and MCP names of a mapping version, by prefix or by
+ * similarity.
+ *
+ * <p>The distinct names are kept in a sorted array, so the names with a prefix are one contiguous range found by
+ * binary search. Similar names are found through an index from each trigram (three consecutive characters) to the
+ * names containing it, and ranked by the share of trigrams they have in common with the query. Class names are found
+ * by both their full and their simple name; MCP parameter names are not searched, as they are reused too much to be
+ * useful suggestions.</p>
+ */
+public final class NameSearch {
+    // Larger limits are lowered to this, as each search holds that many candidates
+    public static final int MAX_LIMIT = 1000;
+    // Names which share less of their trigrams with the query are not suggested
+    private static final double MIN_SIMILARITY = 0.3;
+    private static final Comparator<String> NAME_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(
+        Comparator.naturalOrder());
+
+    private final Term[] terms;
+    private final Long2ObjectMap<int[]> trigrams;
+    private final short[] trigramCounts;
+
+    /**
+     * A name which matched a search, with every entry of that name.
+     *
+     * @param score above 1 for names with the query as their prefix (2 for the query itself), and the similarity
+     *              between 0 and 1 otherwise
+     */
+    public record Hit(String name, double score, List<SRGEntry> srgEntries, List<MCPEntry> mcpEntries) {}
+
+    private record Term(String name, ImmutableList<SRGEntry> srgEntries, ImmutableList<MCPEntry> mcpEntries) {}
+
+    /**
+     * Hits are ranked by score, then shorter names first, then by name. Terms are sorted by name, so their index
+     * stands in for the name.
+     */
+    private record Candidate(int term, int length, double score) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            if (score != other.score) return score > other.score ? -1 : 1;
+            if (length != other.length) return length < other.length ? -1 : 1;
+            return Integer.compare(term, other.term);
+        }
+
+        boolean isBetterThan(int otherLength, double otherScore, int otherTerm) {
+            if (score != otherScore) return score > otherScore;
+            if (length != otherLength) return length < otherLength;
+            return term < otherTerm;
+        }
+    }
+
+    private NameSearch(Term[] terms, Long2ObjectMap<int[]> trigrams, short[] trigramCounts) {
+        this.terms = terms;
+        this.trigrams = trigrams;
+        this.trigramCounts = trigramCounts;
+    }
+
+    /**
+     * Builds the search over the names of the given databases. Without an SRG database (such as when it is memory
+     * mapped), only the MCP names can be searched.
+     */
+    public static NameSearch build(@Nullable SRGDatabase srg, MCPDatabase mcp) {
+        final Map<String, TermBuilder> builders = new HashMap<>();
+        if (srg != null) {
+            for (SRGEntry.Class clz : srg.classes().values()) {
+                builders.computeIfAbsent(clz.srgName(), TermBuilder::new).srgEntries.add(clz);
+                final String simpleName = clz.srgName().substring(clz.srgName().lastIndexOf('/') + 1);
+                if (!simpleName.equals(clz.srgName())) {
+                    builders.computeIfAbsent(simpleName, TermBuilder::new).srgEntries.add(clz);
+                }
+            }
+            for (SRGEntry.Field field : srg.fields().values()) {
+                builders.computeIfAbsent(field.srgName(), TermBuilder::new).srgEntries.add(field);
+            }
+            for (SRGEntry.EnumValue value : srg.enumValues().values()) {
+                builders.computeIfAbsent(value.valueName(), TermBuilder::new).srgEntries.add(value);
+            }
+            for (SRGEntry.NumberedMethod method : srg.numberedMethods().values()) {
+                builders.computeIfAbsent(method.srgName(), TermBuilder::new).srgEntries.add(method);
+            }
+            for (SRGEntry.NamedMethod method : srg.namedMethods().values()) {
+                builders.computeIfAbsent(method.deobfName(), TermBuilder::new).srgEntries.add(method);
+            }
+        }
+        for (int id : sortedIDs(mcp.fields().keySet().toIntArray())) {
+            final MCPEntry.Field field = mcp.fields().get(id);
+            builders.computeIfAbsent(field.name(), TermBuilder::new).mcpEntries.add(field);
+        }
+        for (int id : sortedIDs(mcp.methods().keySet().toIntArray())) {
+            final MCPEntry.Method method = mcp.methods().get(id);
+            builders.computeIfAbsent(method.name(), TermBuilder::new).mcpEntries.add(method);
+        }
+
+        final Term[] terms = builders.values().stream()
+            .map(builder -> new Term(builder.name, ImmutableList.copyOf(builder.srgEntries),
+                ImmutableList.copyOf(builder.mcpEntries)))
+            .sorted(Comparator.comparing(Term::name, NAME_ORDER))
+            .toArray(Term[]::new);
+
+        final Long2ObjectMap<IntArrayList> postings = new Long2ObjectOpenHashMap<>();
+        final short[] trigramCounts = new short[terms.length];
+        final LongSet termTrigrams = new LongOpenHashSet();
+        for (int i = 0; i < terms.length; i++) {
+            termTrigrams.clear();
+            addTrigrams(terms[i].name(), termTrigrams);
+            trigramCounts[i] = (short) Math.min(termTrigrams.size(), Short.MAX_VALUE);
+            for (long trigram : termTrigrams) postings.computeIfAbsent(trigram, key -> new IntArrayList()).add(i);
+        }
+        final Long2ObjectMap<int[]> trigrams = new Long2ObjectOpenHashMap<>(postings.size());
+        for (Long2ObjectMap.Entry<IntArrayList> entry : postings.long2ObjectEntrySet()) {
+            trigrams.put(entry.getLongKey(), entry.getValue().toIntArray());
+        }
+
+        return new NameSearch(terms, trigrams, trigramCounts);
+    }
+
+    private static int[] sortedIDs(int[] ids) {
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * The names starting with the query (ignoring case) first, followed by the names most similar to it.
+     */
+    public List<Hit> search(String query, int limit) {
+        limit = clampLimit(limit);
+        final List<Hit> hits = new ArrayList<>(prefix(query, limit));
+        if (hits.size() < limit) {
+            final Set<String> found = hits.stream().map(Hit::name).collect(Collectors.toSet());
+            for (Hit hit : similar(query, limit)) {
+                if (hits.size() == limit) break;
+                if (!found.contains(hit.name())) hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * The names starting with the query, ignoring case. The query itself comes first, then shorter names.
+     */
+    public List<Hit> prefix(String query, int limit) {
+        limit = clampLimit(limit);
+        final PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+        for (int i = lowerBound(query); i < terms.length; i++) {
+            final String name = terms[i].name();
+            if (!name.regionMatches(true, 0, query, 0, query.length())) break;
+            offer(best, i, 1 + (double) query.length() / name.length(), limit);
+        }
+        return hits(best);
+    }
+
+    /**
+     * The names most similar to the query, ignoring case.
+     */
+    public List<Hit> similar(String query, int limit) {
+        limit = clampLimit(limit);
+        final LongSet queryTrigrams = new LongOpenHashSet();
+        addTrigrams(query, queryTrigrams);
+        // Counts the trigrams each name has in common with the query, only for the names with any in common
+        final Int2IntOpenHashMap common = new Int2IntOpenHashMap();
+        for (long trigram : queryTrigrams) {
+            final int[] termIndexes = trigrams.get(trigram);
+            if (termIndexes == null) continue;
+            for (int term : termIndexes) common.addTo(term, 1);
+        }
+
+        final PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+        for (Int2IntMap.Entry entry : Int2IntMaps.fastIterable(common)) {
+            final int term = entry.getIntKey();
+            final double similarity = 2.0 * entry.getIntValue() / (queryTrigrams.size() + trigramCounts[term]);
+            if (similarity < MIN_SIMILARITY) continue;
+            offer(best, term, similarity, limit);
+        }
+        return hits(best);
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * Estimates the heap taken by the search, apart from the names and entries themselves.
+     */
+    public long estimatedSize() {
+        long bytes = (long) terms.length * (32 + 2 * 16 + 2); // Term, its two entry lists and trigram count
+        for (int[] termIndexes : trigrams.values()) bytes += 16 + 32 + (long) termIndexes.length * Integer.BYTES;
+        return bytes;
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(0, Math.min(limit, MAX_LIMIT));
+    }
+
+    private int lowerBound(String query) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(terms[mid].name(), query) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void offer(PriorityQueue<Candidate> best, int term, double score, int limit) {
+        final int length = terms[term].name().length();
+        // The worst candidate is at the head, so most names are rejected without creating a candidate
+        if (best.size() == limit && (limit == 0 || best.peek().isBetterThan(length, score, term))) return;
+        best.add(new Candidate(term, length, score));
+        if (best.size() > limit) best.poll();
+    }
+
+    private List<Hit> hits(PriorityQueue<Candidate> best) {
+        final Candidate[] candidates = best.toArray(new Candidate[0]);
+        Arrays.sort(candidates);
+        final List<Hit> hits = new ArrayList<>(candidates.length);
+        for (Candidate candidate : candidates) {
+            final Term term = terms[candidate.term()];
+            hits.add(new Hit(term.name(), candidate.score(), term.srgEntries(), term.mcpEntries()));
+        }
+        return hits;
+    }
+
+    /**
+     * Adds the trigrams of the lower-cased name, which is padded with a character at each end so the start and end of
+     * the name (and names shorter than three characters) have trigrams of their own.
+     */
+    private static void addTrigrams(String name, LongSet trigrams) {
+        long window = 0;
+        for (int i = 0; i <= name.length() + 1; i++) {
+            final char ch = i == 0 || i > name.length() ? 0 : Character.toLowerCase(name.charAt(i - 1));
+            window = (window << 16 | ch) & 0xFFFF_FFFF_FFFFL;
+            if (i >= 2) trigrams.add(window);
+        }
+    }
+
+    private static final class TermBuilder {
+        final String name;
+        final List<SRGEntry> srgEntries = new ArrayList<>(1);
+        final List<MCPEntry> mcpEntries = new ArrayList<>(1);
+
+        TermBuilder(String name) {
+            this.name = name;
+        }
+    }
+}
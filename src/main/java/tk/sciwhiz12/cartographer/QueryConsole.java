@@ -1,11 +1,13 @@
 package tk.sciwhiz12.cartographer;
 
 import com.google.common.base.Stopwatch;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
 import tk.sciwhiz12.cartographer.mcp.MCPEntry;
 import tk.sciwhiz12.cartographer.srg.SRGDatabase;
 import tk.sciwhiz12.cartographer.srg.SRGDatabaseDebuggingWriter;
 import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.srg.SRGLookup;
 import tk.sciwhiz12.cartographer.util.AccessTransformers;
 
 import java.io.InputStream;
@@ -13,19 +15,46 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 
 public class QueryConsole implements Runnable {
-    private final SRGDatabase srgDatabase;
-    private final MCPDatabase mcpDatabase;
+    // Lookups by name may match thousands of entries, such as every member reobfuscated to "a"
+    private static final int MAX_RESULTS = 50;
+
+    @Nullable
+    private final MappingRegistry registry;
+    @Nullable
+    private final MappingReloader reloader;
+    @Nullable
+    private SRGLookup srgDatabase;
+    @Nullable
+    private MCPDatabase mcpDatabase;
+    @Nullable
+    private NameSearch search;
     private final Scanner input;
 
-    public QueryConsole(SRGDatabase srgDatabase, MCPDatabase mcpDatabase, InputStream input) {
-        this.srgDatabase = srgDatabase;
-        this.mcpDatabase = mcpDatabase;
+    /**
+     * A console which queries the most recently loaded mappings of a single version, which may be reloaded with the
+     * {@code reload} command.
+     */
+    public QueryConsole(MappingReloader reloader, InputStream input) {
+        this.registry = null;
+        this.reloader = reloader;
+        this.input = new Scanner(input);
+    }
+
+    /**
+     * A console which queries the version selected with the {@code version} command.
+     */
+    public QueryConsole(MappingRegistry registry, InputStream input) {
+        this.registry = registry;
+        this.reloader = null;
         this.input = new Scanner(input);
     }
 
@@ -37,24 +66,92 @@ public class QueryConsole implements Runnable {
             try {
                 System.out.print(" > ");
                 String line = input.nextLine();
+                if (reloader != null) {
+                    // Each command is answered from the same mappings, even if a reload finishes meanwhile
+                    MappingReloader.Mappings mappings = reloader.get();
+                    srgDatabase = mappings.srg();
+                    mcpDatabase = mappings.mcp();
+                    search = mappings.search();
+                }
                 List<String> splits = Arrays.asList(line.split(" "));
                 switch (splits.get(0)) {
                     case "close", "stop", "quit" -> {
                         break loop;
                     }
+                    case "versions" -> {
+                        if (registry == null) {
+                            System.out.println("Only a single mapping version is loaded.");
+                        } else {
+                            System.out.printf("Available versions: %s%n", registry.availableVersions());
+                            System.out.printf("Loaded versions: %s (~%d KiB)%n", registry.loadedVersions(),
+                                registry.estimatedSize() / 1024);
+                        }
+                    }
+                    case "version" -> {
+                        if (registry == null) {
+                            System.out.println("Only a single mapping version is loaded.");
+                        } else if (splits.size() < 2) {
+                            System.out.println("Please specify a mapping version.");
+                        } else {
+                            MappingRegistry.MappingVersion version = registry.get(splits.get(1));
+                            srgDatabase = version.srg();
+                            mcpDatabase = version.mcp();
+                            search = version.search();
+                            System.out.printf("Querying mapping version %s.%n", version.name());
+                        }
+                    }
+                    case "reload" -> {
+                        if (reloader == null) {
+                            System.out.println("Only a single mapping version can be reloaded; new versions in the "
+                                + "versions folder are available without reloading.");
+                        } else {
+                            reloader.reload();
+                            System.out.println("Reloading the mappings in the background, queries are answered "
+                                + "from the current mappings until it is done.");
+                        }
+                    }
+                    case "diff" -> {
+                        if (registry == null) {
+                            System.out.println("Only a single mapping version is loaded.");
+                        } else if (splits.size() < 3) {
+                            System.out.println("Please specify the two mapping versions to compare.");
+                        } else {
+                            MappingRegistry.MappingVersion from = registry.get(splits.get(1));
+                            MappingRegistry.MappingVersion to = registry.get(splits.get(2));
+                            Stopwatch stopwatch = Stopwatch.createStarted();
+                            if (splits.size() >= 4) {
+                                Path output = Path.of(splits.get(3));
+                                int count = MappingDiff.write(from.srg(), to.srg(), from.mcp(), to.mcp(), output);
+                                System.out.printf("Wrote %d changes to %s%n", count, output);
+                            } else {
+                                Map<String, Integer> counts = new TreeMap<>();
+                                MappingDiff.compare(from.srg(), to.srg(), from.mcp(), to.mcp(), change ->
+                                    counts.merge(change.type() + " " + change.element(), 1, Integer::sum));
+                                counts.forEach((change, count) -> System.out.printf("   %s: %d%n", change, count));
+                            }
+                            stopwatch.stop();
+                            System.out.printf("Time elapsed for diff: %s%n", stopwatch.elapsed());
+                        }
+                    }
                     case "debug_export" -> {
                         if (splits.size() < 2) {
                             System.out.println("Please specify an output file for the debug SRG export.");
+                        } else if (!(srgDatabase instanceof SRGDatabase database)) {
+                            System.out.println("Debug SRG export needs the fully loaded SRG database.");
                         } else {
                             Path output = Path.of(splits.get(1));
                             System.out.printf("Writing debug SRG export to %s...%n", output);
                             Stopwatch stopwatch = Stopwatch.createStarted();
-                            Files.write(output, SRGDatabaseDebuggingWriter.write(srgDatabase), CREATE, TRUNCATE_EXISTING);
+                            Files.write(output, SRGDatabaseDebuggingWriter.write(database), CREATE, TRUNCATE_EXISTING);
                             stopwatch.stop();
                             System.out.printf("Time elapsed for debug export: %s%n", stopwatch.elapsed());
                         }
                     }
                     case "id" -> {
+                        if (srgDatabase == null || mcpDatabase == null) {
+                            System.out.println("Please select a mapping version first.");
+                            break;
+                        }
                         int id = Integer.parseInt(splits.get(1));
                         final SRGEntry srgEntry = srgDatabase.getEntryForID(id);
                         if (srgEntry != null) {
@@ -71,6 +168,56 @@ public class QueryConsole implements Runnable {
                         } else
                             System.out.println("No entry found for that ID!");
                     }
+                    case "obf", "srg" -> {
+                        if (splits.size() < 2) {
+                            System.out.println("Please specify a name to look up.");
+                        } else if (!(srgDatabase instanceof SRGDatabase database) || mcpDatabase == null) {
+                            System.out.println("Lookups by name need the fully loaded SRG database.");
+                        } else if (splits.get(0).equals("obf")) {
+                            printEntries(findReobf(database, splits.get(1)));
+                        } else {
+                            printEntries(database.getEntriesBySrgName(splits.get(1)));
+                        }
+                    }
+                    case "mcp" -> {
+                        if (srgDatabase == null || mcpDatabase == null) {
+                            System.out.println("Please select a mapping version first.");
+                        } else if (splits.size() < 2) {
+                            System.out.println("Please specify a name to look up.");
+                        } else {
+                            List<MCPEntry> entries = mcpDatabase.getEntriesByName(splits.get(1));
+                            List<MCPEntry.Parameter> parameters = mcpDatabase.getParametersByName(splits.get(1));
+                            if (entries.isEmpty() && parameters.isEmpty()) {
+                                System.out.println("No entry found for that name!");
+                            }
+                            printResults(entries, entry -> {
+                                System.out.printf("Entry for MCP name: %s%n", entry);
+                                final SRGEntry srgEntry = srgDatabase.getEntryForID(entry.srgID());
+                                if (srgEntry != null) System.out.printf("   SRG entry: %s%n", srgEntry);
+                            });
+                            printResults(parameters, parameter -> System.out.printf("Parameter for MCP name: %s%n",
+                                parameter));
+                        }
+                    }
+                    case "search" -> {
+                        if (search == null) {
+                            System.out.println("Please select a mapping version first.");
+                        } else if (splits.size() < 2 || splits.get(1).isEmpty()) {
+                            System.out.println("Please specify a name to search for.");
+                        } else {
+                            int limit = splits.size() >= 3 ? Integer.parseInt(splits.get(2)) : 10;
+                            List<NameSearch.Hit> hits = search.search(splits.get(1), limit);
+                            if (hits.isEmpty()) System.out.println("No names found!");
+                            for (NameSearch.Hit hit : hits) {
+                                System.out.printf("%s (%.2f): %d SRG entries, %d MCP entries%n", hit.name(),
+                                    hit.score(), hit.srgEntries().size(), hit.mcpEntries().size());
+                                hit.srgEntries().stream().limit(3).forEach(entry ->
+                                    System.out.printf("   SRG entry: %s%n", entry));
+                                hit.mcpEntries().stream().limit(3).forEach(entry ->
+                                    System.out.printf("   MCP entry: %s%n", entry));
+                            }
+                        }
+                    }
                     default -> System.out.println("Unknown command.");
                 }
                 System.out.println();
@@ -79,4 +226,34 @@ public class QueryConsole implements Runnable {
             }
         }
     }
+
+    /**
+     * Finds a reobfuscated class ({@code abc}), member ({@code d}) or member of a class ({@code abc.d}).
+     */
+    static List<? extends SRGEntry> findReobf(SRGDatabase database, String name) {
+        final List<SRGEntry.Class> classes = database.getClassesByReobfName(name);
+        if (!classes.isEmpty()) return classes;
+        final int separator = name.lastIndexOf('.');
+        if (separator == -1) return database.getMembersByReobfName(name);
+        return database.getMembersByReobfName(name.substring(0, separator), name.substring(separator + 1));
+    }
+
+    private void printEntries(List<? extends SRGEntry> entries) {
+        if (entries.isEmpty()) {
+            System.out.println("No entry found for that name!");
+            return;
+        }
+        printResults(entries, entry -> {
+            System.out.printf("Entry for name: %s%n", entry);
+            if (entry instanceof SRGEntry.HasID hasID && mcpDatabase != null) {
+                final MCPEntry mcpEntry = mcpDatabase.getEntryForID(hasID.srgID());
+                if (mcpEntry != null) System.out.printf("   MCP entry: %s%n", mcpEntry);
+            }
+        });
+    }
+
+    private static <T> void printResults(List<T> results, Consumer<T> printer) {
+        results.stream().limit(MAX_RESULTS).forEach(printer);
+        if (results.size() > MAX_RESULTS) System.out.printf("... and %d more%n", results.size() - MAX_RESULTS);
+    }
 }
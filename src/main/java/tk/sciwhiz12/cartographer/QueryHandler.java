@@ -0,0 +1,283 @@
+package tk.sciwhiz12.cartographer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.srg.SRGLookup;
+import tk.sciwhiz12.cartographer.util.AccessTransformers;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static tk.sciwhiz12.cartographer.util.JsonLines.field;
+import static tk.sciwhiz12.cartographer.util.JsonLines.name;
+import static tk.sciwhiz12.cartographer.util.JsonLines.separate;
+import static tk.sciwhiz12.cartographer.util.JsonLines.string;
+
+/**
+ * Answers the console queries with one JSON object each, for the batch mode and the query server.
+ *
+ * <p>Handlers only read the databases, which are immutable, so one handler may answer queries from many threads.</p>
+ *
+ * <pre>
+ *   &lt;id&gt; | id &lt;id&gt;      the entry with the SRG ID: {"type":"numbered_method","id":1006,"srg":"func_1006_e",...}
+ *   at &lt;id&gt;             {"id":1006,"at":"public ..."}
+ *   params &lt;id&gt;         {"id":1006,"params":[{"slot":1,"mcp":"pos","side":"BOTH"},...]}
+ *   obf|srg|mcp &lt;name&gt;  {"query":"abc","entries":[...]}
+ *   search &lt;text&gt; [n]   {"query":"getBlo","hits":[{"name":"getBlockState","score":1.46,"entries":[...]},...]}
+ * </pre>
+ * <p>Unknown IDs give {@code {"id":5,"found":false}}, and malformed queries {@code {"query":"...","error":"..."}}.</p>
+ */
+final class QueryHandler {
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
+    private final SRGLookup srgDatabase;
+    private final MCPDatabase mcpDatabase;
+    @Nullable
+    private final NameSearch search;
+
+    QueryHandler(SRGLookup srgDatabase, MCPDatabase mcpDatabase, @Nullable NameSearch search) {
+        this.srgDatabase = srgDatabase;
+        this.mcpDatabase = mcpDatabase;
+        this.search = search;
+    }
+
+    /**
+     * Appends the answer to the query, without a line break.
+     */
+    void handle(String query, StringBuilder out) {
+        final int start = out.length();
+        final int space = query.indexOf(' ');
+        final String command = space == -1 ? query : query.substring(0, space);
+        final String argument = space == -1 ? "" : query.substring(space + 1).strip();
+        try {
+            switch (command) {
+                case "id" -> id(requireID(argument), out);
+                case "at" -> at(requireID(argument), out);
+                case "params" -> parameters(requireID(argument), out);
+                case "obf", "srg" -> {
+                    if (!(srgDatabase instanceof SRGDatabase database)) {
+                        error(query, "lookups by name need the fully loaded SRG database", out);
+                    } else {
+                        entries(argument, command.equals("obf") ? QueryConsole.findReobf(database, argument)
+                            : database.getEntriesBySrgName(argument), out);
+                    }
+                }
+                case "mcp" -> mcp(argument, out);
+                case "search" -> search(argument, out);
+                default -> {
+                    final int id = parseID(query);
+                    if (id != -1) id(id, out);
+                    else error(query, "unknown query", out);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            out.setLength(start);
+            error(query, e.getMessage(), out);
+        }
+    }
+
+    void id(int id, @Nullable SRGEntry entry, @Nullable MCPEntry mcpEntry, StringBuilder out) {
+        if (entry == null) {
+            field(out.append('{'), "id", id);
+            field(out, "found", false).append('}');
+        } else {
+            entry(entry, mcpEntry, out);
+        }
+    }
+
+    private void id(int id, StringBuilder out) {
+        id(id, srgDatabase.getEntryForID(id), mcpDatabase.getEntryForID(id), out);
+    }
+
+    private void at(int id, StringBuilder out) {
+        final SRGEntry entry = srgDatabase.getEntryForID(id);
+        final MCPEntry mcpEntry = mcpDatabase.getEntryForID(id);
+        field(out.append('{'), "id", id);
+        if (entry == null) field(out, "found", false);
+        else field(out, "at", AccessTransformers.makeFor(entry, mcpEntry != null ? mcpEntry.name() : null));
+        out.append('}');
+    }
+
+    /**
+     * The parameter slots of the method with their MCP names, followed by MCP parameters for slots which are not in
+     * the SRG database (such as those of constructors).
+     */
+    private void parameters(int id, StringBuilder out) {
+        final List<SRGEntry.MethodParameter> parameters = srgDatabase.getParametersForMethod(id);
+        final List<MCPEntry.Parameter> mcpParameters = mcpDatabase.getParametersForMethod(id);
+        final BitSet named = new BitSet();
+        field(out.append('{'), "id", id);
+        name(out, "params").append('[');
+        for (SRGEntry.MethodParameter parameter : parameters) {
+            separate(out).append('{');
+            field(out, "slot", parameter.index());
+            for (int i = 0; i < mcpParameters.size(); i++) {
+                final MCPEntry.Parameter mcpParameter = mcpParameters.get(i);
+                if (mcpParameter.index() == parameter.index() && !named.get(i)) {
+                    named.set(i);
+                    mcp(mcpParameter, out);
+                    break;
+                }
+            }
+            out.append('}');
+        }
+        for (int i = 0; i < mcpParameters.size(); i++) {
+            if (named.get(i)) continue;
+            separate(out).append('{');
+            field(out, "slot", mcpParameters.get(i).index());
+            mcp(mcpParameters.get(i), out);
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    private void mcp(String name, StringBuilder out) {
+        final List<MCPEntry> entries = mcpDatabase.getEntriesByName(name);
+        final List<MCPEntry.Parameter> parameters = mcpDatabase.getParametersByName(name);
+        field(out.append('{'), "query", name);
+        name(out, "entries").append('[');
+        for (MCPEntry entry : entries) {
+            separate(out);
+            final SRGEntry srgEntry = srgDatabase.getEntryForID(entry.srgID());
+            if (srgEntry != null) {
+                entry(srgEntry, entry, out);
+            } else {
+                field(out.append('{'), "id", entry.srgID());
+                mcp(entry, out);
+                out.append('}');
+            }
+        }
+        out.append(']');
+        name(out, "params").append('[');
+        for (MCPEntry.Parameter parameter : parameters) {
+            separate(out).append('{');
+            field(out, "method", parameter.methodSrgID());
+            field(out, "slot", parameter.index());
+            field(out, "constructor", parameter instanceof MCPEntry.ConstructorParameter);
+            mcp(parameter, out);
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    private void search(String argument, StringBuilder out) {
+        if (search == null) throw new IllegalArgumentException("search is not available");
+        final int space = argument.lastIndexOf(' ');
+        final int limit = space != -1 ? requireID(argument.substring(space + 1)) : DEFAULT_SEARCH_LIMIT;
+        if (limit > NameSearch.MAX_LIMIT) {
+            throw new IllegalArgumentException("search limit is larger than " + NameSearch.MAX_LIMIT);
+        }
+        final String text = space != -1 ? argument.substring(0, space).strip() : argument;
+        if (text.isEmpty()) throw new IllegalArgumentException("no text to search for");
+        field(out.append('{'), "query", text);
+        name(out, "hits").append('[');
+        for (NameSearch.Hit hit : search.search(text, limit)) {
+            separate(out).append('{');
+            field(out, "name", hit.name());
+            name(out, "score").append(Math.round(hit.score() * 1000) / 1000.0);
+            name(out, "entries").append('[');
+            for (SRGEntry entry : hit.srgEntries()) {
+                separate(out);
+                entry(entry, entry instanceof SRGEntry.HasID hasID ? mcpDatabase.getEntryForID(hasID.srgID()) : null,
+                    out);
+            }
+            for (MCPEntry entry : hit.mcpEntries()) {
+                separate(out).append('{');
+                field(out, "id", entry.srgID());
+                mcp(entry, out);
+                out.append('}');
+            }
+            out.append("]}");
+        }
+        out.append("]}");
+    }
+
+    private void entries(String name, List<? extends SRGEntry> entries, StringBuilder out) {
+        field(out.append('{'), "query", name);
+        name(out, "entries").append('[');
+        for (SRGEntry entry : entries) {
+            separate(out);
+            entry(entry, entry instanceof SRGEntry.HasID hasID ? mcpDatabase.getEntryForID(hasID.srgID()) : null, out);
+        }
+        out.append("]}");
+    }
+
+    private static void entry(SRGEntry entry, @Nullable MCPEntry mcpEntry, StringBuilder out) {
+        out.append('{');
+        if (entry instanceof SRGEntry.Class clz) {
+            field(out, "type", "class");
+            field(out, "srg", clz.srgName());
+            field(out, "obf", clz.reobfName());
+        } else if (entry instanceof SRGEntry.Field field) {
+            field(out, "type", "field");
+            field(out, "id", field.srgID());
+            field(out, "srg", field.srgName());
+            field(out, "obf", field.reobfName());
+        } else if (entry instanceof SRGEntry.EnumValue value) {
+            field(out, "type", "enum_value");
+            field(out, "srg", value.valueName());
+            field(out, "obf", value.reobfName());
+        } else if (entry instanceof SRGEntry.NumberedMethod method) {
+            field(out, "type", "numbered_method");
+            field(out, "id", method.srgID());
+            field(out, "srg", method.srgName());
+            field(out, "obf", method.reobfName());
+        } else if (entry instanceof SRGEntry.NamedMethod method) {
+            field(out, "type", "named_method");
+            field(out, "srg", method.deobfName());
+            field(out, "obf", method.reobfName());
+        } else if (entry instanceof SRGEntry.Constructor constructor) {
+            field(out, "type", "constructor");
+            field(out, "id", constructor.srgID());
+        }
+        if (entry instanceof SRGEntry.ClassMember member) {
+            field(out, "owner", member.parentClass().srgName());
+            field(out, "obfOwner", member.parentClass().reobfName());
+        }
+        if (entry instanceof SRGEntry.Method method) {
+            field(out, "signature", method.methodSignature());
+            field(out, "static", method.isStatic());
+        }
+        if (mcpEntry != null) mcp(mcpEntry, out);
+        field(out, "at", AccessTransformers.makeFor(entry, mcpEntry != null ? mcpEntry.name() : null));
+        out.append('}');
+    }
+
+    private static void mcp(MCPEntry entry, StringBuilder out) {
+        field(out, "mcp", entry.name());
+        field(out, "side", entry.side().name());
+        final String description = entry instanceof MCPEntry.Field field ? field.description()
+            : entry instanceof MCPEntry.Method method ? method.description() : "";
+        if (!description.isEmpty()) field(out, "description", description);
+    }
+
+    private static void error(String query, String message, StringBuilder out) {
+        field(out.append('{'), "query", query);
+        field(out, "error", message).append('}');
+    }
+
+    private static int requireID(String argument) {
+        final int id = parseID(argument);
+        if (id == -1) throw new IllegalArgumentException("not an SRG ID: " + argument);
+        return id;
+    }
+
+    /**
+     * Parses a non-negative SRG ID of at most 9 digits.
+     *
+     * @return the ID, or -1 if the text is not one
+     */
+    static int parseID(String text) {
+        if (text.isEmpty() || text.length() > 9) return -1;
+        int id = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            id = id * 10 + (ch - '0');
+        }
+        return id;
+    }
+}
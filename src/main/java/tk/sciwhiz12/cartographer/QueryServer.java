@@ -0,0 +1,387 @@
+package tk.sciwhiz12.cartographer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tk.sciwhiz12.cartographer.util.JsonLines.field;
+import static tk.sciwhiz12.cartographer.util.Logging.logf;
+
+/**
+ * Serves queries to local clients over TCP, with the same line protocol as the batch mode: each line sent is one
+ * query (see {@link QueryHandler}), and each is answered with one line holding a JSON object, in the order they were
+ * sent. Clients may send any number of queries without waiting for the answers.
+ *
+ * <p>One selector thread accepts connections, reads the queries and writes the answers, without blocking on any
+ * client. Queries are answered on a fixed pool of worker threads, which all share the immutable databases. A
+ * connection only has one task at a time on the pool, which answers a limited number of its queries before making
+ * way for other connections. Once a connection has too many queries waiting, it is not read from until they are
+ * answered, so a client which sends faster than it is answered is held back instead of filling the heap. Likewise,
+ * once too many answer bytes are waiting to be written, the connection is neither read from nor answered until the
+ * client has read them.</p>
+ */
+public final class QueryServer implements Closeable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Longer queries are answered with an error, and the connection is closed
+    private static final int MAX_QUERY_LENGTH = READ_BUFFER_SIZE;
+    // Queries answered by one task before the connection goes to the back of the queue
+    private static final int QUERIES_PER_TASK = 256;
+    // Queries waiting on a connection before it is no longer read from
+    private static final int MAX_PENDING_QUERIES = 4096;
+    // Answer bytes waiting on a connection before it is no longer read from or answered
+    private static final int MAX_PENDING_ANSWER_BYTES = 4 * 1024 * 1024;
+
+    private final Supplier<MappingReloader.Mappings> mappings;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+    // Connections with answers to write or reads to resume, handed from the workers to the selector thread
+    private final Queue<Connection> updates = new LinkedBlockingQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong answered = new AtomicLong();
+
+    private QueryServer(Supplier<MappingReloader.Mappings> mappings, ServerSocketChannel server, Selector selector,
+        int threads) {
+        this.mappings = mappings;
+        this.server = server;
+        this.selector = selector;
+        final AtomicInteger workerCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            task -> {
+                final Thread thread = new Thread(task, "query-worker-" + workerCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.selectorThread = new Thread(this::run, "query-selector");
+    }
+
+    /**
+     * Starts a server on the loopback address.
+     *
+     * @param mappings the mappings to query, which are got again for every batch of queries so reloaded mappings
+     *                 are used without restarting the server
+     * @param port     the port to listen on, or 0 for any free port
+     * @param threads  the number of worker threads answering queries
+     */
+    public static QueryServer start(Supplier<MappingReloader.Mappings> mappings, int port, int threads)
+        throws IOException {
+        final Selector selector = Selector.open();
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        final QueryServer queryServer = new QueryServer(mappings, server, selector, threads);
+        queryServer.selectorThread.start();
+        return queryServer;
+    }
+
+    public InetSocketAddress address() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    public long answered() {
+        return answered.get();
+    }
+
+    /**
+     * Waits until the server is closed.
+     */
+    public void await() throws InterruptedException {
+        selectorThread.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        workers.shutdownNow();
+        selector.close(); // Ends the selector thread, which closes the connections
+        server.close();
+    }
+
+    private void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                Connection update;
+                while ((update = updates.poll()) != null) update.update();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        final Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) connection.read();
+                        if (key.isValid() && key.isWritable()) connection.write();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (ClosedSelectorException e) {
+            // Closed by close()
+        } catch (IOException e) {
+            logf("Query server stopped: %s%n", e);
+        } finally {
+            try {
+                for (SelectionKey key : selector.keys()) key.channel().close();
+            } catch (ClosedSelectorException | IOException ignored) {
+                // The channels are closed along with the selector
+            }
+            workers.shutdownNow();
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        final Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.incrementAndGet();
+    }
+
+    /**
+     * A client connection. The buffers and the selection key are only used on the selector thread, and the queues of
+     * queries and answers are guarded by the connection itself.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private SelectionKey key;
+
+        private final Queue<String> queries = new ArrayDeque<>();
+        private final Queue<ByteBuffer> answers = new ArrayDeque<>();
+        private long answerBytes; // Bytes of the answers which are not written yet
+        private boolean answering; // Whether the connection has a task on the worker pool
+        private boolean endOfInput;
+        private boolean tooLong; // Whether a query was too long, which is answered after the earlier ones
+        private boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() {
+            final int read;
+            try {
+                read = channel.read(input);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+
+            final List<String> lines = new ArrayList<>();
+            final byte[] bytes = input.array();
+            int start = 0;
+            for (int i = 0; i < input.position(); i++) {
+                if (bytes[i] != '\n') continue;
+                addLine(lines, bytes, start, i);
+                start = i + 1;
+            }
+            final boolean lineTooLong = read != -1 && start == 0 && !input.hasRemaining();
+            if (read == -1) {
+                addLine(lines, bytes, start, input.position()); // The last query may have no line break
+                input.clear();
+            } else if (lineTooLong) {
+                input.clear();
+            } else {
+                input.flip().position(start);
+                input.compact(); // Keep the incomplete query
+            }
+            final boolean end = read == -1 || lineTooLong;
+
+            final boolean submit;
+            synchronized (this) {
+                queries.addAll(lines);
+                if (lineTooLong) tooLong = true;
+                submit = !answering && canAnswer();
+                if (submit) answering = true;
+                if (end) endOfInput = true;
+                if (!canRead()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+            }
+            if (submit) submitAnswer();
+            else if (end) closeIfDone();
+        }
+
+        /**
+         * Whether there is something to answer, and the client keeps up with reading the answers. Only called while
+         * holding the connection's lock.
+         */
+        private boolean canAnswer() {
+            return (!queries.isEmpty() || tooLong) && answerBytes < MAX_PENDING_ANSWER_BYTES;
+        }
+
+        /**
+         * Only called while holding the connection's lock.
+         */
+        private boolean canRead() {
+            return !endOfInput && queries.size() < MAX_PENDING_QUERIES && answerBytes < MAX_PENDING_ANSWER_BYTES;
+        }
+
+        private static void addLine(List<String> lines, byte[] bytes, int start, int end) {
+            final String line = new String(bytes, start, end - start, UTF_8).strip();
+            if (!line.isEmpty()) lines.add(line);
+        }
+
+        /**
+         * Answers some of the waiting queries on a worker thread, then submits another task if any are left and the
+         * client keeps up with reading the answers. Otherwise, the next task is submitted once the answers are written.
+         */
+        void answer() {
+            final List<String> batch = new ArrayList<>(QUERIES_PER_TASK);
+            final boolean answerTooLong;
+            synchronized (this) {
+                while (batch.size() < QUERIES_PER_TASK && !queries.isEmpty()) batch.add(queries.poll());
+                answerTooLong = tooLong && queries.isEmpty();
+                if (answerTooLong) tooLong = false;
+            }
+            final StringBuilder out = new StringBuilder(batch.size() * 128);
+            try {
+                // The whole batch is answered from the same mappings, even if they are reloaded meanwhile
+                final MappingReloader.Mappings current = mappings.get();
+                final QueryHandler handler = new QueryHandler(current.srg(), current.mcp(), current.search());
+                for (String query : batch) {
+                    handle(handler, query, out);
+                    out.append('\n');
+                }
+                if (answerTooLong) {
+                    out.append("{\"error\":\"query is longer than ").append(MAX_QUERY_LENGTH).append(" bytes\"}\n");
+                }
+                answered.addAndGet(batch.size() + (answerTooLong ? 1 : 0));
+            } finally {
+                // Even if answering failed, so the connection is not left waiting for a task which never comes
+                final boolean more;
+                synchronized (this) {
+                    if (out.length() > 0) {
+                        final ByteBuffer answer = ByteBuffer.wrap(out.toString().getBytes(UTF_8));
+                        answers.add(answer);
+                        answerBytes += answer.remaining();
+                    }
+                    more = canAnswer();
+                    answering = more;
+                }
+                updates.add(this);
+                selector.wakeup();
+                if (more) submitAnswer();
+            }
+        }
+
+        /**
+         * The pool only rejects tasks once the server is closing, so the connection is closed instead.
+         */
+        private void submitAnswer() {
+            try {
+                workers.execute(this::answer);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        private static void handle(QueryHandler handler, String query, StringBuilder out) {
+            final int start = out.length();
+            try {
+                handler.handle(query, out);
+            } catch (RuntimeException e) {
+                out.setLength(start);
+                field(field(out.append('{'), "query", query), "error", "cannot answer query: " + e).append('}');
+            }
+        }
+
+        /**
+         * Called on the selector thread after answers were added or written, to write them, to resume reading and to
+         * resume answering.
+         */
+        void update() {
+            if (!key.isValid()) return;
+            final boolean submit;
+            synchronized (this) {
+                int ops = key.interestOps();
+                if (!answers.isEmpty()) ops |= SelectionKey.OP_WRITE;
+                if (canRead()) ops |= SelectionKey.OP_READ;
+                key.interestOps(ops);
+                submit = !answering && canAnswer();
+                if (submit) answering = true;
+            }
+            if (submit) submitAnswer();
+        }
+
+        void write() {
+            try {
+                while (true) {
+                    final ByteBuffer answer;
+                    synchronized (this) {
+                        answer = answers.peek();
+                        if (answer == null) {
+                            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                            break;
+                        }
+                    }
+                    final int written = channel.write(answer);
+                    synchronized (this) {
+                        answerBytes -= written;
+                        if (!answer.hasRemaining()) answers.poll();
+                    }
+                    if (answer.hasRemaining()) break; // The socket buffer is full
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            update();
+            closeIfDone();
+        }
+
+        private void closeIfDone() {
+            synchronized (this) {
+                if (!endOfInput || answering || tooLong || !queries.isEmpty() || !answers.isEmpty()) return;
+            }
+            close();
+        }
+
+        /**
+         * Called on the selector thread, or on a worker thread if the server is closing.
+         */
+        private synchronized void close() {
+            if (closed) return;
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing more to do for this connection
+            }
+            connections.decrementAndGet();
+        }
+    }
+}
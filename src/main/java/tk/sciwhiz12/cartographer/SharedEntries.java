@@ -0,0 +1,284 @@
+package tk.sciwhiz12.cartographer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static tk.sciwhiz12.cartographer.util.StringPool.estimateSize;
+
+/**
+ * Weakly interned entries and strings, shared by the databases of every loaded mapping version.
+ *
+ * <p>Entries are records, so an entry which is unchanged between two versions is equal in both, and the later version
+ * reuses the instance of the earlier one. The components of an entry (its class and strings) are shared before the
+ * entry itself, so an entry which did change still points to the shared class and names. Once no loaded version
+ * refers to an entry, it is collected.</p>
+ */
+final class SharedEntries {
+    // Estimated size of a distinct entry or string in the weak interners, on top of the object itself
+    private static final int INTERNED_SIZE = 40;
+    // Estimated shallow size of an entry record
+    private static final int ENTRY_SIZE = 32;
+    // Estimated size of an entry in the immutable maps (with its boxed key) and in the ID index
+    private static final int INDEX_ENTRY_SIZE = 88;
+    // Estimated size of an entry in the name indices, once they are built
+    private static final int NAME_INDEX_ENTRY_SIZE = 24;
+
+    private final Interner<String> strings = Interners.newWeakInterner();
+    private final Interner<Object> entries = Interners.newWeakInterner();
+
+    SRGDatabase share(SRGDatabase database) {
+        // Members of the same class all refer to the same instance, so it is only looked up once per database
+        final Map<SRGEntry.Class, SRGEntry.Class> sharedClasses = new IdentityHashMap<>(database.classes().size());
+
+        final ImmutableMap.Builder<String, SRGEntry.Class> classes = ImmutableMap.builderWithExpectedSize(
+            database.classes().size());
+        for (Map.Entry<String, SRGEntry.Class> entry : database.classes().entrySet()) {
+            final SRGEntry.Class clz = share(entry.getValue(), sharedClasses);
+            classes.put(clz.srgName(), clz);
+        }
+
+        final ImmutableMap.Builder<Integer, SRGEntry.Field> fields = ImmutableMap.builderWithExpectedSize(
+            database.fields().size());
+        for (SRGEntry.Field field : database.fields().values()) {
+            final SRGEntry.Class parent = share(field.parentClass(), sharedClasses);
+            final String srgName = strings.intern(field.srgName());
+            final String reobfName = strings.intern(field.reobfName());
+            if (parent != field.parentClass() || srgName != field.srgName() || reobfName != field.reobfName()) {
+                field = new SRGEntry.Field(field.srgID(), srgName, reobfName, parent);
+            }
+            fields.put(field.srgID(), intern(field));
+        }
+
+        final ImmutableMultimap.Builder<SRGEntry.Class, SRGEntry.EnumValue> enumValues = ImmutableMultimap.builder();
+        for (SRGEntry.EnumValue value : database.enumValues().values()) {
+            final SRGEntry.Class parent = share(value.parentClass(), sharedClasses);
+            final String valueName = strings.intern(value.valueName());
+            final String reobfName = strings.intern(value.reobfName());
+            if (parent != value.parentClass() || valueName != value.valueName() || reobfName != value.reobfName()) {
+                value = new SRGEntry.EnumValue(valueName, reobfName, parent);
+            }
+            enumValues.put(parent, intern(value));
+        }
+
+        final ImmutableTable.Builder<Integer, SRGEntry.Class, SRGEntry.NumberedMethod> numberedMethods =
+            ImmutableTable.builder();
+        for (SRGEntry.NumberedMethod method : database.numberedMethods().values()) {
+            final SRGEntry.Class parent = share(method.parentClass(), sharedClasses);
+            final String srgName = strings.intern(method.srgName());
+            final String reobfName = strings.intern(method.reobfName());
+            final String signature = strings.intern(method.methodSignature());
+            if (parent != method.parentClass() || srgName != method.srgName() || reobfName != method.reobfName()
+                || signature != method.methodSignature()) {
+                method = new SRGEntry.NumberedMethod(method.srgID(), srgName, reobfName, parent, signature,
+                    method.isStatic());
+            }
+            numberedMethods.put(method.srgID(), parent, intern(method));
+        }
+
+        final ImmutableMultimap.Builder<String, SRGEntry.NamedMethod> namedMethods = ImmutableMultimap.builder();
+        for (SRGEntry.NamedMethod method : database.namedMethods().values()) {
+            final SRGEntry.Class parent = share(method.parentClass(), sharedClasses);
+            final String deobfName = strings.intern(method.deobfName());
+            final String reobfName = strings.intern(method.reobfName());
+            final String signature = strings.intern(method.methodSignature());
+            if (parent != method.parentClass() || deobfName != method.deobfName() || reobfName != method.reobfName()
+                || signature != method.methodSignature()) {
+                method = new SRGEntry.NamedMethod(deobfName, reobfName, parent, signature);
+            }
+            namedMethods.put(deobfName, intern(method));
+        }
+
+        final ImmutableMap.Builder<Integer, SRGEntry.Constructor> constructors = ImmutableMap.builderWithExpectedSize(
+            database.constructors().size());
+        for (SRGEntry.Constructor constructor : database.constructors().values()) {
+            final SRGEntry.Class parent = share(constructor.parentClass(), sharedClasses);
+            final String signature = strings.intern(constructor.methodSignature());
+            if (parent != constructor.parentClass() || signature != constructor.methodSignature()) {
+                constructor = new SRGEntry.Constructor(constructor.srgID(), parent, signature);
+            }
+            constructors.put(constructor.srgID(), intern(constructor));
+        }
+
+        return new SRGDatabase(classes.build(), fields.build(), enumValues.build(), numberedMethods.build(),
+            namedMethods.build(), constructors.build());
+    }
+
+    MCPDatabase share(MCPDatabase database) {
+        final Int2ObjectMap<MCPEntry.Field> fields = new Int2ObjectOpenHashMap<>(database.fields().size());
+        for (MCPEntry.Field field : database.fields().values()) {
+            final String name = strings.intern(field.name());
+            final String description = strings.intern(field.description());
+            if (name != field.name() || description != field.description()) {
+                field = new MCPEntry.Field(field.srgID(), name, field.side(), description);
+            }
+            fields.put(field.srgID(), intern(field));
+        }
+
+        final Int2ObjectMap<MCPEntry.Method> methods = new Int2ObjectOpenHashMap<>(database.methods().size());
+        for (MCPEntry.Method method : database.methods().values()) {
+            final String name = strings.intern(method.name());
+            final String description = strings.intern(method.description());
+            if (name != method.name() || description != method.description()) {
+                method = new MCPEntry.Method(method.srgID(), name, method.side(), description);
+            }
+            methods.put(method.srgID(), intern(method));
+        }
+
+        final Int2ObjectMap<List<MCPEntry.Parameter>> parameters = new Int2ObjectOpenHashMap<>(
+            database.parameters().size());
+        for (List<MCPEntry.Parameter> methodParameters : database.parameters().values()) {
+            final List<MCPEntry.Parameter> shared = new ArrayList<>(methodParameters.size());
+            for (MCPEntry.Parameter parameter : methodParameters) {
+                final String name = strings.intern(parameter.name());
+                if (name != parameter.name()) {
+                    parameter = parameter instanceof MCPEntry.ConstructorParameter
+                        ? new MCPEntry.ConstructorParameter(parameter.methodSrgID(), parameter.index(), name,
+                        parameter.side())
+                        : new MCPEntry.MethodParameter(parameter.methodSrgID(), parameter.index(), name,
+                        parameter.side());
+                }
+                shared.add(intern(parameter));
+            }
+            parameters.put(shared.get(0).methodSrgID(), Collections.unmodifiableList(shared));
+        }
+
+        return new MCPDatabase(Int2ObjectMaps.unmodifiable(fields), Int2ObjectMaps.unmodifiable(methods),
+            Int2ObjectMaps.unmodifiable(parameters));
+    }
+
+    private SRGEntry.Class share(SRGEntry.Class clz, Map<SRGEntry.Class, SRGEntry.Class> sharedClasses) {
+        final SRGEntry.Class known = sharedClasses.get(clz);
+        if (known != null) return known;
+        final String srgName = strings.intern(clz.srgName());
+        final String reobfName = strings.intern(clz.reobfName());
+        final SRGEntry.Class shared = intern(srgName == clz.srgName() && reobfName == clz.reobfName() ? clz
+            : new SRGEntry.Class(srgName, reobfName));
+        sharedClasses.put(clz, shared);
+        return shared;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T intern(T entry) {
+        return (T) entries.intern(entry);
+    }
+
+    /**
+     * The estimated heap taken by the name indices of the databases, which are only built on their first lookup.
+     */
+    static long nameIndexSize(SRGDatabase srg, MCPDatabase mcp) {
+        return (long) (srg.nameIndex().size() + mcp.nameIndex().size()) * NAME_INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * A running estimate of the heap taken by a set of databases, counting the entries and strings which they share
+     * only once: the index structures for every entry of every database, plus every distinct entry and string.
+     *
+     * <p>Entries and strings are reference counted, so adding or removing a database only walks the entries of that
+     * database. The name indices are left out, as they are built after the databases are added.</p>
+     */
+    static final class HeapEstimate {
+        private final Reference2IntOpenHashMap<Object> references = new Reference2IntOpenHashMap<>(1 << 16);
+        private long bytes;
+
+        synchronized void add(SRGDatabase database) {
+            forEachEntry(database, this::addEntry);
+        }
+
+        synchronized void remove(SRGDatabase database) {
+            forEachEntry(database, this::removeEntry);
+        }
+
+        synchronized void add(MCPDatabase database) {
+            forEachEntry(database, this::addEntry);
+        }
+
+        synchronized void remove(MCPDatabase database) {
+            forEachEntry(database, this::removeEntry);
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        // Parent classes are shared with the class map, so they are counted through it
+        private static void forEachEntry(SRGDatabase database, EntryConsumer consumer) {
+            for (SRGEntry.Class clz : database.classes().values()) consumer.accept(clz, clz.srgName(), clz.reobfName());
+            for (SRGEntry.Field field : database.fields().values()) {
+                consumer.accept(field, field.srgName(), field.reobfName());
+            }
+            for (SRGEntry.EnumValue value : database.enumValues().values()) {
+                consumer.accept(value, value.valueName(), value.reobfName());
+            }
+            for (SRGEntry.NumberedMethod method : database.numberedMethods().values()) {
+                consumer.accept(method, method.srgName(), method.reobfName(), method.methodSignature());
+            }
+            for (SRGEntry.NamedMethod method : database.namedMethods().values()) {
+                consumer.accept(method, method.deobfName(), method.reobfName(), method.methodSignature());
+            }
+            for (SRGEntry.Constructor constructor : database.constructors().values()) {
+                consumer.accept(constructor, constructor.methodSignature());
+            }
+        }
+
+        private static void forEachEntry(MCPDatabase database, EntryConsumer consumer) {
+            for (MCPEntry.Field field : database.fields().values()) {
+                consumer.accept(field, field.name(), field.description());
+            }
+            for (MCPEntry.Method method : database.methods().values()) {
+                consumer.accept(method, method.name(), method.description());
+            }
+            for (List<MCPEntry.Parameter> parameters : database.parameters().values()) {
+                for (MCPEntry.Parameter parameter : parameters) consumer.accept(parameter, parameter.name());
+            }
+        }
+
+        private void addEntry(Object entry, String... components) {
+            bytes += INDEX_ENTRY_SIZE;
+            if (references.addTo(entry, 1) != 0) return;
+            bytes += INTERNED_SIZE + ENTRY_SIZE;
+            for (String component : components) {
+                if (references.addTo(component, 1) == 0) bytes += INTERNED_SIZE + estimateSize(component);
+            }
+        }
+
+        private void removeEntry(Object entry, String... components) {
+            bytes -= INDEX_ENTRY_SIZE;
+            if (release(entry)) return;
+            bytes -= INTERNED_SIZE + ENTRY_SIZE;
+            for (String component : components) {
+                if (!release(component)) bytes -= INTERNED_SIZE + estimateSize(component);
+            }
+        }
+
+        /**
+         * @return whether the object is still referenced
+         */
+        private boolean release(Object object) {
+            if (references.addTo(object, -1) > 1) return true;
+            references.removeInt(object);
+            return false;
+        }
+
+        @FunctionalInterface
+        private interface EntryConsumer {
+            void accept(Object entry, String... components);
+        }
+    }
+}
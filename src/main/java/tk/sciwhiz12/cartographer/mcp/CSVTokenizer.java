@@ -0,0 +1,211 @@
+package tk.sciwhiz12.cartographer.mcp;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.util.Arrays;
+
+/**
+ * Streaming RFC 4180 tokenizer for the MCP mappings files, which splits rows into column slices of the file contents.
+ * Quoted columns may contain commas, doubled quotes and line breaks. Rows end with either LF or CRLF, and blank rows
+ * are skipped.
+ *
+ * <p>Columns are only copied into strings when requested, so columns which are only checked or parsed as numbers are
+ * never allocated. Instances are reusable but not thread-safe; the accessors refer to the most recently read row.</p>
+ */
+final class CSVTokenizer {
+    private final String csv;
+    private final int end;
+    private int pos;
+
+    private int columns;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private boolean[] escaped = new boolean[8]; // Quoted columns with doubled quotes, which must be unescaped
+    private int parsedEnd;
+
+    CSVTokenizer(String csv, int start, int end) {
+        this.csv = csv;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * Splits the contents into ranges of roughly the given size, each starting at the beginning of a row. Line breaks
+     * inside quoted columns are not row boundaries, so the quotes are tracked up to each split, the same way as
+     * {@link #next()} reads them: only a quote at the start of a column opens a quoted column, and a doubled quote
+     * inside it does not close it.
+     *
+     * @return the start of every range, followed by the end of the contents
+     */
+    static IntList splitRows(String csv, int start, int chunkSize) {
+        final IntList bounds = new IntArrayList();
+        bounds.add(start);
+        final int length = csv.length();
+        boolean quoted = false;
+        boolean columnStart = true;
+        int next = start + chunkSize;
+        for (int i = start; i < length; i++) {
+            final char ch = csv.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < length && csv.charAt(i + 1) == '"') i++;
+                    else quoted = false;
+                }
+                continue;
+            }
+            if (ch == '"' && columnStart) {
+                quoted = true;
+            } else if (ch == '\n' && i >= next && i + 1 < length) {
+                bounds.add(i + 1);
+                next = i + 1 + chunkSize;
+            }
+            columnStart = ch == ',' || ch == '\n';
+        }
+        bounds.add(length);
+        return bounds;
+    }
+
+    /**
+     * Reads the next non-blank row.
+     *
+     * @return false if there are no more rows
+     */
+    boolean next() {
+        while (pos < end) {
+            columns = 0;
+            final int rowStart = pos;
+            while (true) {
+                readColumn();
+                if (pos >= end) break;
+                final char ch = csv.charAt(pos);
+                pos++;
+                if (ch == '\n') break;
+                // Otherwise a comma, as readColumn stops at nothing else
+            }
+            if (columns > 1 || ends[0] > starts[0] || isQuoted(0, rowStart)) return true;
+        }
+        columns = 0;
+        return false;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    /**
+     * The index of the column of the current row with the given contents, used to map the header row.
+     */
+    int indexOf(String name) {
+        for (int column = 0; column < columns; column++) {
+            if (length(column) == name.length() && csv.startsWith(name, starts[column]) && !escaped[column]) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    boolean has(int column) {
+        return column >= 0 && column < columns;
+    }
+
+    int length(int column) {
+        return ends[column] - starts[column];
+    }
+
+    char charAt(int column, int index) {
+        return csv.charAt(starts[column] + index);
+    }
+
+    boolean startsWith(int column, String prefix, int index) {
+        return length(column) >= index + prefix.length() && csv.startsWith(prefix, starts[column] + index);
+    }
+
+    String get(int column) {
+        final int start = starts[column];
+        final int end = ends[column];
+        if (!escaped[column]) return csv.substring(start, end);
+        final StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char ch = csv.charAt(i);
+            builder.append(ch);
+            if (ch == '"') i++; // Skip the second quote of a doubled quote
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses the digits of the column starting at the given index, up to the first non-digit or at most 9 digits.
+     * The index after the digits is available from {@link #parsedEnd()}.
+     *
+     * @return the parsed value, or -1 if there are no digits at the index
+     */
+    int parseDigits(int column, int index) {
+        final int start = starts[column] + index;
+        final int limit = Math.min(ends[column], start + 9); // Anything longer may overflow an int
+        int pos = start;
+        int value = 0;
+        while (pos < limit) {
+            final char ch = csv.charAt(pos);
+            if (ch < '0' || ch > '9') break;
+            value = value * 10 + (ch - '0');
+            pos++;
+        }
+        parsedEnd = pos - starts[column];
+        return pos > start ? value : -1;
+    }
+
+    int parsedEnd() {
+        return parsedEnd;
+    }
+
+    private void readColumn() {
+        if (columns == starts.length) {
+            starts = Arrays.copyOf(starts, columns * 2);
+            ends = Arrays.copyOf(ends, columns * 2);
+            escaped = Arrays.copyOf(escaped, columns * 2);
+        }
+        final String csv = this.csv;
+        int pos = this.pos;
+        boolean hasEscapes = false;
+        int start, end;
+        if (pos < this.end && csv.charAt(pos) == '"') {
+            start = ++pos;
+            while (true) {
+                final int quote = csv.indexOf('"', pos);
+                if (quote == -1 || quote >= this.end) { // Unterminated, so it runs to the end of the contents
+                    end = pos = this.end;
+                    break;
+                }
+                if (quote + 1 < this.end && csv.charAt(quote + 1) == '"') {
+                    hasEscapes = true;
+                    pos = quote + 2;
+                    continue;
+                }
+                end = quote;
+                pos = quote + 1;
+                // Anything between the closing quote and the separator is not part of the column
+                while (pos < this.end && csv.charAt(pos) != ',' && csv.charAt(pos) != '\n') pos++;
+                break;
+            }
+        } else {
+            start = pos;
+            while (pos < this.end) {
+                final char ch = csv.charAt(pos);
+                if (ch == ',' || ch == '\n') break;
+                pos++;
+            }
+            final boolean rowEnd = pos == this.end || csv.charAt(pos) == '\n';
+            end = rowEnd && pos > start && csv.charAt(pos - 1) == '\r' ? pos - 1 : pos;
+        }
+        starts[columns] = start;
+        ends[columns] = end;
+        escaped[columns] = hasEscapes;
+        columns++;
+        this.pos = pos;
+    }
+
+    private boolean isQuoted(int column, int rowStart) {
+        return starts[column] > rowStart;
+    }
+}
@@ -1,34 +1,77 @@
 package tk.sciwhiz12.cartographer.mcp;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMultimap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.StringPool;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 
 public record MCPDatabase(
-    ImmutableMap<Integer, MCPEntry.Field> fields,
-    ImmutableMap<Integer, MCPEntry.Method> methods,
-    ImmutableMultimap<Integer, MCPEntry.Parameter> parameters
+    Int2ObjectMap<MCPEntry.Field> fields,
+    Int2ObjectMap<MCPEntry.Method> methods,
+    Int2ObjectMap<List<MCPEntry.Parameter>> parameters, // Method SRG ID -> Parameters
+    MCPNameIndex nameIndex // MCP Name -> Entries
 ) {
+    public MCPDatabase(Int2ObjectMap<MCPEntry.Field> fields, Int2ObjectMap<MCPEntry.Method> methods,
+        Int2ObjectMap<List<MCPEntry.Parameter>> parameters) {
+        this(fields, methods, parameters, MCPNameIndex.build(fields, methods, parameters));
+    }
+
     public static MCPDatabase parse(List<String> fieldsLines, List<String> methodsLines, List<String> paramsLines) {
-        return MCPParser.read(fieldsLines, methodsLines, paramsLines);
+        return parse(fieldsLines, methodsLines, paramsLines, new StringPool());
+    }
+
+    public static MCPDatabase parse(List<String> fieldsLines, List<String> methodsLines, List<String> paramsLines,
+        StringPool pool) {
+        return MCPParser.read(String.join("\n", fieldsLines), String.join("\n", methodsLines),
+            String.join("\n", paramsLines), pool);
+    }
+
+    public static MCPDatabase parse(Path fieldsCsv, Path methodsCsv, Path paramsCsv, StringPool pool)
+        throws IOException {
+        return MCPParser.read(Files.readString(fieldsCsv), Files.readString(methodsCsv), Files.readString(paramsCsv),
+            pool);
     }
 
     @Nullable
     public MCPEntry getEntryForID(int srgID) {
-        Integer boxedID = srgID;
-        if (fields.containsKey(boxedID)) { return fields.get(srgID); }
-        if (methods.containsKey(boxedID)) { return methods.get(srgID); }
-        return null;
+        final MCPEntry.Field field = fields.get(srgID);
+        if (field != null) { return field; }
+        return methods.get(srgID);
+    }
+
+    /**
+     * Looks up many IDs at once.
+     *
+     * @return the field or method for each ID, or null where there is none
+     */
+    public MCPEntry[] getEntriesForIDs(int[] srgIDs) {
+        final MCPEntry[] entries = new MCPEntry[srgIDs.length];
+        for (int i = 0; i < srgIDs.length; i++) {
+            final MCPEntry field = fields.get(srgIDs[i]);
+            entries[i] = field != null ? field : methods.get(srgIDs[i]);
+        }
+        return entries;
     }
 
     @NonNull
     public List<MCPEntry.Parameter> getParametersForMethod(int srgID) {
-        Integer boxedID = srgID;
-        if (parameters.containsKey(srgID)) return parameters.get(srgID).asList();
-        return Collections.emptyList();
+        return parameters.getOrDefault(srgID, Collections.emptyList());
+    }
+
+    /**
+     * The fields and methods with the given MCP name, fields first.
+     */
+    public List<MCPEntry> getEntriesByName(String name) {
+        return nameIndex.getEntriesByName(name);
+    }
+
+    public List<MCPEntry.Parameter> getParametersByName(String name) {
+        return nameIndex.getParametersByName(name);
     }
 }
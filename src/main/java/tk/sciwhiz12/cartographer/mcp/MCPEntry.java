@@ -19,6 +19,13 @@ public interface MCPEntry {
             if (str.equals("2")) { return Side.BOTH; }
             throw new IllegalArgumentException("Unknown dist/side string number " + str);
         }
+
+        static Side of(char ch) {
+            if (ch == '0') { return Side.CLIENT; }
+            if (ch == '1') { return Side.DEDICATED_SERVER; }
+            if (ch == '2') { return Side.BOTH; }
+            throw new IllegalArgumentException("Unknown dist/side string number " + ch);
+        }
     }
 
     interface Parameter extends MCPEntry {
@@ -0,0 +1,101 @@
+package tk.sciwhiz12.cartographer.mcp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import tk.sciwhiz12.cartographer.util.LazyIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Hash indices of the entries of a database by their MCP name, built on the first lookup.
+ *
+ * <p>MCP names are not unique (every override of a method has the same name, and parameter names are reused all
+ * over), so every lookup returns all matching entries, ordered by SRG ID.</p>
+ */
+public final class MCPNameIndex {
+    private final LazyIndex<Indices> indices;
+
+    private record Indices(
+        ImmutableListMultimap<String, MCPEntry> entriesByName,
+        ImmutableListMultimap<String, MCPEntry.Parameter> parametersByName
+    ) {}
+
+    private MCPNameIndex(Supplier<Indices> factory) {
+        this.indices = new LazyIndex<>(factory);
+    }
+
+    static MCPNameIndex build(Int2ObjectMap<MCPEntry.Field> fields, Int2ObjectMap<MCPEntry.Method> methods,
+        Int2ObjectMap<List<MCPEntry.Parameter>> parameters) {
+        return new MCPNameIndex(() -> {
+            // The maps are hashed by ID, so the IDs are sorted to give a stable order
+            final ImmutableListMultimap.Builder<String, MCPEntry> entriesByName = ImmutableListMultimap.builder();
+            for (int id : sortedIDs(fields)) {
+                final MCPEntry.Field field = fields.get(id);
+                entriesByName.put(field.name(), field);
+            }
+            for (int id : sortedIDs(methods)) {
+                final MCPEntry.Method method = methods.get(id);
+                entriesByName.put(method.name(), method);
+            }
+
+            final ImmutableListMultimap.Builder<String, MCPEntry.Parameter> parametersByName =
+                ImmutableListMultimap.builder();
+            for (int id : sortedIDs(parameters)) {
+                for (MCPEntry.Parameter parameter : parameters.get(id)) {
+                    parametersByName.put(parameter.name(), parameter);
+                }
+            }
+
+            return new Indices(entriesByName.build(), parametersByName.build());
+        });
+    }
+
+    private static int[] sortedIDs(Int2ObjectMap<?> map) {
+        final int[] ids = map.keySet().toIntArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * The fields and methods with the given MCP name; fields come first.
+     */
+    public ImmutableList<MCPEntry> getEntriesByName(String name) {
+        return indices().entriesByName().get(name);
+    }
+
+    public ImmutableList<MCPEntry.Parameter> getParametersByName(String name) {
+        return indices().parametersByName().get(name);
+    }
+
+    /**
+     * The number of indexed entries and parameters. Counting does not build the indices, so this is 0 until the
+     * first lookup.
+     */
+    public int size() {
+        final Indices built = indices.getIfBuilt();
+        if (built == null) return 0;
+        return built.entriesByName().size() + built.parametersByName().size();
+    }
+
+    private Indices indices() {
+        return indices.get();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MCPNameIndex other && indices.equals(other.indices);
+    }
+
+    @Override
+    public int hashCode() {
+        return indices.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MCPNameIndex[built=%s]".formatted(indices.getIfBuilt() != null);
+    }
+}
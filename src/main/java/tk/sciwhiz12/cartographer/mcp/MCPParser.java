@@ -1,69 +1,187 @@
 package tk.sciwhiz12.cartographer.mcp;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
-import com.google.common.collect.Multimaps;
-import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.StringPool;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.stream.IntStream;
 
-import static java.lang.Integer.parseInt;
 import static tk.sciwhiz12.cartographer.util.Logging.logf;
-import static tk.sciwhiz12.cartographer.util.Patterns.CSV;
-import static tk.sciwhiz12.cartographer.util.Patterns.PARAM_CSV;
 
 class MCPParser {
+    // Rows are parsed in parallel in chunks of about this many characters
+    private static final int CHUNK_SIZE = 256 * 1024;
+
     private MCPParser() {}
 
-    static MCPDatabase read(List<String> fieldsLines, List<String> methodsLines, List<String> paramsLines) {
-        final Map<Integer, MCPEntry.Field> fields = Collections.synchronizedMap(new Object2ObjectArrayMap<>(5000));
-        final Map<Integer, MCPEntry.Method> methods = Collections.synchronizedMap(new Object2ObjectArrayMap<>(5000));
-        final Multimap<Integer, MCPEntry.Parameter> params = Multimaps.synchronizedMultimap(
-            MultimapBuilder.hashKeys(5000).arrayListValues(4).build());
-
-        fieldsLines.parallelStream()
-            .filter(str -> !str.startsWith("searge"))
-            .map(CSV::matcher)
-            .filter(Matcher::matches)
-            .map(matcher -> new MCPEntry.Field(parseInt(matcher.group(1)), matcher.group(2), MCPEntry.Side.of(matcher.group(3)),
-                matcher.group(4)))
-            .forEach(field -> fields.put(field.srgID(), field));
-
-        methodsLines.parallelStream()
-            .filter(str -> !str.startsWith("searge"))
-            .map(CSV::matcher)
-            .filter(Matcher::matches)
-            .map(
-                matcher -> new MCPEntry.Method(parseInt(matcher.group(1)), matcher.group(2), MCPEntry.Side.of(matcher.group(3)),
-                    matcher.group(4)))
-            .forEach(method -> methods.put(method.srgID(), method));
-
-        paramsLines.parallelStream()
-            .filter(str -> !str.startsWith("param"))
-            .map(PARAM_CSV::matcher)
-            .filter(Matcher::matches)
-            .map(matcher -> matcher.group(1).isBlank() ?
-                new MCPEntry.MethodParameter(parseInt(matcher.group(2)), parseInt(matcher.group(3)),
-                    matcher.group(4), MCPEntry.Side.of(matcher.group(5))) :
-                new MCPEntry.ConstructorParameter(parseInt(matcher.group(2)), parseInt(matcher.group(3)),
-                    matcher.group(4), MCPEntry.Side.of(matcher.group(5))))
-            .forEach(param -> params.put(param.methodSrgID(), param));
+    static MCPDatabase read(String fieldsCsv, String methodsCsv, String paramsCsv, StringPool pool) {
+        final Int2ObjectMap<MCPEntry.Field> fields = readMembers(fieldsCsv, "field_", pool,
+            (id, name, side, description) -> new MCPEntry.Field(id, name, side, description));
+        final Int2ObjectMap<MCPEntry.Method> methods = readMembers(methodsCsv, "func_", pool,
+            (id, name, side, description) -> new MCPEntry.Method(id, name, side, description));
+        final Int2ObjectMap<List<MCPEntry.Parameter>> params = readParameters(paramsCsv, pool);
 
         logf(" === MCP Import === %n");
         logf("Fields: %d%n", fields.size());
         logf("Methods: %d%n", methods.size());
-        logf("Parameters: %d%n", params.size());
+        logf("Parameters: %d%n", params.values().stream().mapToInt(List::size).sum());
+        logf("String pool: %s%n", pool.statistics());
         logf(" === === == === === %n");
 
-        return new MCPDatabase(
-            ImmutableMap.copyOf(fields),
-            ImmutableMap.copyOf(methods),
-            ImmutableMultimap.copyOf(params)
-        );
+        return new MCPDatabase(fields, methods, params);
+    }
+
+    private interface MemberFactory<T> {
+        T create(int srgID, String name, MCPEntry.Side side, String description);
+    }
+
+    /**
+     * Reads fields.csv or methods.csv, which have the {@code searge}, {@code name}, {@code side} and {@code desc}
+     * columns. Rows whose SRG name does not have the expected prefix and an ID are skipped.
+     */
+    private static <T extends MCPEntry> Int2ObjectMap<T> readMembers(String csv, String prefix, StringPool pool,
+        MemberFactory<T> factory) {
+        final Header header = Header.read(csv, "searge", "name", "side", "desc");
+        if (header == null) return Int2ObjectMaps.emptyMap();
+        final int searge = header.columns()[0];
+        final int name = header.columns()[1];
+        final int side = header.columns()[2];
+        final int desc = header.columns()[3];
+        final int lastColumn = Math.max(Math.max(searge, name), side);
+
+        return Int2ObjectMaps.unmodifiable(readChunks(csv, header.end(), (tokenizer, map) -> {
+            while (tokenizer.next()) {
+                if (tokenizer.columns() <= lastColumn || !tokenizer.startsWith(searge, prefix, 0)) continue;
+                final int id = tokenizer.parseDigits(searge, prefix.length());
+                if (id == -1 || tokenizer.parsedEnd() >= tokenizer.length(searge)
+                    || tokenizer.charAt(searge, tokenizer.parsedEnd()) != '_') continue;
+                if (tokenizer.length(name) == 0 || tokenizer.length(side) != 1) continue;
+                final String description = tokenizer.has(desc) ? pool.intern(tokenizer.get(desc)) : "";
+                map.put(id, factory.create(id, pool.intern(tokenizer.get(name)),
+                    MCPEntry.Side.of(tokenizer.charAt(side, 0)), description));
+            }
+        }, MCPParser::merge));
+    }
+
+    /**
+     * Reads params.csv, which has the {@code param}, {@code name} and {@code side} columns. Parameter names are of the
+     * form {@code p_<method ID>_<index>_}, with an {@code i} before the ID for constructor parameters.
+     */
+    private static Int2ObjectMap<List<MCPEntry.Parameter>> readParameters(String csv, StringPool pool) {
+        final Header header = Header.read(csv, "param", "name", "side");
+        if (header == null) return Int2ObjectMaps.emptyMap();
+        final int param = header.columns()[0];
+        final int name = header.columns()[1];
+        final int side = header.columns()[2];
+        final int lastColumn = Math.max(Math.max(param, name), side);
+
+        final Int2ObjectMap<List<MCPEntry.Parameter>> params = readChunks(csv, header.end(), (tokenizer, map) -> {
+            while (tokenizer.next()) {
+                if (tokenizer.columns() <= lastColumn || !tokenizer.startsWith(param, "p_", 0)) continue;
+                final boolean constructor = tokenizer.length(param) > 2 && tokenizer.charAt(param, 2) == 'i';
+                final int methodID = tokenizer.parseDigits(param, constructor ? 3 : 2);
+                if (methodID == -1 || tokenizer.parsedEnd() >= tokenizer.length(param)
+                    || tokenizer.charAt(param, tokenizer.parsedEnd()) != '_') continue;
+                final int index = tokenizer.parseDigits(param, tokenizer.parsedEnd() + 1);
+                if (index == -1 || tokenizer.length(name) == 0 || tokenizer.length(side) != 1) continue;
+
+                final String paramName = pool.intern(tokenizer.get(name));
+                final MCPEntry.Side paramSide = MCPEntry.Side.of(tokenizer.charAt(side, 0));
+                map.computeIfAbsent(methodID, id -> new ArrayList<>(2)).add(constructor
+                    ? new MCPEntry.ConstructorParameter(methodID, index, paramName, paramSide)
+                    : new MCPEntry.MethodParameter(methodID, index, paramName, paramSide));
+            }
+        }, MCPParser::mergeLists);
+        params.replaceAll((id, entries) -> Collections.unmodifiableList(entries));
+        return Int2ObjectMaps.unmodifiable(params);
+    }
+
+    private record Header(int[] columns, int end) {
+        /**
+         * Maps the given column names to their index in the header row.
+         *
+         * @return null if the file is empty
+         * @throws IllegalArgumentException if the header lacks one of the columns
+         */
+        @Nullable
+        static Header read(String csv, String... names) {
+            final int start = !csv.isEmpty() && csv.charAt(0) == '\uFEFF' ? 1 : 0; // Byte order mark
+            final int end = csv.indexOf('\n', start);
+            final CSVTokenizer tokenizer = new CSVTokenizer(csv, start, end != -1 ? end : csv.length());
+            if (!tokenizer.next()) return null;
+            final int[] columns = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                columns[i] = tokenizer.indexOf(names[i]);
+                if (columns[i] == -1) throw new IllegalArgumentException("Missing CSV column " + names[i]);
+            }
+            return new Header(columns, end != -1 ? end + 1 : csv.length());
+        }
+    }
+
+    private interface ChunkReader<T> {
+        void read(CSVTokenizer tokenizer, Int2ObjectMap<T> map);
+    }
+
+    private interface Merger<T> {
+        Int2ObjectMap<T> merge(Int2ObjectMap<T> left, Int2ObjectMap<T> right);
+    }
+
+    /**
+     * Reads every chunk of rows into its own map, without any locking, then merges the maps in file order into one
+     * mutable map.
+     */
+    private static <T> Int2ObjectMap<T> readChunks(String csv, int start, ChunkReader<T> reader, Merger<T> merger) {
+        final IntList bounds = CSVTokenizer.splitRows(csv, start, CHUNK_SIZE);
+        return IntStream.range(0, bounds.size() - 1).parallel()
+            .mapToObj(chunk -> {
+                final Int2ObjectMap<T> map = new Int2ObjectOpenHashMap<>();
+                reader.read(new CSVTokenizer(csv, bounds.getInt(chunk), bounds.getInt(chunk + 1)), map);
+                return map;
+            })
+            .reduce(merger::merge)
+            .orElseGet(Int2ObjectOpenHashMap::new);
+    }
+
+    /**
+     * An entry from a later row replaces one with the same ID, as it would in a sequential import. The smaller map is
+     * merged into the larger one.
+     */
+    private static <T> Int2ObjectMap<T> merge(Int2ObjectMap<T> left, Int2ObjectMap<T> right) {
+        if (left.size() >= right.size()) {
+            left.putAll(right);
+            return left;
+        }
+        for (Int2ObjectMap.Entry<T> entry : Int2ObjectMaps.fastIterable(left)) {
+            right.putIfAbsent(entry.getIntKey(), entry.getValue());
+        }
+        return right;
+    }
+
+    /**
+     * Like {@link #merge}, but keeps every entry of an ID, in file order.
+     */
+    private static <T> Int2ObjectMap<List<T>> mergeLists(Int2ObjectMap<List<T>> left, Int2ObjectMap<List<T>> right) {
+        if (left.size() >= right.size()) {
+            for (Int2ObjectMap.Entry<List<T>> entry : Int2ObjectMaps.fastIterable(right)) {
+                left.merge(entry.getIntKey(), entry.getValue(), (first, second) -> {
+                    first.addAll(second);
+                    return first;
+                });
+            }
+            return left;
+        }
+        for (Int2ObjectMap.Entry<List<T>> entry : Int2ObjectMaps.fastIterable(left)) {
+            right.merge(entry.getIntKey(), entry.getValue(), (second, first) -> {
+                second.addAll(0, first);
+                return second;
+            });
+        }
+        return right;
     }
 }
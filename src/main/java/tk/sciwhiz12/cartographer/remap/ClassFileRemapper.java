@@ -0,0 +1,604 @@
+package tk.sciwhiz12.cartographer.remap;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.UnaryOperator;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Rewrites the class, member and descriptor names of a class file, without a bytecode library.
+ *
+ * <p>Names are only stored in the constant pool, so the rest of the class file is kept byte for byte. Existing pool
+ * entries are never changed, since one UTF-8 entry may be shared by a class name and a string constant, or one
+ * name-and-type entry by references to members of different classes. Instead, new entries are appended to the pool,
+ * and only the references of the renamed names are pointed to them. Every existing index stays valid, including those
+ * in the bytecode.</p>
+ */
+final class ClassFileRemapper {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+
+    /**
+     * The names to remap to. Names which are not remapped are returned as they are.
+     */
+    interface Names {
+        String mapClass(String internalName);
+
+        String mapDescriptor(String descriptor);
+
+        String mapField(String owner, String name, String descriptor);
+
+        String mapMethod(String owner, String name, String descriptor);
+    }
+
+    private final byte[] input;
+    private final Names names;
+    private final int[] offsets; // Offset of the tag of each pool entry, 0 for the unusable second slot of long/double
+    private final String[] decoded; // Decoded UTF-8 entries
+    private final int poolEnd;
+
+    // New pool entries, and the indices which point to them (by offset in the input)
+    private final ByteArrayOutputStream appended = new ByteArrayOutputStream();
+    private final DataOutputStream appendedOutput = new DataOutputStream(appended);
+    private final Object2IntMap<String> strings = new Object2IntOpenHashMap<>(); // Existing and new UTF-8 entries
+    private final Object2IntMap<String> appendedNameAndTypes = new Object2IntOpenHashMap<>();
+    private final Int2IntMap patches = new Int2IntOpenHashMap();
+    private int poolCount;
+
+    private String thisClass;
+    private int bootstrapMethods = -1; // Offset of the BootstrapMethods attribute contents
+
+    private ClassFileRemapper(byte[] input, Names names) {
+        this.input = input;
+        this.names = names;
+        if (input.length < 10 || s4(0) != MAGIC) throw new IllegalArgumentException("Not a class file");
+        poolCount = u2(8);
+        offsets = new int[poolCount];
+        decoded = new String[poolCount];
+        int pos = 10;
+        for (int i = 1; i < poolCount; i++) {
+            offsets[i] = pos;
+            final int tag = input[pos] & 0xFF;
+            pos += switch (tag) {
+                case UTF8 -> 3 + u2(pos + 1);
+                case INTEGER, FLOAT, FIELD_REF, METHOD_REF, INTERFACE_METHOD_REF, NAME_AND_TYPE, DYNAMIC,
+                    INVOKE_DYNAMIC -> 5;
+                case LONG, DOUBLE -> 9;
+                case CLASS, STRING, METHOD_TYPE, MODULE, PACKAGE -> 3;
+                case METHOD_HANDLE -> 4;
+                default -> throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at " + pos);
+            };
+            if (tag == LONG || tag == DOUBLE) i++; // Takes two slots
+        }
+        poolEnd = pos;
+    }
+
+    /**
+     * The internal names of the class, its superclass (null for {@code java/lang/Object}) and its interfaces.
+     */
+    static String[] readHierarchy(byte[] classFile) {
+        final ClassFileRemapper reader = new ClassFileRemapper(classFile, null);
+        final int pos = reader.poolEnd;
+        final int interfaces = reader.u2(pos + 6);
+        final String[] hierarchy = new String[2 + interfaces];
+        hierarchy[0] = reader.className(reader.u2(pos + 2));
+        final int superClass = reader.u2(pos + 4);
+        hierarchy[1] = superClass == 0 ? null : reader.className(superClass);
+        for (int i = 0; i < interfaces; i++) hierarchy[2 + i] = reader.className(reader.u2(pos + 8 + i * 2));
+        return hierarchy;
+    }
+
+    /**
+     * Remaps the class file.
+     *
+     * @return the remapped class file, or the same array if nothing was remapped
+     * @throws IllegalArgumentException if the class file is malformed
+     * @throws UncheckedIOException     if a remapped string is too long for the constant pool
+     */
+    static byte[] remap(byte[] classFile, Names names) {
+        try {
+            return new ClassFileRemapper(classFile, names).remap();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated class file", e);
+        }
+    }
+
+    private byte[] remap() {
+        int pos = poolEnd;
+        thisClass = className(u2(pos + 2));
+        pos += 8 + u2(pos + 6) * 2;
+
+        final int fieldsStart = pos;
+        pos = skipMembers(pos);
+        final int methodsStart = pos;
+        pos = skipMembers(pos);
+        final int attributesStart = pos;
+        // The bootstrap methods are needed to remap lambdas, so they are found before remapping the pool
+        forEachAttribute(attributesStart, (name, start, length) -> {
+            if (name.equals("BootstrapMethods")) bootstrapMethods = start;
+        });
+
+        remapPool();
+        remapMembers(fieldsStart, false);
+        remapMembers(methodsStart, true);
+        forEachAttribute(attributesStart, this::remapClassAttribute);
+
+        if (patches.isEmpty()) return input;
+        if (poolCount > 0xFFFF) throw new IllegalArgumentException("Too many constant pool entries after remapping");
+
+        final byte[] pool = appended.toByteArray();
+        final byte[] output = new byte[input.length + pool.length];
+        System.arraycopy(input, 0, output, 0, poolEnd);
+        System.arraycopy(pool, 0, output, poolEnd, pool.length);
+        System.arraycopy(input, poolEnd, output, poolEnd + pool.length, input.length - poolEnd);
+        output[8] = (byte) (poolCount >> 8);
+        output[9] = (byte) poolCount;
+        for (Int2IntMap.Entry patch : patches.int2IntEntrySet()) {
+            final int offset = patch.getIntKey() < poolEnd ? patch.getIntKey() : patch.getIntKey() + pool.length;
+            output[offset] = (byte) (patch.getIntValue() >> 8);
+            output[offset + 1] = (byte) patch.getIntValue();
+        }
+        return output;
+    }
+
+    private void remapPool() {
+        final int count = offsets.length;
+        for (int i = 1; i < count; i++) {
+            final int offset = offsets[i];
+            if (offset == 0) continue;
+            switch (input[offset]) {
+                case CLASS -> remapString(offset + 1, this::mapClassName);
+                case METHOD_TYPE -> remapString(offset + 1, names::mapDescriptor);
+                case FIELD_REF, METHOD_REF, INTERFACE_METHOD_REF -> {
+                    final String owner = className(u2(offset + 1));
+                    final int nameAndType = offsets[u2(offset + 3)];
+                    final String name = string(u2(nameAndType + 1));
+                    final String descriptor = string(u2(nameAndType + 3));
+                    final String newName = input[offset] == FIELD_REF
+                        ? names.mapField(owner, name, descriptor)
+                        : names.mapMethod(owner, name, descriptor);
+                    remapNameAndType(offset + 3, newName);
+                }
+                case INVOKE_DYNAMIC -> remapNameAndType(offset + 3, lambdaName(offset));
+                case DYNAMIC -> remapNameAndType(offset + 3, null);
+                default -> {}
+            }
+        }
+    }
+
+    /**
+     * The name of the interface method implemented by a lambda or method reference, or null if the invokedynamic
+     * does not create one.
+     */
+    private String lambdaName(int invokeDynamic) {
+        final int nameAndType = offsets[u2(invokeDynamic + 3)];
+        final String name = string(u2(nameAndType + 1));
+        if (bootstrapMethods == -1) return null;
+        int pos = bootstrapMethods + 2;
+        for (int i = u2(invokeDynamic + 1); i > 0; i--) pos += 4 + u2(pos + 2) * 2;
+        final int handle = offsets[u2(pos)];
+        final int method = offsets[u2(handle + 2)];
+        if (u2(pos + 2) == 0 || !className(u2(method + 1)).equals(LAMBDA_METAFACTORY)) return null;
+
+        // The interface is the type returned by the invokedynamic, and the first argument is the erased method type
+        final String descriptor = string(u2(nameAndType + 3));
+        final int returnType = descriptor.indexOf(')') + 1;
+        if (descriptor.charAt(returnType) != 'L') return null;
+        final String functionalInterface = descriptor.substring(returnType + 1, descriptor.length() - 1);
+        final int methodType = offsets[u2(pos + 4)];
+        if (input[methodType] != METHOD_TYPE) return null;
+        return names.mapMethod(functionalInterface, name, string(u2(methodType + 1)));
+    }
+
+    private void remapMembers(int pos, boolean methods) {
+        final int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            final String name = string(u2(pos + 2));
+            final String descriptor = string(u2(pos + 4));
+            final String newName = methods
+                ? names.mapMethod(thisClass, name, descriptor)
+                : names.mapField(thisClass, name, descriptor);
+            remapString(pos + 2, old -> newName);
+            remapString(pos + 4, names::mapDescriptor);
+            pos = forEachAttribute(pos + 6, this::remapMemberAttribute);
+        }
+    }
+
+    private int skipMembers(int pos) {
+        final int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) pos = forEachAttribute(pos + 6, (name, start, length) -> {});
+        return pos;
+    }
+
+    private void remapClassAttribute(String name, int start, int length) {
+        switch (name) {
+            case "InnerClasses" -> {
+                for (int i = 0, count = u2(start); i < count; i++) {
+                    final int entry = start + 2 + i * 8;
+                    if (u2(entry + 4) == 0) continue; // Anonymous
+                    final String innerClass = className(u2(entry));
+                    final String mapped = mapClassName(innerClass);
+                    remapString(entry + 4, innerName -> {
+                        if (mapped.equals(innerClass) || !innerClass.endsWith('$' + innerName)) return innerName;
+                        return mapped.substring(mapped.lastIndexOf('$') + 1);
+                    });
+                }
+            }
+            case "EnclosingMethod" -> {
+                if (u2(start + 2) == 0) return;
+                final int nameAndType = offsets[u2(start + 2)];
+                remapNameAndType(start + 2, names.mapMethod(className(u2(start)), string(u2(nameAndType + 1)),
+                    string(u2(nameAndType + 3))));
+            }
+            case "Record" -> {
+                int pos = start + 2;
+                for (int i = 0, count = u2(start); i < count; i++) {
+                    final String descriptor = string(u2(pos + 2));
+                    remapString(pos, component -> names.mapField(thisClass, component, descriptor));
+                    remapString(pos + 2, names::mapDescriptor);
+                    pos = forEachAttribute(pos + 4, this::remapMemberAttribute);
+                }
+            }
+            default -> remapMemberAttribute(name, start, length);
+        }
+    }
+
+    private void remapMemberAttribute(String name, int start, int length) {
+        switch (name) {
+            case "Signature" -> remapString(start, this::mapSignature);
+            case "RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations" -> remapAnnotations(start);
+            case "RuntimeVisibleParameterAnnotations", "RuntimeInvisibleParameterAnnotations" -> {
+                int pos = start + 1;
+                for (int i = 0, count = input[start] & 0xFF; i < count; i++) pos = remapAnnotations(pos);
+            }
+            case "RuntimeVisibleTypeAnnotations", "RuntimeInvisibleTypeAnnotations" -> remapTypeAnnotations(start);
+            case "AnnotationDefault" -> remapElementValue(start);
+            case "Code" -> {
+                final int codeLength = s4(start + 4);
+                final int exceptions = start + 8 + codeLength;
+                forEachAttribute(exceptions + 2 + u2(exceptions) * 8, this::remapCodeAttribute);
+            }
+            default -> {}
+        }
+    }
+
+    private void remapCodeAttribute(String name, int start, int length) {
+        switch (name) {
+            case "LocalVariableTable", "LocalVariableTypeTable" -> {
+                final boolean signatures = name.equals("LocalVariableTypeTable");
+                for (int i = 0, count = u2(start); i < count; i++) {
+                    remapString(start + 2 + i * 10 + 6, signatures ? this::mapSignature : names::mapDescriptor);
+                }
+            }
+            case "RuntimeVisibleTypeAnnotations", "RuntimeInvisibleTypeAnnotations" -> remapTypeAnnotations(start);
+            default -> {}
+        }
+    }
+
+    private int remapAnnotations(int pos) {
+        final int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) pos = remapAnnotation(pos);
+        return pos;
+    }
+
+    private int remapAnnotation(int pos) {
+        remapString(pos, names::mapDescriptor);
+        final int pairs = u2(pos + 2);
+        pos += 4;
+        for (int i = 0; i < pairs; i++) pos = remapElementValue(pos + 2);
+        return pos;
+    }
+
+    private int remapElementValue(int pos) {
+        final int tag = input[pos];
+        return switch (tag) {
+            case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z', 's' -> pos + 3;
+            case 'e' -> {
+                final String type = string(u2(pos + 1));
+                if (type.length() > 2 && type.charAt(0) == 'L') {
+                    final String owner = type.substring(1, type.length() - 1);
+                    remapString(pos + 3, constant -> names.mapField(owner, constant, type));
+                }
+                remapString(pos + 1, names::mapDescriptor);
+                yield pos + 5;
+            }
+            case 'c' -> {
+                remapString(pos + 1, names::mapDescriptor);
+                yield pos + 3;
+            }
+            case '@' -> remapAnnotation(pos + 1);
+            case '[' -> {
+                int value = pos + 3;
+                for (int i = 0, count = u2(pos + 1); i < count; i++) value = remapElementValue(value);
+                yield value;
+            }
+            default -> throw new IllegalArgumentException("Unknown annotation element tag " + tag + " at " + pos);
+        };
+    }
+
+    private void remapTypeAnnotations(int pos) {
+        final int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            final int targetType = input[pos] & 0xFF;
+            pos += 1 + switch (targetType) {
+                case 0x00, 0x01, 0x16 -> 1;
+                case 0x10, 0x11, 0x12, 0x17, 0x42, 0x43, 0x44, 0x45, 0x46 -> 2;
+                case 0x13, 0x14, 0x15 -> 0;
+                case 0x40, 0x41 -> 2 + u2(pos + 1) * 6;
+                case 0x47, 0x48, 0x49, 0x4A, 0x4B -> 3;
+                default -> throw new IllegalArgumentException("Unknown type annotation target " + targetType);
+            };
+            pos += 1 + (input[pos] & 0xFF) * 2; // The type path
+            pos = remapAnnotation(pos);
+        }
+    }
+
+    @FunctionalInterface
+    private interface AttributeVisitor {
+        void visit(String name, int start, int length);
+    }
+
+    /**
+     * Visits the attributes in a table starting with their count.
+     *
+     * @return the offset after the attributes
+     */
+    private int forEachAttribute(int pos, AttributeVisitor visitor) {
+        final int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            final int length = s4(pos + 2);
+            visitor.visit(string(u2(pos)), pos + 6, length);
+            pos += 6 + length;
+        }
+        return pos;
+    }
+
+    private String mapClassName(String name) {
+        return name.startsWith("[") ? names.mapDescriptor(name) : names.mapClass(name);
+    }
+
+    /**
+     * Remaps the class names in a generic signature, such as {@code <T:La;>Lb<TT;>.c;}. Inner classes of
+     * parameterized types are written after a {@code .}, as their simple name. Malformed signatures are kept.
+     */
+    private String mapSignature(String signature) {
+        try {
+            return mapSignatureTypes(signature);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            return signature;
+        }
+    }
+
+    private String mapSignatureTypes(String signature) {
+        final StringBuilder builder = new StringBuilder(signature.length() + 32);
+        int pos = 0;
+        final int length = signature.length();
+        if (signature.charAt(0) == '<') {
+            // Formal type parameters: <Name:ClassBound:InterfaceBound...>
+            builder.append('<');
+            pos = 1;
+            while (signature.charAt(pos) != '>') {
+                final int colon = signature.indexOf(':', pos);
+                builder.append(signature, pos, colon);
+                pos = colon;
+                while (signature.charAt(pos) == ':') {
+                    builder.append(':');
+                    pos++;
+                    if (signature.charAt(pos) != ':' && signature.charAt(pos) != '>') {
+                        pos = mapSignatureType(signature, pos, builder);
+                    }
+                }
+            }
+            builder.append('>');
+            pos++;
+        }
+        while (pos < length) {
+            final char ch = signature.charAt(pos);
+            if (ch == '(' || ch == ')' || ch == '^') {
+                builder.append(ch);
+                pos++;
+            } else {
+                pos = mapSignatureType(signature, pos, builder);
+            }
+        }
+        return builder.toString();
+    }
+
+    private int mapSignatureType(String signature, int pos, StringBuilder builder) {
+        final char ch = signature.charAt(pos);
+        switch (ch) {
+            case '[', '+', '-' -> {
+                builder.append(ch);
+                return mapSignatureType(signature, pos + 1, builder);
+            }
+            case 'T' -> {
+                final int end = signature.indexOf(';', pos) + 1;
+                builder.append(signature, pos, end);
+                return end;
+            }
+            case 'L' -> {
+                pos++;
+                int end = nameEnd(signature, pos);
+                String className = signature.substring(pos, end);
+                String mapped = names.mapClass(className);
+                builder.append('L').append(mapped);
+                pos = end;
+                while (true) {
+                    final char next = signature.charAt(pos);
+                    if (next == ';') {
+                        builder.append(';');
+                        return pos + 1;
+                    } else if (next == '<') {
+                        builder.append('<');
+                        pos++;
+                        while (signature.charAt(pos) != '>') pos = mapSignatureType(signature, pos, builder);
+                        builder.append('>');
+                        pos++;
+                    } else if (next == '.') {
+                        end = nameEnd(signature, pos + 1);
+                        final String innerName = signature.substring(pos + 1, end);
+                        className = className + '$' + innerName;
+                        final String mappedInner = names.mapClass(className);
+                        builder.append('.').append(mappedInner.startsWith(mapped + '$')
+                            ? mappedInner.substring(mapped.length() + 1)
+                            : innerName);
+                        mapped = mappedInner;
+                        pos = end;
+                    } else {
+                        throw new IllegalArgumentException("Malformed signature " + signature);
+                    }
+                }
+            }
+            default -> { // Primitive types and wildcards
+                builder.append(ch);
+                return pos + 1;
+            }
+        }
+    }
+
+    private static int nameEnd(String signature, int pos) {
+        while (true) {
+            final char ch = signature.charAt(pos);
+            if (ch == ';' || ch == '<' || ch == '.') return pos;
+            pos++;
+        }
+    }
+
+    /**
+     * Points the name-and-type index at the offset to an entry with the remapped name (unless null, which keeps the
+     * name) and descriptor.
+     */
+    private void remapNameAndType(int offset, String newName) {
+        final int nameAndType = offsets[u2(offset)];
+        final String name = string(u2(nameAndType + 1));
+        final String descriptor = string(u2(nameAndType + 3));
+        final String newDescriptor = names.mapDescriptor(descriptor);
+        if ((newName == null || newName.equals(name)) && newDescriptor.equals(descriptor)) return;
+
+        final int nameIndex = newName == null || newName.equals(name) ? u2(nameAndType + 1) : stringIndex(newName);
+        final int descriptorIndex = newDescriptor.equals(descriptor) ? u2(nameAndType + 3)
+            : stringIndex(newDescriptor);
+        final String key = nameIndex + ":" + descriptorIndex;
+        int index = appendedNameAndTypes.getOrDefault(key, -1);
+        if (index == -1) {
+            index = append(NAME_AND_TYPE, out -> {
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            appendedNameAndTypes.put(key, index);
+        }
+        patches.put(offset, index);
+    }
+
+    /**
+     * Points the UTF-8 index at the offset to an entry with the remapped string, if it changed.
+     */
+    private void remapString(int offset, UnaryOperator<String> mapper) {
+        final String value = string(u2(offset));
+        final String mapped = mapper.apply(value);
+        if (!mapped.equals(value)) patches.put(offset, stringIndex(mapped));
+    }
+
+    private int stringIndex(String value) {
+        if (strings.isEmpty()) {
+            // Remapped names are often in the pool already, such as class names which are also in descriptors
+            for (int i = 1; i < offsets.length; i++) {
+                if (offsets[i] != 0 && input[offsets[i]] == UTF8) strings.putIfAbsent(string(i), i);
+            }
+        }
+        int index = strings.getOrDefault(value, -1);
+        if (index == -1) {
+            index = append(UTF8, out -> out.writeUTF(value));
+            strings.put(value, index);
+        }
+        return index;
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int append(int tag, EntryWriter writer) {
+        try {
+            appendedOutput.writeByte(tag);
+            writer.write(appendedOutput);
+        } catch (IOException e) {
+            // Only thrown for a string longer than the 65535 bytes a constant pool entry can hold
+            throw new UncheckedIOException(e);
+        }
+        return poolCount++;
+    }
+
+    private String className(int classIndex) {
+        return string(u2(offsets[classIndex] + 1));
+    }
+
+    private String string(int index) {
+        String value = decoded[index];
+        if (value == null) {
+            final int offset = offsets[index];
+            if (input[offset] != UTF8) throw new IllegalArgumentException("Not a UTF-8 entry: " + index);
+            final int length = u2(offset + 1);
+            boolean ascii = true;
+            for (int i = offset + 3; i < offset + 3 + length; i++) {
+                if (input[i] <= 0) { // Modified UTF-8 encodes even the null character in two bytes
+                    ascii = false;
+                    break;
+                }
+            }
+            try {
+                value = ascii
+                    ? new String(input, offset + 3, length, ISO_8859_1)
+                    : new DataInputStream(new ByteArrayInputStream(input, offset + 1, length + 2)).readUTF();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed UTF-8 entry " + index, e);
+            }
+            decoded[index] = value;
+        }
+        return value;
+    }
+
+    private int u2(int offset) {
+        return (input[offset] & 0xFF) << 8 | input[offset + 1] & 0xFF;
+    }
+
+    private int s4(int offset) {
+        return input[offset] << 24 | (input[offset + 1] & 0xFF) << 16 | (input[offset + 2] & 0xFF) << 8
+            | input[offset + 3] & 0xFF;
+    }
+}
@@ -0,0 +1,281 @@
+package tk.sciwhiz12.cartographer.remap;
+
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.util.DescriptorRemapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static tk.sciwhiz12.cartographer.util.Logging.errf;
+
+/**
+ * Remaps the class, field, method and descriptor names of the classes in a jar between reobfuscated and SRG names.
+ *
+ * <p>The jar is read as a stream of entries. The classes are then remapped in parallel, and the output jar is written
+ * with its entries sorted by name, so the same input always gives the same output. References to members through a
+ * subclass (such as a field of a superclass accessed on {@code this}) are resolved through the superclasses and
+ * interfaces of the classes in the jar and the given library jars.</p>
+ */
+public final class JarRemapper {
+    private static final String CLASS_EXTENSION = ".class";
+
+    private final Map<String, String> fields; // owner.name -> name
+    private final Map<String, String> methods; // owner.name(SRG descriptor) -> name
+    private final DescriptorRemapper descriptors;
+    // Method descriptors in the names of the mapped methods, which are always SRG names
+    private final UnaryOperator<String> srgDescriptors;
+
+    /**
+     * The counts of a remapping run.
+     *
+     * @param classes         the class files in the jar
+     * @param remappedClasses the class files with at least one remapped name
+     * @param failedClasses   the malformed class files, and those whose remapped names do not fit in a class file,
+     *                        which were copied unchanged
+     * @param otherEntries    the other entries, which were copied (signature files of signed jars are left out)
+     */
+    public record Statistics(int classes, int remappedClasses, int failedClasses, int otherEntries) {}
+
+    private record Entry(String name, long time, byte[] contents) {}
+
+    private JarRemapper(Map<String, String> fields, Map<String, String> methods, DescriptorRemapper descriptors,
+        UnaryOperator<String> srgDescriptors) {
+        this.fields = fields;
+        this.methods = methods;
+        this.descriptors = descriptors;
+        this.srgDescriptors = srgDescriptors;
+    }
+
+    /**
+     * Remaps reobfuscated names to SRG names. Named methods (such as overrides of library methods) and enum values are
+     * remapped to their unobfuscated names.
+     */
+    public static JarRemapper reobfToSrg(SRGDatabase database) {
+        final Map<String, String> classes = new HashMap<>(database.classes().size() * 2);
+        for (SRGEntry.Class clz : database.classes().values()) classes.put(clz.reobfName(), clz.srgName());
+        final Map<String, String> fields = new HashMap<>(database.fields().size() * 2);
+        for (SRGEntry.Field field : database.fields().values()) {
+            fields.put(field.parentClass().reobfName() + '.' + field.reobfName(), field.srgName());
+        }
+        for (SRGEntry.EnumValue value : database.enumValues().values()) {
+            fields.put(value.parentClass().reobfName() + '.' + value.reobfName(), value.valueName());
+        }
+        final Map<String, String> methods = new HashMap<>(database.numberedMethods().size() * 2);
+        for (SRGEntry.NumberedMethod method : database.numberedMethods().values()) {
+            methods.put(method.parentClass().reobfName() + '.' + method.reobfName() + method.methodSignature(),
+                method.srgName());
+        }
+        for (SRGEntry.NamedMethod method : database.namedMethods().values()) {
+            methods.put(method.parentClass().reobfName() + '.' + method.reobfName() + method.methodSignature(),
+                method.deobfName());
+        }
+        final DescriptorRemapper descriptors = new DescriptorRemapper(classes::get);
+        return new JarRemapper(fields, methods, descriptors, descriptors::remap);
+    }
+
+    /**
+     * Remaps SRG names back to reobfuscated names.
+     */
+    public static JarRemapper srgToReobf(SRGDatabase database) {
+        final Map<String, String> classes = new HashMap<>(database.classes().size() * 2);
+        for (SRGEntry.Class clz : database.classes().values()) classes.put(clz.srgName(), clz.reobfName());
+        final Map<String, String> fields = new HashMap<>(database.fields().size() * 2);
+        for (SRGEntry.Field field : database.fields().values()) {
+            fields.put(field.parentClass().srgName() + '.' + field.srgName(), field.reobfName());
+        }
+        for (SRGEntry.EnumValue value : database.enumValues().values()) {
+            fields.put(value.parentClass().srgName() + '.' + value.valueName(), value.reobfName());
+        }
+        final Map<String, String> methods = new HashMap<>(database.numberedMethods().size() * 2);
+        for (SRGEntry.NumberedMethod method : database.numberedMethods().values()) {
+            methods.put(method.parentClass().srgName() + '.' + method.srgName() + method.methodSignature(),
+                method.reobfName());
+        }
+        for (SRGEntry.NamedMethod method : database.namedMethods().values()) {
+            methods.put(method.parentClass().srgName() + '.' + method.deobfName() + method.methodSignature(),
+                method.reobfName());
+        }
+        return new JarRemapper(fields, methods, new DescriptorRemapper(classes::get), UnaryOperator.identity());
+    }
+
+    /**
+     * Remaps the classes of the input jar into the output jar.
+     *
+     * @param libraries jars with the other classes which the remapped classes extend, such as the Minecraft jar
+     *                  when remapping a mod; only their class hierarchy is read
+     */
+    public Statistics remap(Path input, Path output, List<Path> libraries) throws IOException {
+        final List<Entry> entries = readEntries(input);
+
+        final Map<String, String[]> hierarchy = new ConcurrentHashMap<>();
+        for (Path library : libraries) readHierarchy(readEntries(library), hierarchy);
+        readHierarchy(entries, hierarchy);
+
+        final Names names = new Names(hierarchy);
+        final LongAdder classCount = new LongAdder();
+        final LongAdder remappedClasses = new LongAdder();
+        final LongAdder failedClasses = new LongAdder();
+        final List<Entry> remapped = entries.parallelStream()
+            .filter(entry -> !isSignatureFile(entry.name()))
+            .map(entry -> {
+                if (!entry.name().endsWith(CLASS_EXTENSION)) return entry;
+                classCount.increment();
+                try {
+                    final String className = ClassFileRemapper.readHierarchy(entry.contents())[0];
+                    final byte[] contents = ClassFileRemapper.remap(entry.contents(), names);
+                    if (contents == entry.contents()) return entry;
+                    remappedClasses.increment();
+                    return new Entry(entryName(entry.name(), className, names.mapClass(className)), entry.time(),
+                        contents);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException | UncheckedIOException e) {
+                    errf("Cannot remap class file %s, copying it unchanged: %s%n", entry.name(), e.getMessage());
+                    failedClasses.increment();
+                    return entry;
+                }
+            })
+            .sorted(Comparator.comparing(Entry::name))
+            .collect(Collectors.toList());
+
+        int otherEntries = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(output),
+            1 << 16))) {
+            String previous = null;
+            for (Entry entry : remapped) {
+                if (entry.name().equals(previous)) {
+                    errf("Duplicate jar entry %s after remapping, keeping the first one%n", entry.name());
+                    continue;
+                }
+                previous = entry.name();
+                if (!entry.name().endsWith(CLASS_EXTENSION)) otherEntries++;
+                final ZipEntry zipEntry = new ZipEntry(entry.name());
+                zipEntry.setTime(entry.time());
+                zip.putNextEntry(zipEntry);
+                zip.write(entry.contents());
+                zip.closeEntry();
+            }
+        }
+        return new Statistics(classCount.intValue(), remappedClasses.intValue(), failedClasses.intValue(),
+            otherEntries);
+    }
+
+    /**
+     * The name of the entry of a remapped class. Classes may be in a subfolder, such as the versioned classes of a
+     * multi-release jar, which is kept.
+     */
+    private static String entryName(String name, String className, String mappedName) {
+        if (!name.endsWith(className + CLASS_EXTENSION)) return name;
+        final int folderEnd = name.length() - className.length() - CLASS_EXTENSION.length();
+        return name.substring(0, folderEnd) + mappedName + CLASS_EXTENSION;
+    }
+
+    private static List<Entry> readEntries(Path jar) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        try (InputStream file = Files.newInputStream(jar);
+             ZipInputStream zip = new ZipInputStream(new BufferedInputStream(file, 1 << 16))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(new Entry(entry.getName(), entry.getTime(), zip.readAllBytes()));
+            }
+        }
+        return entries;
+    }
+
+    private static void readHierarchy(List<Entry> entries, Map<String, String[]> hierarchy) {
+        entries.parallelStream()
+            .filter(entry -> entry.name().endsWith(CLASS_EXTENSION))
+            .forEach(entry -> {
+                try {
+                    final String[] classes = ClassFileRemapper.readHierarchy(entry.contents());
+                    hierarchy.put(classes[0], classes);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    // Reported when the class is remapped
+                }
+            });
+    }
+
+    /**
+     * The signatures of a signed jar, which no longer match once its classes are remapped.
+     */
+    private static boolean isSignatureFile(String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) != -1) return false;
+        return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+    }
+
+    /**
+     * The names of one remapping run, which resolve members through the class hierarchy of the remapped jar.
+     */
+    private final class Names implements ClassFileRemapper.Names {
+        private final Map<String, String[]> hierarchy;
+        // Members found through the superclasses, or empty for those which are not mapped in any of them
+        private final Map<String, Optional<String>> resolved = new ConcurrentHashMap<>();
+
+        Names(Map<String, String[]> hierarchy) {
+            this.hierarchy = hierarchy;
+        }
+
+        @Override
+        public String mapClass(String internalName) {
+            return descriptors.remapClass(internalName);
+        }
+
+        @Override
+        public String mapDescriptor(String descriptor) {
+            return descriptors.remap(descriptor);
+        }
+
+        @Override
+        public String mapField(String owner, String name, String descriptor) {
+            return resolve(fields, owner, '.' + name, name);
+        }
+
+        @Override
+        public String mapMethod(String owner, String name, String descriptor) {
+            if (name.startsWith("<")) return name; // Constructors and static initializers
+            return resolve(methods, owner, '.' + name + srgDescriptors.apply(descriptor), name);
+        }
+
+        private String resolve(Map<String, String> members, String owner, String member, String name) {
+            return find(members, owner, member).orElse(name);
+        }
+
+        /**
+         * Finds the member in the class, or else in its superclasses and interfaces.
+         */
+        private Optional<String> find(Map<String, String> members, String owner, String member) {
+            final String key = owner + member;
+            final String mapped = members.get(key);
+            if (mapped != null) return Optional.of(mapped);
+            final Optional<String> cached = resolved.get(key);
+            if (cached != null) return cached;
+
+            Optional<String> found = Optional.empty();
+            final String[] classes = hierarchy.get(owner);
+            if (classes != null) {
+                for (int i = 1; i < classes.length && found.isEmpty(); i++) {
+                    if (classes[i] != null) found = find(members, classes[i], member);
+                }
+            }
+            resolved.put(key, found);
+            return found;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package tk.sciwhiz12.cartographer.remap;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.mcp.MCPEntry;
+import tk.sciwhiz12.cartographer.srg.SRGEntry;
+import tk.sciwhiz12.cartographer.srg.SRGLookup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remaps the names in Java source files between SRG names ({@code func_1234_a}, {@code field_5678_b} and
+ * {@code p_1234_1_}) and MCP names.
+ *
+ * <p>Sources are scanned once as UTF-8 bytes, without decoding them: every byte of a multi-byte character is above
+ * 0x7F, so it is never mistaken for a quote or an ASCII identifier character. Identifiers in code and comments are
+ * remapped, but string and character literals are kept as they are, since reflection looks up members by their SRG
+ * names at runtime. Files are remapped in parallel, and read through memory mappings unless remapped in place.</p>
+ */
+public final class SourceRemapper {
+    private static final String SOURCE_EXTENSION = ".java";
+    // The kinds of statement being scanned
+    private static final int CODE = 0;
+    private static final int PACKAGE = 1;
+    private static final int IMPORT = 2;
+    private final NameMapper mapper;
+    private final boolean srgSources;
+
+    /**
+     * Remaps one identifier of the source, given as the range of its bytes.
+     */
+    @FunctionalInterface
+    private interface NameMapper {
+        /**
+         * @return the new name, or null to keep the identifier
+         */
+        @Nullable
+        String map(ByteBuffer source, int start, int end, Counts counts);
+    }
+
+    /**
+     * The counts of a remapping run.
+     *
+     * @param files          the source files found
+     * @param scannedFiles   the files which were scanned, as the others cannot contain any names to remap
+     * @param changedFiles   the files with at least one remapped name
+     * @param remappedNames  the remapped identifiers
+     * @param unmappedNames  the identifiers which look like names to remap, but have no mapping (SRG names without
+     *                       an MCP name, or MCP names shared by several SRG names)
+     */
+    public record Statistics(int files, int scannedFiles, int changedFiles, long remappedNames, long unmappedNames) {}
+
+    private static final class Counts {
+        long remapped;
+        long unmapped;
+    }
+
+    private SourceRemapper(NameMapper mapper, boolean srgSources) {
+        this.mapper = mapper;
+        this.srgSources = srgSources;
+    }
+
+    /**
+     * Remaps the SRG names of fields, methods and parameters to their MCP names. SRG names without an MCP name are
+     * kept.
+     */
+    public static SourceRemapper toMcp(MCPDatabase mcp) {
+        return new SourceRemapper((source, start, end, counts) -> mcpName(mcp, source, start, end, counts), true);
+    }
+
+    /**
+     * Remaps the MCP names of fields and methods back to their SRG names. An MCP name can only be remapped if it
+     * belongs to a single SRG name; parameters are not remapped, as their MCP names are reused by too many methods.
+     *
+     * <p>Source files do not say which member a name refers to, so every identifier with the MCP name of a member is
+     * remapped, including the members and variables of the sources themselves which happen to have the same name.</p>
+     */
+    public static SourceRemapper toSrg(SRGLookup srg, MCPDatabase mcp) {
+        // MCP name -> SRG name, or empty for MCP names of several SRG names
+        final Map<String, Optional<String>> srgNames = new HashMap<>();
+        for (MCPEntry.Field field : mcp.fields().values()) {
+            if (srg.getEntryForID(field.srgID()) instanceof SRGEntry.Field entry) {
+                srgNames.merge(field.name(), Optional.of(entry.srgName()), SourceRemapper::unique);
+            }
+        }
+        for (MCPEntry.Method method : mcp.methods().values()) {
+            if (srg.getEntryForID(method.srgID()) instanceof SRGEntry.NumberedMethod entry) {
+                srgNames.merge(method.name(), Optional.of(entry.srgName()), SourceRemapper::unique);
+            }
+        }
+        return new SourceRemapper((source, start, end, counts) -> {
+            final byte[] bytes = new byte[end - start];
+            source.get(start, bytes);
+            final Optional<String> name = srgNames.get(new String(bytes, UTF_8));
+            if (name == null) return null;
+            return count(name.orElse(null), counts);
+        }, false);
+    }
+
+    private static Optional<String> unique(Optional<String> first, Optional<String> second) {
+        return first.equals(second) ? first : Optional.empty();
+    }
+
+    /**
+     * Counts a name which looks like it can be remapped as either remapped or without a mapping.
+     */
+    @Nullable
+    private static String count(@Nullable String name, Counts counts) {
+        if (name == null) counts.unmapped++;
+        else counts.remapped++;
+        return name;
+    }
+
+    /**
+     * Remaps every Java source file under the source folder into the same place under the output folder, which may
+     * be the source folder itself to remap the files in place. Other files are copied unless remapping in place, and
+     * unchanged files are only written when they are copied.
+     */
+    public Statistics remapTree(Path source, Path output) throws IOException {
+        final boolean inPlace = source.toAbsolutePath().normalize().equals(output.toAbsolutePath().normalize());
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        final LongAdder sourceFiles = new LongAdder();
+        final LongAdder scannedFiles = new LongAdder();
+        final LongAdder changedFiles = new LongAdder();
+        final LongAdder remappedNames = new LongAdder();
+        final LongAdder unmappedNames = new LongAdder();
+        try {
+            files.parallelStream().forEach(file -> {
+                try {
+                    final Path target = inPlace ? file : output.resolve(source.relativize(file).toString());
+                    if (!inPlace) Files.createDirectories(target.getParent());
+                    if (!file.getFileName().toString().endsWith(SOURCE_EXTENSION)) {
+                        if (!inPlace) Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                        return;
+                    }
+                    sourceFiles.increment();
+
+                    byte[] remapped = null;
+                    final ByteBuffer contents = read(file, inPlace);
+                    if (!srgSources || containsSrgNames(contents)) {
+                        scannedFiles.increment();
+                        final Counts counts = new Counts();
+                        remapped = remap(contents, counts);
+                        remappedNames.add(counts.remapped);
+                        unmappedNames.add(counts.unmapped);
+                    }
+                    if (remapped != null) {
+                        changedFiles.increment();
+                        Files.write(target, remapped);
+                    } else if (!inPlace) {
+                        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new Statistics(sourceFiles.intValue(), scannedFiles.intValue(), changedFiles.intValue(),
+            remappedNames.sum(), unmappedNames.sum());
+    }
+
+    /**
+     * Reads a source file. Files are mapped unless they are remapped in place, as a mapped file stays mapped until the
+     * buffer is collected, and cannot be overwritten (or truncated, on Windows) meanwhile.
+     */
+    private static ByteBuffer read(Path file, boolean inPlace) throws IOException {
+        if (inPlace) return ByteBuffer.wrap(Files.readAllBytes(file));
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Remaps the names in the UTF-8 contents of a source file.
+     *
+     * @return the remapped contents, or null if no name was remapped
+     */
+    @Nullable
+    public byte[] remap(ByteBuffer source) {
+        return remap(source, new Counts());
+    }
+
+    @Nullable
+    private byte[] remap(ByteBuffer source, Counts counts) {
+        final int length = source.limit();
+        byte[] out = null;
+        int outLength = 0;
+        int copiedUpTo = 0;
+        boolean lineComment = false;
+        boolean blockComment = false;
+        int statement = CODE;
+        int pos = 0;
+        while (pos < length) {
+            final byte ch = source.get(pos);
+            if (isIdentifierStart(ch)) {
+                // Identifiers in comments (such as Javadoc links) are remapped as well
+                final int start = pos;
+                while (pos < length && isIdentifierPart(source.get(pos))) pos++;
+                if (!lineComment && !blockComment) {
+                    if (statement == CODE && isWord(source, start, pos, "package")) statement = PACKAGE;
+                    if (statement == CODE && isWord(source, start, pos, "import")) statement = IMPORT;
+                    // Package names are never remapped, and imports only for the member of a static import
+                    if (statement == PACKAGE || statement == IMPORT && !isFollowedBySemicolon(source, pos, length)) {
+                        continue;
+                    }
+                }
+                final String mapped = mapper.map(source, start, pos, counts);
+                if (mapped == null) continue;
+                final byte[] name = mapped.getBytes(UTF_8);
+
+                final int copied = start - copiedUpTo;
+                if (out == null) out = new byte[length + length / 8 + name.length];
+                if (outLength + copied + name.length > out.length) {
+                    out = Arrays.copyOf(out, Math.max(outLength + copied + name.length, out.length * 2));
+                }
+                source.get(copiedUpTo, out, outLength, copied);
+                outLength += copied;
+                System.arraycopy(name, 0, out, outLength, name.length);
+                outLength += name.length;
+                copiedUpTo = pos;
+                continue;
+            }
+            if (ch >= '0' && ch <= '9') {
+                // Numbers may contain letters and underscores (0x1F, 1_000L), which are not identifiers
+                while (pos < length && isIdentifierPart(source.get(pos))) pos++;
+                continue;
+            }
+            pos++;
+            if (lineComment) {
+                if (ch == '\n') lineComment = false;
+            } else if (blockComment) {
+                if (ch == '*' && pos < length && source.get(pos) == '/') {
+                    blockComment = false;
+                    pos++;
+                }
+            } else if (ch == '/' && pos < length && source.get(pos) == '/') {
+                lineComment = true;
+                pos++;
+            } else if (ch == '/' && pos < length && source.get(pos) == '*') {
+                blockComment = true;
+                pos++;
+            } else if (ch == '"' || ch == '\'') {
+                pos = skipLiteral(source, pos - 1, length);
+            } else if (ch == ';') {
+                statement = CODE;
+            }
+        }
+        if (out == null) return null;
+
+        final int rest = length - copiedUpTo;
+        final byte[] remapped = Arrays.copyOf(out, outLength + rest);
+        source.get(copiedUpTo, remapped, outLength, rest);
+        return remapped;
+    }
+
+    /**
+     * Skips a string, character or text block literal starting at the given quote.
+     *
+     * @return the index after the closing quote, or after the end of the line for an unterminated literal
+     */
+    private static int skipLiteral(ByteBuffer source, int start, int length) {
+        final byte quote = source.get(start);
+        final boolean textBlock = quote == '"' && start + 2 < length && source.get(start + 1) == '"'
+            && source.get(start + 2) == '"';
+        int pos = start + (textBlock ? 3 : 1);
+        while (pos < length) {
+            final byte ch = source.get(pos++);
+            if (ch == '\\') {
+                pos++;
+            } else if (textBlock) {
+                if (ch == '"' && pos + 1 < length && source.get(pos) == '"' && source.get(pos + 1) == '"') {
+                    return pos + 2;
+                }
+            } else if (ch == quote || ch == '\n') {
+                return pos;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks for anything which looks like the start of an SRG name ({@code func_1}, {@code field_1}, {@code p_1} or
+     * {@code p_i1}), which is much faster than scanning the file for identifiers.
+     */
+    private static boolean containsSrgNames(ByteBuffer source) {
+        final int length = source.limit();
+        for (int i = 1; i + 1 < length; i++) {
+            if (source.get(i) != '_') continue;
+            final byte next = source.get(i + 1);
+            if ((next < '0' || next > '9') && next != 'i') continue;
+            if (endsWithWord(source, i, "p") || endsWithWord(source, i, "func") || endsWithWord(source, i, "field")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWord(ByteBuffer source, int start, int end, String word) {
+        return end - start == word.length() && startsWith(source, start, end, word);
+    }
+
+    private static boolean isFollowedBySemicolon(ByteBuffer source, int pos, int length) {
+        while (pos < length && (source.get(pos) == ' ' || source.get(pos) == '\t' || source.get(pos) == '\r'
+            || source.get(pos) == '\n')) {
+            pos++;
+        }
+        return pos < length && source.get(pos) == ';';
+    }
+
+    private static boolean endsWithWord(ByteBuffer source, int end, String word) {
+        final int start = end - word.length();
+        if (start < 0 || start > 0 && isIdentifierPart(source.get(start - 1))) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (source.get(start + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The MCP name for an identifier which is an SRG name, counting SRG names without one as unmapped.
+     *
+     * @return the MCP name, or null if the identifier is not an SRG name or has no MCP name
+     */
+    @Nullable
+    private static String mcpName(MCPDatabase mcp, ByteBuffer source, int start, int end, Counts counts) {
+        if (startsWith(source, start, end, "func_")) return memberName(mcp.methods(), source, start + 5, end, counts);
+        if (startsWith(source, start, end, "field_")) return memberName(mcp.fields(), source, start + 6, end, counts);
+        if (!startsWith(source, start, end, "p_")) return null;
+
+        // p_<method ID>_<index>_, with an i before the ID for constructor parameters
+        int pos = start + 2;
+        final boolean constructor = pos < end && source.get(pos) == 'i';
+        if (constructor) pos++;
+        final int methodID = parseDigits(source, pos, end);
+        pos = digitsEnd(source, pos, end);
+        if (methodID == -1 || pos >= end || source.get(pos) != '_') return null;
+        final int index = parseDigits(source, ++pos, end);
+        pos = digitsEnd(source, pos, end);
+        if (index == -1 || pos != end - 1 || source.get(pos) != '_') return null;
+
+        for (MCPEntry.Parameter parameter : mcp.getParametersForMethod(methodID)) {
+            if (parameter.index() == index && parameter instanceof MCPEntry.ConstructorParameter == constructor) {
+                return count(parameter.name(), counts);
+            }
+        }
+        return count(null, counts);
+    }
+
+    /**
+     * The MCP name of a field or method from the rest of its SRG name, {@code <ID>_<suffix>}.
+     */
+    @Nullable
+    private static String memberName(Int2ObjectMap<? extends MCPEntry> entries, ByteBuffer source, int start,
+        int end, Counts counts) {
+        final int id = parseDigits(source, start, end);
+        final int pos = digitsEnd(source, start, end);
+        if (id == -1 || pos + 1 >= end || source.get(pos) != '_') return null;
+        final MCPEntry entry = entries.get(id);
+        return count(entry != null ? entry.name() : null, counts);
+    }
+
+    private static boolean startsWith(ByteBuffer source, int start, int end, String prefix) {
+        if (end - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (source.get(start + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses the digits starting at the given index, up to the first non-digit or at most 9 digits.
+     *
+     * @return the parsed value, or -1 if there are no digits at the index
+     */
+    private static int parseDigits(ByteBuffer source, int start, int end) {
+        final int limit = Math.min(end, start + 9); // Anything longer may overflow an int
+        int value = 0;
+        int pos = start;
+        for (; pos < limit; pos++) {
+            final byte ch = source.get(pos);
+            if (ch < '0' || ch > '9') break;
+            value = value * 10 + (ch - '0');
+        }
+        return pos > start ? value : -1;
+    }
+
+    private static int digitsEnd(ByteBuffer source, int start, int end) {
+        int pos = start;
+        while (pos < end && pos < start + 9 && source.get(pos) >= '0' && source.get(pos) <= '9') pos++;
+        return pos;
+    }
+
+    private static boolean isIdentifierStart(byte ch) {
+        return ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch == '_' || ch == '$' || ch < 0;
+    }
+
+    private static boolean isIdentifierPart(byte ch) {
+        return isIdentifierStart(ch) || ch >= '0' && ch <= '9';
+    }
+}
@@ -0,0 +1,256 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.MethodDescriptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A read-only view of an SRG database file which is memory-mapped instead of deserialized.
+ *
+ * <p>The file holds fixed-width tables, so lookups binary-search the mapped buffer and only create the
+ * {@link SRGEntry} records that are returned. Opening is independent of the database size, and processes mapping the
+ * same file share the OS page cache.</p>
+ *
+ * <p>Layout (all integers are big-endian):</p>
+ * <pre>
+ *   header: magic "CSRM", version, class count, class table, ID count, ID table, string heap
+ *           (offsets are from the start of the file)
+ *   class table: (srg name, reobf name) string offsets, in the database's class order
+ *   ID table: one 24-byte entry per SRG ID in ascending order, for the entry that getEntryForID returns:
+ *             id, kind, static flag, (2 unused bytes), class index, srg name, reobf name, signature
+ *   string heap: (u16 UTF-8 length, UTF-8 bytes) per string
+ * </pre>
+ * <p>Absent strings are stored as offset {@code -1}. Parameters are derived from the method signature. Opening checks
+ * that the tables fit in the file, but not the entries in them, which are only read on lookup.</p>
+ */
+public final class MappedSRGDatabase implements SRGLookup {
+    static final int MAGIC = 0x4353524D; // "CSRM"
+    static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+    private static final int CLASS_ENTRY_SIZE = 2 * Integer.BYTES;
+    private static final int ID_ENTRY_SIZE = 24;
+    private static final SRGIDIndex.Kind[] KINDS = SRGIDIndex.Kind.values();
+
+    private final ByteBuffer buffer;
+    private final int classCount;
+    private final int classTable;
+    private final int idCount;
+    private final int idTable;
+    private final int stringHeap;
+    // Filled as parameters are requested, and freed along with this view
+    private final Map<String, MethodDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private MappedSRGDatabase(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a mapped SRG database");
+        }
+        final int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapped SRG database version %d, expected %d".formatted(version, VERSION));
+        }
+        this.classCount = buffer.getInt(8);
+        this.classTable = buffer.getInt(12);
+        this.idCount = buffer.getInt(16);
+        this.idTable = buffer.getInt(20);
+        this.stringHeap = buffer.getInt(24);
+        if (classCount < 0 || idCount < 0 || classTable < HEADER_SIZE
+            || (long) classTable + (long) classCount * CLASS_ENTRY_SIZE > idTable
+            || (long) idTable + (long) idCount * ID_ENTRY_SIZE > stringHeap || stringHeap > buffer.capacity()) {
+            throw new IOException("Truncated or corrupt mapped SRG database");
+        }
+    }
+
+    public static MappedSRGDatabase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedSRGDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int classCount() {
+        return classCount;
+    }
+
+    public int entryCount() {
+        return idCount;
+    }
+
+    @Override
+    @Nullable
+    public SRGEntry getEntryForID(int srgID) {
+        final int position = findID(srgID, 0);
+        return position >= 0 ? entryAt(idTable + position * ID_ENTRY_SIZE, srgID) : null;
+    }
+
+    @Nullable
+    private SRGEntry entryAt(int entry, int srgID) {
+        final SRGEntry.Class parentClass = classAt(buffer.getInt(entry + 8));
+        return switch (KINDS[buffer.get(entry + 4)]) {
+            case FIELD -> new SRGEntry.Field(srgID, string(buffer.getInt(entry + 12)), string(buffer.getInt(entry + 16)),
+                parentClass);
+            case NUMBERED_METHOD -> new SRGEntry.NumberedMethod(srgID, string(buffer.getInt(entry + 12)),
+                string(buffer.getInt(entry + 16)), parentClass, string(buffer.getInt(entry + 20)),
+                buffer.get(entry + 5) != 0);
+            case CONSTRUCTOR -> new SRGEntry.Constructor(srgID, parentClass, string(buffer.getInt(entry + 20)));
+            case NONE -> null;
+        };
+    }
+
+    /**
+     * Looks up the IDs in ascending order, so each search only covers the part of the ID table after the previous ID
+     * and the table is read front to back.
+     */
+    @Override
+    public SRGEntry[] getEntriesForIDs(int[] srgIDs) {
+        final int[] order = IntStream.range(0, srgIDs.length).toArray();
+        IntArrays.quickSort(order, (first, second) -> Integer.compare(srgIDs[first], srgIDs[second]));
+        final SRGEntry[] entries = new SRGEntry[srgIDs.length];
+        int low = 0;
+        for (int index : order) {
+            final int position = findID(srgIDs[index], low);
+            if (position < 0) {
+                low = -position - 1;
+            } else {
+                low = position;
+                entries[index] = entryAt(idTable + position * ID_ENTRY_SIZE, srgIDs[index]);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    @NonNull
+    public List<SRGEntry.MethodParameter> getParametersForMethod(int srgID) {
+        if (!(getEntryForID(srgID) instanceof SRGEntry.NumberedMethod method)) return Collections.emptyList();
+        final MethodDescriptor descriptor;
+        try {
+            descriptor = descriptors.computeIfAbsent(method.methodSignature(), MethodDescriptor::parse);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+        return SRGDatabase.createParameters(method, descriptor.parameterSlots(method.isStatic()));
+    }
+
+    /**
+     * Returns the position in the ID table of the entry for the given ID, searching from the given position. If there
+     * is none, returns {@code -(insertion point) - 1}.
+     */
+    private int findID(int srgID, int low) {
+        int high = idCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midID = buffer.getInt(idTable + mid * ID_ENTRY_SIZE);
+            if (midID < srgID) low = mid + 1;
+            else if (midID > srgID) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    private SRGEntry.Class classAt(int classIndex) {
+        final int entry = classTable + classIndex * CLASS_ENTRY_SIZE;
+        return new SRGEntry.Class(string(buffer.getInt(entry)), string(buffer.getInt(entry + 4)));
+    }
+
+    private String string(int offset) {
+        if (offset == -1) return null;
+        final int position = stringHeap + offset;
+        final int length = Short.toUnsignedInt(buffer.getShort(position));
+        final byte[] bytes = new byte[length];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    public static void write(SRGDatabase db, Path file) throws IOException {
+        final StringHeap strings = new StringHeap();
+
+        final List<SRGEntry.Class> classes = new ArrayList<>(db.classes().values());
+        final Object2IntMap<SRGEntry.Class> classIndexes = new Object2IntOpenHashMap<>(classes.size());
+        classIndexes.defaultReturnValue(-1);
+        final ByteBuffer classTable = ByteBuffer.allocate(classes.size() * CLASS_ENTRY_SIZE);
+        for (SRGEntry.Class clz : classes) {
+            classIndexes.put(clz, classIndexes.size());
+            classTable.putInt(strings.offset(clz.srgName())).putInt(strings.offset(clz.reobfName()));
+        }
+
+        final SRGIDIndex index = db.idIndex();
+        final int[] ids = index.ids();
+        final int idCount = ids.length;
+        final ByteBuffer idTable = ByteBuffer.allocate(idCount * ID_ENTRY_SIZE);
+        for (int id : ids) {
+            final SRGEntry.HasID entry = index.get(id);
+            idTable.putInt(id).put((byte) index.kind(id).ordinal()).put((byte) (index.isStatic(id) ? 1 : 0))
+                .putShort((short) 0).putInt(classIndexes.getInt(((SRGEntry.ClassMember) entry).parentClass()));
+            if (entry instanceof SRGEntry.Field field) {
+                idTable.putInt(strings.offset(field.srgName())).putInt(strings.offset(field.reobfName())).putInt(-1);
+            } else if (entry instanceof SRGEntry.NumberedMethod method) {
+                idTable.putInt(strings.offset(method.srgName())).putInt(strings.offset(method.reobfName()))
+                    .putInt(strings.offset(method.methodSignature()));
+            } else if (entry instanceof SRGEntry.Constructor constructor) {
+                idTable.putInt(-1).putInt(-1).putInt(strings.offset(constructor.methodSignature()));
+            }
+        }
+
+        final int classTableOffset = HEADER_SIZE;
+        final int idTableOffset = classTableOffset + classTable.capacity();
+        final int stringHeapOffset = idTableOffset + idTable.capacity();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+            .putInt(MAGIC).putInt(VERSION)
+            .putInt(classes.size()).putInt(classTableOffset)
+            .putInt(idCount).putInt(idTableOffset)
+            .putInt(stringHeapOffset);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer section : new ByteBuffer[]{header.flip(), classTable.flip(), idTable.flip(),
+                ByteBuffer.wrap(strings.bytes.toByteArray())}) {
+                while (section.hasRemaining()) channel.write(section);
+            }
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static final class StringHeap {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        final Object2IntMap<String> offsets = new Object2IntOpenHashMap<>(50000);
+
+        int offset(String str) throws IOException {
+            int offset = offsets.getOrDefault(str, -1);
+            if (offset == -1) {
+                offset = bytes.size();
+                final byte[] encoded = str.getBytes(UTF_8);
+                if (encoded.length > 0xFFFF) {
+                    throw new IOException("String of %d bytes is too long for a mapped SRG database: %.64s..."
+                        .formatted(encoded.length, str));
+                }
+                writeShort(bytes, encoded.length);
+                bytes.writeBytes(encoded);
+                offsets.put(str, offset);
+            }
+            return offset;
+        }
+    }
+}
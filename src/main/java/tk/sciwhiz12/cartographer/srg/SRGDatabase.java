@@ -3,12 +3,27 @@ package tk.sciwhiz12.cartographer.srg;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Maps;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.DescriptorRemapper;
+import tk.sciwhiz12.cartographer.util.MethodDescriptor;
+import tk.sciwhiz12.cartographer.util.StringPool;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import static tk.sciwhiz12.cartographer.srg.SRGEntry.*;
 
@@ -19,55 +34,197 @@ public record SRGDatabase(
     ImmutableTable<Integer, SRGEntry.Class, NumberedMethod> numberedMethods, // Method SRG ID -> Numbered Method
     ImmutableMultimap<String, NamedMethod> namedMethods, // Method Name -> Named Methods
     ImmutableMap<Integer, Constructor> constructors, // SRG ID -> Constructor
-    ImmutableMultimap<NumberedMethod, MethodParameter> numberedMethodParameters, // NumberedMethod -> Parameters
-    ImmutableMultimap<NamedMethod, MethodParameter> namedMethodParameters, // NamedMethod -> Parameters
-    ImmutableMultimap<Constructor, MethodParameter> constructorParameters // Constructor -> Parameters
-) {
+    SRGIDIndex idIndex, // SRG ID -> Field / Numbered Method / Constructor
+    SRGNameIndex nameIndex, // Reobf / SRG Name -> Entries
+    ImmutableMap<String, MethodDescriptor> descriptors // Method Signature -> Descriptor (without malformed ones)
+) implements SRGLookup {
+    public SRGDatabase(ImmutableMap<String, SRGEntry.Class> classes, ImmutableMap<Integer, Field> fields,
+        ImmutableMultimap<SRGEntry.Class, EnumValue> enumValues,
+        ImmutableTable<Integer, SRGEntry.Class, NumberedMethod> numberedMethods,
+        ImmutableMultimap<String, NamedMethod> namedMethods, ImmutableMap<Integer, Constructor> constructors) {
+        this(classes, fields, enumValues, numberedMethods, namedMethods, constructors,
+            SRGIDIndex.build(classes, fields, numberedMethods, constructors),
+            SRGNameIndex.build(classes, fields, enumValues, numberedMethods, namedMethods),
+            parseDescriptors(List.of(numberedMethods.values(), namedMethods.values(), constructors.values())));
+    }
+
     public static SRGDatabase parse(List<String> tsrgLines, List<String> staticsLines, List<String> constructorsLines) {
         return SRGParser.read(tsrgLines, staticsLines, constructorsLines);
     }
 
+    public static SRGDatabase parse(List<String> tsrgLines, List<String> staticsLines, List<String> constructorsLines,
+        boolean parallel) {
+        return parse(tsrgLines, staticsLines, constructorsLines, parallel, new StringPool());
+    }
+
+    public static SRGDatabase parse(List<String> tsrgLines, List<String> staticsLines, List<String> constructorsLines,
+        boolean parallel, StringPool pool) {
+        return SRGParser.read(tsrgLines, staticsLines, constructorsLines, parallel, pool);
+    }
+
     public static SRGDatabase deserialize(List<String> writtenDB) {
-        return SRGDatabaseCodec.read(writtenDB);
+        return deserialize(writtenDB, new StringPool());
+    }
+
+    public static SRGDatabase deserialize(List<String> writtenDB, StringPool pool) {
+        return SRGDatabaseCodec.read(writtenDB, pool);
+    }
+
+    public static SRGDatabase deserialize(Path file, StringPool pool) throws IOException {
+        return SRGDatabaseCodec.read(file, pool);
+    }
+
+    public static SRGDatabase deserializeBinary(ByteBuffer buffer, StringPool pool) throws IOException {
+        return SRGDatabaseBinaryCodec.read(buffer, pool);
     }
 
     // TODO: move this to return a collection instead, for the numbered methods
+    @Override
     @Nullable
     public SRGEntry getEntryForID(int srgID) {
-        Integer boxedID = srgID;
-        if (fields.containsKey(boxedID)) { return fields.get(srgID); }
-        if (numberedMethods.containsRow(boxedID)) {
-            return numberedMethods.rowMap().get(srgID).values().stream().findFirst().orElseThrow();
-        }
-        if (constructors.containsKey(boxedID)) { return constructors.get(srgID); }
-        return null;
+        return idIndex.get(srgID);
+    }
+
+    @Override
+    public SRGEntry[] getEntriesForIDs(int[] srgIDs) {
+        final SRGEntry[] entries = new SRGEntry[srgIDs.length];
+        for (int i = 0; i < srgIDs.length; i++) entries[i] = idIndex.get(srgIDs[i]);
+        return entries;
+    }
+
+    @Nullable
+    public Field getFieldForID(int srgID) {
+        return idIndex.getField(srgID);
+    }
+
+    @Nullable
+    public NumberedMethod getNumberedMethodForID(int srgID) {
+        return idIndex.getNumberedMethod(srgID);
+    }
+
+    @Nullable
+    public Constructor getConstructorForID(int srgID) {
+        return idIndex.getConstructor(srgID);
+    }
+
+    /**
+     * The classes with the given reobfuscated name, in either internal or binary form.
+     */
+    public List<SRGEntry.Class> getClassesByReobfName(String reobfName) {
+        return nameIndex.getClassesByReobfName(reobfName.replace('.', '/'));
     }
 
+    /**
+     * The class members with the given reobfuscated name, in any class.
+     */
+    public List<ClassMember> getMembersByReobfName(String reobfName) {
+        return nameIndex.getMembersByReobfName(reobfName);
+    }
+
+    public List<ClassMember> getMembersByReobfName(String classReobfName, String reobfName) {
+        return nameIndex.getMembersByReobfName(classReobfName.replace('.', '/'), reobfName);
+    }
+
+    /**
+     * The entries with the given SRG name: a class name in either internal or binary form, or a member name.
+     */
+    public List<SRGEntry> getEntriesBySrgName(String srgName) {
+        return nameIndex.getEntriesBySrgName(srgName.replace('.', '/'));
+    }
+
+    public boolean isStaticMethod(int srgID) {
+        return idIndex.isStatic(srgID);
+    }
+
+    @Override
     @NonNull
     public List<MethodParameter> getParametersForMethod(int srgID) {
-        Integer boxedID = srgID;
-        final SRGEntry entry = getEntryForID(srgID);
-        if (entry instanceof NumberedMethod) {
-            return numberedMethodParameters.get((NumberedMethod) entry).asList();
-        } else if (entry instanceof NamedMethod) {
-            return namedMethodParameters.get((NamedMethod) entry).asList();
+        final NumberedMethod method = idIndex.getNumberedMethod(srgID);
+        return method != null ? createParameters(method, parameterSlots(method)) : Collections.emptyList();
+    }
+
+    /**
+     * The parameter slots of the numbered method with the given ID, or an empty list if there is no such method.
+     */
+    public IntList getParameterSlots(int srgID) {
+        final NumberedMethod method = idIndex.getNumberedMethod(srgID);
+        return method != null ? parameterSlots(method) : IntLists.EMPTY_LIST;
+    }
+
+    /**
+     * Parameters are not stored, but derived from the method descriptor when requested. Malformed descriptors were
+     * already reported when the database was parsed, so they have no parameters here.
+     */
+    public IntList parameterSlots(Method method) {
+        final MethodDescriptor descriptor = descriptors.get(method.methodSignature());
+        return descriptor != null ? descriptor.parameterSlots(method.isStatic()) : IntLists.EMPTY_LIST;
+    }
+
+    static List<MethodParameter> createParameters(Method method, IntList slots) {
+        final List<MethodParameter> parameters = new ArrayList<>(slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            parameters.add(new MethodParameter(method, slots.getInt(i)));
+        }
+        return parameters;
+    }
+
+    /**
+     * Parses each distinct method descriptor once. Malformed descriptors are left out, to be reported by the parser.
+     */
+    static ImmutableMap<String, MethodDescriptor> parseDescriptors(
+        List<? extends Collection<? extends Method>> methods) {
+        final Map<String, MethodDescriptor> descriptors = new HashMap<>(8192);
+        for (Collection<? extends Method> collection : methods) {
+            for (Method method : collection) {
+                final String signature = method.methodSignature();
+                if (descriptors.containsKey(signature)) continue;
+                try {
+                    descriptors.put(signature, MethodDescriptor.parse(signature));
+                } catch (IllegalArgumentException e) {
+                    descriptors.put(signature, null); // Only tried once, but not kept in the table
+                }
+            }
         }
-        return Collections.emptyList();
+        descriptors.values().removeIf(Objects::isNull);
+        return ImmutableMap.copyOf(descriptors);
+    }
+
+    private int countParameters(Collection<? extends Method> methods) {
+        int count = 0;
+        for (Method method : methods) count += parameterSlots(method).size();
+        return count;
+    }
+
+    /**
+     * Creates a new remapper (with its own descriptor cache) from reobfuscated to SRG class names.
+     */
+    public DescriptorRemapper createReobfToSrgRemapper() {
+        return SRGParser.reobfToSrgRemapper(Maps.uniqueIndex(classes.values(), SRGEntry.Class::reobfName));
     }
 
     public List<String> serialize() {
         return SRGDatabaseCodec.write(this);
     }
 
+    public void serialize(Path file, boolean parallel) throws IOException {
+        SRGDatabaseCodec.write(this, file, parallel);
+    }
+
+    public void serializeBinary(OutputStream output) throws IOException {
+        SRGDatabaseBinaryCodec.write(this, output);
+    }
+
     public void printStatistics(PrintStream out) {
         out.printf("Classes: %d%n", classes().size());
         out.printf("Total fields: %d [ fields: %d, enum values: %d ]%n",
             fields().size() + enumValues().size(), fields().size(), enumValues().size());
         out.printf("Total methods: %d [ numbered: %d, named: %d ]%n",
             numberedMethods().size() + namedMethods().size(), numberedMethods().size(), namedMethods().size());
+        final int numberedParameters = countParameters(numberedMethods().values());
+        final int namedParameters = countParameters(namedMethods().values());
         out.printf("Total parameters: %d [ numbered: %d, named: %d ]%n",
-            numberedMethodParameters().size() + namedMethodParameters().size(), numberedMethodParameters().size(),
-            namedMethodParameters().size());
-        out.printf("Constructors: %d [ parameters count: %d ]%n", constructors().size(), constructorParameters().size());
+            numberedParameters + namedParameters, numberedParameters, namedParameters);
+        out.printf("Constructors: %d [ parameters count: %d ]%n", constructors().size(),
+            countParameters(constructors().values()));
     }
 }
@@ -0,0 +1,249 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableTable;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact binary form of the SRG database.
+ *
+ * <p>Layout, with every integer written as an unsigned LEB128 varint:</p>
+ * <pre>
+ *   magic (4 bytes, "CSRG"), version
+ *   string table: count, then (UTF-8 length, UTF-8 bytes) per string
+ *   classes: count, then (srg, reobf) string indexes
+ *   fields: count, then (id, srg, reobf, class index)
+ *   enum values: count, then (value, reobf, class index)
+ *   named methods: count, then (deobf, reobf, class index, signature)
+ *   numbered methods: count, then (id, srg, reobf, class index, signature, static)
+ *   constructors: count, then (id, class index, signature)
+ * </pre>
+ * <p>Classes are referenced by their position in the class section, and every section is written in the iteration
+ * order of its collection, so a round trip keeps the same iteration order. Version 1 also stored the method parameters
+ * after the constructors; they are derived from the descriptors now, so that trailing data is ignored.</p>
+ */
+class SRGDatabaseBinaryCodec {
+    static final int MAGIC = 0x43535247; // "CSRG"
+    static final int VERSION = 2;
+    static final int MIN_VERSION = 1;
+
+    private SRGDatabaseBinaryCodec() {}
+
+    static void write(SRGDatabase db, OutputStream out) throws IOException {
+        final Writer body = new Writer();
+
+        final Object2IntMap<SRGEntry.Class> classIndexes = new Object2IntOpenHashMap<>(db.classes().size());
+        body.varint(db.classes().size());
+        for (SRGEntry.Class clz : db.classes().values()) {
+            classIndexes.put(clz, classIndexes.size());
+            body.string(clz.srgName()).string(clz.reobfName());
+        }
+
+        body.varint(db.fields().size());
+        for (SRGEntry.Field field : db.fields().values()) {
+            body.varint(field.srgID()).string(field.srgName()).string(field.reobfName())
+                .varint(classIndexes.getInt(field.parentClass()));
+        }
+
+        body.varint(db.enumValues().size());
+        for (SRGEntry.EnumValue enumValue : db.enumValues().values()) {
+            body.string(enumValue.valueName()).string(enumValue.reobfName())
+                .varint(classIndexes.getInt(enumValue.parentClass()));
+        }
+
+        body.varint(db.namedMethods().size());
+        for (SRGEntry.NamedMethod method : db.namedMethods().values()) {
+            body.string(method.deobfName()).string(method.reobfName())
+                .varint(classIndexes.getInt(method.parentClass())).string(method.methodSignature());
+        }
+
+        body.varint(db.numberedMethods().size());
+        for (SRGEntry.NumberedMethod method : db.numberedMethods().values()) {
+            body.varint(method.srgID()).string(method.srgName()).string(method.reobfName())
+                .varint(classIndexes.getInt(method.parentClass())).string(method.methodSignature())
+                .varint(method.isStatic() ? 1 : 0);
+        }
+
+        body.varint(db.constructors().size());
+        for (SRGEntry.Constructor constructor : db.constructors().values()) {
+            body.varint(constructor.srgID()).varint(classIndexes.getInt(constructor.parentClass()))
+                .string(constructor.methodSignature());
+        }
+
+        final Writer header = new Writer();
+        header.fixedInt(MAGIC).varint(VERSION);
+        header.varint(body.strings.size());
+        for (String str : body.strings.keySet()) {
+            final byte[] bytes = str.getBytes(UTF_8);
+            header.varint(bytes.length).bytes.writeBytes(bytes);
+        }
+        header.bytes.writeTo(out);
+        body.bytes.writeTo(out);
+    }
+
+    static SRGDatabase read(ByteBuffer buffer, StringPool pool) throws IOException {
+        try {
+            final Reader in = new Reader(buffer);
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a binary SRG database");
+            final int version = in.varint();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Unsupported binary SRG database version %d, expected %d to %d"
+                    .formatted(version, MIN_VERSION, VERSION));
+            }
+
+            final String[] strings = new String[in.count()];
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                final int length = in.count();
+                if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+                buffer.get(scratch, 0, length);
+                strings[i] = pool.intern(new String(scratch, 0, length, UTF_8));
+            }
+            in.strings = strings;
+
+            final SRGEntry.Class[] classes = new SRGEntry.Class[in.count()];
+            @SuppressWarnings("UnstableApiUsage")
+            final ImmutableMap.Builder<String, SRGEntry.Class> classesBuilder =
+                ImmutableMap.builderWithExpectedSize(classes.length);
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = new SRGEntry.Class(in.string(), in.string());
+                classesBuilder.put(classes[i].srgName(), classes[i]);
+            }
+
+            final int fieldCount = in.count();
+            @SuppressWarnings("UnstableApiUsage")
+            final ImmutableMap.Builder<Integer, SRGEntry.Field> fields = ImmutableMap.builderWithExpectedSize(fieldCount);
+            for (int i = 0; i < fieldCount; i++) {
+                final SRGEntry.Field field = new SRGEntry.Field(in.varint(), in.string(), in.string(),
+                    classes[in.varint()]);
+                fields.put(field.srgID(), field);
+            }
+
+            final int enumCount = in.count();
+            final ImmutableMultimap.Builder<SRGEntry.Class, SRGEntry.EnumValue> enumValues = ImmutableMultimap.builder();
+            for (int i = 0; i < enumCount; i++) {
+                final SRGEntry.EnumValue enumValue = new SRGEntry.EnumValue(in.string(), in.string(),
+                    classes[in.varint()]);
+                enumValues.put(enumValue.parentClass(), enumValue);
+            }
+
+            final int namedCount = in.count();
+            final ImmutableMultimap.Builder<String, SRGEntry.NamedMethod> namedMethods = ImmutableMultimap.builder();
+            for (int i = 0; i < namedCount; i++) {
+                final SRGEntry.NamedMethod method = new SRGEntry.NamedMethod(in.string(), in.string(),
+                    classes[in.varint()], in.string());
+                namedMethods.put(method.deobfName(), method);
+            }
+
+            final int numberedCount = in.count();
+            final ImmutableTable.Builder<Integer, SRGEntry.Class, SRGEntry.NumberedMethod> numberedMethods =
+                ImmutableTable.builder();
+            for (int i = 0; i < numberedCount; i++) {
+                final SRGEntry.NumberedMethod method = new SRGEntry.NumberedMethod(in.varint(), in.string(),
+                    in.string(), classes[in.varint()], in.string(), in.varint() != 0);
+                numberedMethods.put(method.srgID(), method.parentClass(), method);
+            }
+
+            final int constructorCount = in.count();
+            @SuppressWarnings("UnstableApiUsage")
+            final ImmutableMap.Builder<Integer, SRGEntry.Constructor> constructors =
+                ImmutableMap.builderWithExpectedSize(constructorCount);
+            for (int i = 0; i < constructorCount; i++) {
+                final SRGEntry.Constructor constructor = new SRGEntry.Constructor(in.varint(), classes[in.varint()],
+                    in.string());
+                constructors.put(constructor.srgID(), constructor);
+            }
+
+            return new SRGDatabase(
+                classesBuilder.build(),
+                fields.build(),
+                enumValues.build(),
+                numberedMethods.build(),
+                namedMethods.build(),
+                constructors.build()
+            );
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            // Out of range indexes, or duplicate keys rejected by the builders
+            throw new IOException("Truncated or corrupt binary SRG database", e);
+        }
+    }
+
+    private static final class Writer {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        final Object2IntMap<String> strings = new Object2IntLinkedOpenHashMap<>(50000);
+
+        Writer fixedInt(int value) {
+            bytes.write(value >>> 24);
+            bytes.write(value >>> 16);
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        Writer varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+            return this;
+        }
+
+        Writer string(String str) {
+            int index = strings.getOrDefault(str, -1);
+            if (index == -1) {
+                index = strings.size();
+                strings.put(str, index);
+            }
+            return varint(index);
+        }
+    }
+
+    private static final class Reader {
+        final ByteBuffer buffer;
+        String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IOException("Varint longer than 5 bytes at " + (buffer.position() - 5));
+        }
+
+        /**
+         * Reads a count or length. Every counted entry or byte takes at least one byte, so a count larger than the
+         * rest of the buffer can only come from a corrupt file, and is rejected before anything is allocated for it.
+         */
+        int count() throws IOException {
+            final int count = varint();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IOException("Count %d out of range at %d".formatted(count, buffer.position()));
+            }
+            return count;
+        }
+
+        String string() throws IOException {
+            return strings[varint()];
+        }
+    }
+}
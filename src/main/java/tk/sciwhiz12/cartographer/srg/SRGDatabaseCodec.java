@@ -5,401 +5,311 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableTable;
-
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.Integer.parseInt;
-import static java.util.function.Function.identity;
-import static java.util.stream.Collector.Characteristics.CONCURRENT;
-import static java.util.stream.Collector.Characteristics.UNORDERED;
 import static tk.sciwhiz12.cartographer.srg.SRGDatabaseCodec.CodecConstants.*;
 
 class SRGDatabaseCodec {
     @VisibleForTesting
-    public static <T extends Number> List<String> write(SRGDatabase db) {
-        int size = db.classes().size() + db.fields().size() + db.enumValues().size() + db.namedMethods().size() + db
-            .numberedMethods().size() + db.constructors().size() + db.namedMethodParameters().size() + db
-            .numberedMethodParameters().size() + db.constructorParameters().size() + 50;
-        @SuppressWarnings("UnstableApiUsage")
-        ImmutableList.Builder<String> output = ImmutableList.builderWithExpectedSize(size);
-
-        output.add(CLASS_HEADER);
-        output.addAll(
-            db.classes().values()
-                .stream()
-                .map(clz -> CLASS_WRITER.formatted(
-                    clz.reobfName(),
-                    clz.srgName()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(CLASS_FOOTER);
-
-        output.add(FIELD_HEADER);
-        output.addAll(
-            db.fields().values()
-                .stream()
-                .map(field -> FIELD_WRITER.formatted(
-                    field.srgID(),
-                    field.reobfName(),
-                    field.srgName(),
-                    field.parentClass().srgName()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(FIELD_FOOTER);
-
-        output.add(ENUM_HEADER);
-        output.addAll(
-            db.enumValues().values()
-                .stream()
-                .map(enumValue -> ENUM_WRITER.formatted(
-                    enumValue.reobfName(),
-                    enumValue.valueName(),
-                    enumValue.parentClass().srgName()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(ENUM_FOOTER);
-
-        output.add(NAMED_METHOD_HEADER);
-        output.addAll(
-            db.namedMethods().values()
-                .stream()
-                .map(namedMethod -> NAMED_METHOD_WRITER.formatted(
-                    namedMethod.reobfName(),
-                    namedMethod.deobfName(),
-                    namedMethod.parentClass().srgName(),
-                    namedMethod.methodSignature()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(NAMED_METHOD_FOOTER);
-
-        output.add(NUMBERED_METHOD_HEADER);
-        output.addAll(
-            db.numberedMethods().values()
-                .stream()
-                .map(numberedMethod -> NUMBERED_METHOD_WRITER.formatted(
-                    numberedMethod.srgID(),
-                    numberedMethod.reobfName(),
-                    numberedMethod.srgName(),
-                    numberedMethod.parentClass().srgName(),
-                    numberedMethod.methodSignature(),
-                    numberedMethod.isStatic()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(NUMBERED_METHOD_FOOTER);
-
-        output.add(CONSTRUCTOR_HEADER);
-        output.addAll(
-            db.constructors().values()
-                .stream()
-                .map(constructor -> CONSTRUCTOR_WRITER.formatted(
-                    constructor.srgID(),
-                    constructor.parentClass().srgName(),
-                    constructor.methodSignature()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(CONSTRUCTOR_FOOTER);
-
-        output.add(NAMED_METHOD_PARAMETER_HEADER);
-        output.addAll(
-            db.namedMethodParameters().entries()
-                .stream()
-                .map(entry -> NAMED_METHOD_PARAMETER_WRITER.formatted(
-                    entry.getKey().parentClass().srgName(),
-                    entry.getKey().deobfName(),
-                    entry.getKey().methodSignature(),
-                    entry.getValue().index()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(NAMED_METHOD_PARAMETER_FOOTER);
-
-        output.add(NUMBERED_METHOD_PARAMETER_HEADER);
-        output.addAll(
-            db.numberedMethodParameters().entries()
-                .stream()
-                .map(entry -> NUMBERED_METHOD_PARAMETER_WRITER.formatted(
-                    entry.getKey().srgID(),
-                    entry.getValue().index()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(NUMBERED_METHOD_PARAMETER_FOOTER);
-
-        output.add(CONSTRUCTOR_PARAMETER_HEADER);
-        output.addAll(
-            db.constructorParameters().entries()
-                .stream()
-                .map(entry -> CONSTRUCTOR_PARAMETER_WRITER.formatted(
-                    entry.getKey().srgID(),
-                    entry.getValue().index()
-                ))
-                .collect(Collectors.toList())
-        );
-        output.add(CONSTRUCTOR_PARAMETER_FOOTER);
-
-        return output.build();
+    public static List<String> write(SRGDatabase db) {
+        final StringBuilder builder = new StringBuilder(1 << 20);
+        try {
+            write(db, builder, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return builder.toString().lines().collect(ImmutableList.toImmutableList());
     }
 
-    static SRGDatabase read(final List<String> strings) {
-
-        final ImmutableMap<String, SRGEntry.Class> classes = strings.stream()
-            .dropWhile(str -> !CLASS_HEADER.contentEquals(str))
-            .takeWhile(str -> !CLASS_FOOTER.contentEquals(str))
-            .map(str -> CLASS_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.Class(
-                matcher.group("srg"),
-                matcher.group("reobf")
-            ))
-            .collect(toImmutableMap(SRGEntry.Class::srgName, identity()));
-
-        final ImmutableMap<Integer, SRGEntry.Field> fields = strings.stream()
-            .dropWhile(str -> !FIELD_HEADER.contentEquals(str))
-            .takeWhile(str -> !FIELD_FOOTER.contentEquals(str))
-            .map(str -> FIELD_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.Field(
-                parseInt(matcher.group("id")),
-                matcher.group("srg"),
-                matcher.group("reobf"),
-                classes.get(matcher.group("class"))
-            ))
-            .collect(toImmutableMap(SRGEntry.Field::srgID, identity()));
+    /**
+     * Streams the database to the output, one line at a time, without building the lines up front.
+     *
+     * <p>If parallel, each section is encoded into its own buffer on the common pool, and the buffers are then written
+     * in order. This trades the size of the encoded text for a shorter export.</p>
+     */
+    static void write(SRGDatabase db, Appendable out, boolean parallel) throws IOException {
+        if (!parallel) {
+            for (SectionWriter section : SECTIONS) {
+                section.write(db, out);
+            }
+            return;
+        }
+        final List<StringBuilder> sections = SECTIONS.parallelStream()
+            .map(section -> {
+                final StringBuilder builder = new StringBuilder(1 << 16);
+                try {
+                    section.write(db, builder);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // StringBuilder does not throw
+                }
+                return builder;
+            })
+            .collect(Collectors.toList());
+        for (StringBuilder section : sections) {
+            out.append(section);
+        }
+    }
 
-        final ImmutableMultimap<SRGEntry.Class, SRGEntry.EnumValue> enumValues = strings.stream()
-            .dropWhile(str -> !ENUM_HEADER.contentEquals(str))
-            .takeWhile(str -> !ENUM_FOOTER.contentEquals(str))
-            .map(str -> ENUM_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.EnumValue(
-                matcher.group("value"),
-                matcher.group("reobf"),
-                classes.get(matcher.group("class"))
-            ))
-            .collect(toImmutableMultimap(
-                SRGEntry.EnumValue::parentClass,
-                identity()
-            ));
+    static void write(SRGDatabase db, Path file, boolean parallel) throws IOException {
+        try (Writer output = Files.newBufferedWriter(file)) {
+            write(db, output, parallel);
+        }
+    }
 
-        final ImmutableMultimap<String, SRGEntry.NamedMethod> namedMethods = strings.stream()
-            .dropWhile(str -> !NAMED_METHOD_HEADER.contentEquals(str))
-            .takeWhile(str -> !NAMED_METHOD_FOOTER.contentEquals(str))
-            .map(str -> NAMED_METHOD_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.NamedMethod(
-                matcher.group("deobf"),
-                matcher.group("reobf"),
-                classes.get(matcher.group("class")),
-                matcher.group("signature")
-            ))
-            .collect(toImmutableMultimap(
-                SRGEntry.NamedMethod::deobfName,
-                identity()
-            ));
+    private interface SectionWriter {
+        void write(SRGDatabase db, Appendable out) throws IOException;
+    }
 
-        final ImmutableTable<Integer, SRGEntry.Class, SRGEntry.NumberedMethod> numberedMethods = strings.stream()
-            .dropWhile(str -> !NUMBERED_METHOD_HEADER.contentEquals(str))
-            .takeWhile(str -> !NUMBERED_METHOD_FOOTER.contentEquals(str))
-            .map(str -> NUMBERED_METHOD_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.NumberedMethod(
-                parseInt(matcher.group("id")),
-                matcher.group("srg"),
-                matcher.group("reobf"),
-                classes.get(matcher.group("class")),
-                matcher.group("signature"),
-                parseBoolean(matcher.group("static"))
-            ))
-            .collect(ImmutableTable
-                .toImmutableTable(SRGEntry.NumberedMethod::srgID, SRGEntry.NumberedMethod::parentClass, identity()));
+    private interface EntryWriter<T> {
+        void write(T entry, Appendable out) throws IOException;
+    }
 
-        final ImmutableMap<Integer, SRGEntry.Constructor> constructors = strings.stream()
-            .dropWhile(str -> !CONSTRUCTOR_HEADER.contentEquals(str))
-            .takeWhile(str -> !CONSTRUCTOR_FOOTER.contentEquals(str))
-            .map(str -> CONSTRUCTOR_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.Constructor(
-                parseInt(matcher.group("id")),
-                classes.get(matcher.group("class")),
-                matcher.group("signature")
-            ))
-            .collect(toImmutableMap(SRGEntry.Constructor::srgID, identity()));
+    // Each entry is appended piece by piece, and read back by the pattern of its section in CodecConstants
+    private static final List<SectionWriter> SECTIONS = List.of(
+        (db, out) -> writeSection(out, CLASS_HEADER, CLASS_FOOTER, db.classes().values(), (clz, line) -> line
+            .append("class reobf:").append(clz.reobfName())
+            .append(" srg:").append(clz.srgName())),
+        (db, out) -> writeSection(out, FIELD_HEADER, FIELD_FOOTER, db.fields().values(), (field, line) -> line
+            .append("field id:").append(Integer.toString(field.srgID()))
+            .append(" reobf:").append(field.reobfName())
+            .append(" srg:").append(field.srgName())
+            .append(" class:").append(field.parentClass().srgName())),
+        (db, out) -> writeSection(out, ENUM_HEADER, ENUM_FOOTER, db.enumValues().values(), (enumValue, line) -> line
+            .append("enum reobf:").append(enumValue.reobfName())
+            .append(" value:").append(enumValue.valueName())
+            .append(" class:").append(enumValue.parentClass().srgName())),
+        (db, out) -> writeSection(out, NAMED_METHOD_HEADER, NAMED_METHOD_FOOTER, db.namedMethods().values(),
+            (method, line) -> line
+                .append("method reobf:").append(method.reobfName())
+                .append(" deobf:").append(method.deobfName())
+                .append(" class:").append(method.parentClass().srgName())
+                .append(" signature:").append(method.methodSignature())),
+        (db, out) -> writeSection(out, NUMBERED_METHOD_HEADER, NUMBERED_METHOD_FOOTER, db.numberedMethods().values(),
+            (method, line) -> line
+                .append("method id:").append(Integer.toString(method.srgID()))
+                .append(" reobf:").append(method.reobfName())
+                .append(" srg:").append(method.srgName())
+                .append(" class:").append(method.parentClass().srgName())
+                .append(" signature:").append(method.methodSignature())
+                .append(" static:").append(method.isStatic() ? "true" : "false")),
+        (db, out) -> writeSection(out, CONSTRUCTOR_HEADER, CONSTRUCTOR_FOOTER, db.constructors().values(),
+            (constructor, line) -> line
+                .append("constructor id:").append(Integer.toString(constructor.srgID()))
+                .append(" class:").append(constructor.parentClass().srgName())
+                .append(" signature:").append(constructor.methodSignature()))
+    );
+
+    private static <T> void writeSection(Appendable out, String header, String footer, Collection<T> entries,
+        EntryWriter<T> writer) throws IOException {
+        out.append(header).append('\n');
+        for (T entry : entries) {
+            writer.write(entry, out);
+            out.append('\n');
+        }
+        out.append(footer).append('\n');
+    }
 
-        final ImmutableMultimap<SRGEntry.NamedMethod, SRGEntry.MethodParameter> namedMethodParameters = strings.stream()
-            .dropWhile(str -> !NAMED_METHOD_PARAMETER_HEADER.contentEquals(str))
-            .takeWhile(str -> !NAMED_METHOD_PARAMETER_FOOTER.contentEquals(str))
-            .map(str -> NAMED_METHOD_PARAMETER_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> {
-                final SRGEntry.Class classEntry = classes.get(matcher.group("class"));
-                final String methodName = matcher.group("methodName");
-                final String methodSignature = matcher.group("methodSignature");
-                return new SRGEntry.MethodParameter(
-                    namedMethods.get(methodName)
-                        .stream()
-                        .filter(method -> method.parentClass().equals(classEntry))
-                        .filter(method -> method.methodSignature().equals(methodSignature))
-                        .findFirst().orElseThrow(IllegalStateException::new),
-                    parseInt(matcher.group("index"))
-                );
-            })
-            .collect(toImmutableMultimap(
-                entry -> (SRGEntry.NamedMethod) entry.parentMethod(),
-                identity()
-            ));
+    static SRGDatabase read(final List<String> strings, final StringPool pool) {
+        final StreamingReader reader = new StreamingReader(pool);
+        for (String line : strings) {
+            reader.accept(line);
+        }
+        return reader.build();
+    }
 
-        final ImmutableMultimap<SRGEntry.NumberedMethod, SRGEntry.MethodParameter> numberedMethodParameters = strings.stream()
-            .dropWhile(str -> !NUMBERED_METHOD_PARAMETER_HEADER.contentEquals(str))
-            .takeWhile(str -> !NUMBERED_METHOD_PARAMETER_FOOTER.contentEquals(str))
-            .map(str -> NUMBERED_METHOD_PARAMETER_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.MethodParameter(
-                numberedMethods.row(parseInt(matcher.group("methodId"))).values().stream().findFirst().orElseThrow(),
-                parseInt(matcher.group("index"))
-            ))
-            .collect(toImmutableMultimap(
-                entry -> (SRGEntry.NumberedMethod) entry.parentMethod(),
-                identity()
-            ));
+    /**
+     * Reads the database in a single pass over the lines, without holding the whole file in memory.
+     */
+    static SRGDatabase read(final BufferedReader input, final StringPool pool) throws IOException {
+        final StreamingReader reader = new StreamingReader(pool);
+        String line;
+        while ((line = input.readLine()) != null) {
+            reader.accept(line);
+        }
+        return reader.build();
+    }
 
-        final ImmutableMultimap<SRGEntry.Constructor, SRGEntry.MethodParameter> constructorParameters = strings.stream()
-            .dropWhile(str -> !CONSTRUCTOR_PARAMETER_HEADER.contentEquals(str))
-            .takeWhile(str -> !CONSTRUCTOR_PARAMETER_FOOTER.contentEquals(str))
-            .map(str -> CONSTRUCTOR_PARAMETER_WRITER.regex().matcher(str))
-            .filter(Matcher::matches)
-            .map(matcher -> new SRGEntry.MethodParameter(
-                constructors.get(parseInt(matcher.group("constructorId"))),
-                parseInt(matcher.group("index"))
-            ))
-            .collect(toImmutableMultimap(
-                entry -> (SRGEntry.Constructor) entry.parentMethod(),
-                identity()
-            ));
+    static SRGDatabase read(final Path file, final StringPool pool) throws IOException {
+        try (BufferedReader input = Files.newBufferedReader(file)) {
+            return read(input, pool);
+        }
+    }
 
-        return new SRGDatabase(
-            classes,
-            fields,
-            enumValues,
-            numberedMethods,
-            namedMethods,
-            constructors,
-            numberedMethodParameters,
-            namedMethodParameters,
-            constructorParameters
-        );
+    private enum Section {
+        CLASS, FIELD, ENUM, NAMED_METHOD, NUMBERED_METHOD, CONSTRUCTOR,
+        DERIVED_PARAMETER // Skipped, parameters are derived from the method descriptors
     }
 
-    record Line(String format, Pattern regex) {
-        public Line(String format, String regex) {
-            this(format, Pattern.compile(regex));
+    private static final Map<String, Section> SECTION_HEADERS = Map.of(
+        CLASS_HEADER, Section.CLASS,
+        FIELD_HEADER, Section.FIELD,
+        ENUM_HEADER, Section.ENUM,
+        NAMED_METHOD_HEADER, Section.NAMED_METHOD,
+        NUMBERED_METHOD_HEADER, Section.NUMBERED_METHOD,
+        CONSTRUCTOR_HEADER, Section.CONSTRUCTOR,
+        NAMED_METHOD_PARAMETER_HEADER, Section.DERIVED_PARAMETER,
+        NUMBERED_METHOD_PARAMETER_HEADER, Section.DERIVED_PARAMETER,
+        CONSTRUCTOR_PARAMETER_HEADER, Section.DERIVED_PARAMETER
+    );
+
+    /**
+     * Dispatches each line on the section header that precedes it.
+     */
+    private static final class StreamingReader {
+        private final StringPool pool;
+        private final Map<String, SRGEntry.Class> classIndex = new HashMap<>();
+
+        private final ImmutableMap.Builder<String, SRGEntry.Class> classes = ImmutableMap.builder();
+        private final ImmutableMap.Builder<Integer, SRGEntry.Field> fields = ImmutableMap.builder();
+        private final ImmutableMultimap.Builder<SRGEntry.Class, SRGEntry.EnumValue> enumValues = ImmutableMultimap.builder();
+        private final ImmutableMultimap.Builder<String, SRGEntry.NamedMethod> namedMethods = ImmutableMultimap.builder();
+        private final ImmutableTable.Builder<Integer, SRGEntry.Class, SRGEntry.NumberedMethod> numberedMethods =
+            ImmutableTable.builder();
+        private final ImmutableMap.Builder<Integer, SRGEntry.Constructor> constructors = ImmutableMap.builder();
+
+        private @Nullable Section section = null;
+
+        StreamingReader(StringPool pool) {
+            this.pool = pool;
         }
 
-        public String formatted(Object... args) {
-            return format().formatted(args);
+        void accept(String line) {
+            final Section header = SECTION_HEADERS.get(line);
+            if (header != null) {
+                section = header;
+                return;
+            }
+            if (section == null || section == Section.DERIVED_PARAMETER) return;
+            if (line.startsWith("{ [END] ")) {
+                section = null;
+                return;
+            }
+
+            Matcher matcher;
+            switch (section) {
+                case CLASS -> {
+                    if (!(matcher = CLASS_LINE.matcher(line)).matches()) return;
+                    final SRGEntry.Class clz = new SRGEntry.Class(matcher.group("srg"), matcher.group("reobf"));
+                    classIndex.put(clz.srgName(), clz);
+                    classes.put(clz.srgName(), clz);
+                }
+                case FIELD -> {
+                    if (!(matcher = FIELD_LINE.matcher(line)).matches()) return;
+                    final int id = parseInt(matcher.group("id"));
+                    fields.put(id, new SRGEntry.Field(
+                        id,
+                        matcher.group("srg"),
+                        pool.intern(matcher.group("reobf")),
+                        classIndex.get(matcher.group("class"))
+                    ));
+                }
+                case ENUM -> {
+                    if (!(matcher = ENUM_LINE.matcher(line)).matches()) return;
+                    final SRGEntry.EnumValue enumValue = new SRGEntry.EnumValue(
+                        pool.intern(matcher.group("value")),
+                        pool.intern(matcher.group("reobf")),
+                        classIndex.get(matcher.group("class"))
+                    );
+                    enumValues.put(enumValue.parentClass(), enumValue);
+                }
+                case NAMED_METHOD -> {
+                    if (!(matcher = NAMED_METHOD_LINE.matcher(line)).matches()) return;
+                    final SRGEntry.NamedMethod method = new SRGEntry.NamedMethod(
+                        pool.intern(matcher.group("deobf")),
+                        pool.intern(matcher.group("reobf")),
+                        classIndex.get(matcher.group("class")),
+                        pool.intern(matcher.group("signature"))
+                    );
+                    namedMethods.put(method.deobfName(), method);
+                }
+                case NUMBERED_METHOD -> {
+                    if (!(matcher = NUMBERED_METHOD_LINE.matcher(line)).matches()) return;
+                    final SRGEntry.NumberedMethod method = new SRGEntry.NumberedMethod(
+                        parseInt(matcher.group("id")),
+                        pool.intern(matcher.group("srg")),
+                        pool.intern(matcher.group("reobf")),
+                        classIndex.get(matcher.group("class")),
+                        pool.intern(matcher.group("signature")),
+                        parseBoolean(matcher.group("static"))
+                    );
+                    numberedMethods.put(method.srgID(), method.parentClass(), method);
+                }
+                case CONSTRUCTOR -> {
+                    if (!(matcher = CONSTRUCTOR_LINE.matcher(line)).matches()) return;
+                    final SRGEntry.Constructor constructor = new SRGEntry.Constructor(
+                        parseInt(matcher.group("id")),
+                        classIndex.get(matcher.group("class")),
+                        pool.intern(matcher.group("signature"))
+                    );
+                    constructors.put(constructor.srgID(), constructor);
+                }
+            }
         }
-    }
 
-    /*
-     * #%L
-     * guava-stream
-     * %%
-     * Copyright (C) 2015 Edson Yanaga
-     * %%
-     * Licensed under the Apache License, Version 2.0 (the "License");
-     * you may not use this file except in compliance with the License.
-     * You may obtain a copy of the License at
-     *
-     *      http://www.apache.org/licenses/LICENSE-2.0
-     *
-     * Unless required by applicable law or agreed to in writing, software
-     * distributed under the License is distributed on an "AS IS" BASIS,
-     * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-     * See the License for the specific language governing permissions and
-     * limitations under the License.
-     * #L%
-     *
-     * Modified to inline both methods used and compacted (MoreCollectors.toImmutableMap)
-     */
-    private static <T, K, V, B extends ImmutableMultimap.Builder<K, V>, M extends ImmutableMultimap<K, V>> Collector<T, ?, M> toImmutableMultimap(
-        Function<? super T, ? extends K> keyMapper,
-        Function<? super T, ? extends V> valueMapper) {
-        //noinspection unchecked
-        return Collector.of(
-            ImmutableMultimap::builder,
-            (objectBuilder, t) -> objectBuilder.put(keyMapper.apply(t), valueMapper.apply(t)),
-            (objectBuilder, objectBuilder2) -> objectBuilder.putAll(objectBuilder2.build()),
-            tBuilder -> (M) tBuilder.build(),
-            UNORDERED, CONCURRENT);
+        SRGDatabase build() {
+            return new SRGDatabase(
+                classes.build(),
+                fields.build(),
+                enumValues.build(),
+                numberedMethods.build(),
+                namedMethods.build(),
+                constructors.build()
+            );
+        }
     }
 
     static final class CodecConstants {
         static String CLASS_HEADER = "{ [START] Class }";
-        static Line CLASS_WRITER = new Line(
-            "class reobf:%s srg:%s",
+        static Pattern CLASS_LINE = Pattern.compile(
             "^class reobf:(?<reobf>.+?) srg:(?<srg>.+)$");
         static String CLASS_FOOTER = "{ [END] Class }";
 
         static String FIELD_HEADER = "{ [START] Field }";
-        static Line FIELD_WRITER = new Line(
-            "field id:%d reobf:%s srg:%s class:%s",
+        static Pattern FIELD_LINE = Pattern.compile(
             "^field id:(?<id>\\d+) reobf:(?<reobf>.+?) srg:(?<srg>.+?) class:(?<class>.+)$");
         static String FIELD_FOOTER = "{ [END] Field }";
 
         static String ENUM_HEADER = "{ [START] Enum }";
-        static Line ENUM_WRITER = new Line(
-            "enum reobf:%s value:%s class:%s",
+        static Pattern ENUM_LINE = Pattern.compile(
             "^enum reobf:(?<reobf>.+?) value:(?<value>.+?) class:(?<class>.+)$");
         static String ENUM_FOOTER = "{ [END] Enum }";
 
         static String NAMED_METHOD_HEADER = "{ [START] NamedMethod }";
-        static Line NAMED_METHOD_WRITER = new Line(
-            "method reobf:%s deobf:%s class:%s signature:%s",
+        static Pattern NAMED_METHOD_LINE = Pattern.compile(
             "^method reobf:(?<reobf>.+?) deobf:(?<deobf>.+?) class:(?<class>.+?) signature:(?<signature>.+)$");
         static String NAMED_METHOD_FOOTER = "{ [END] NamedMethod }";
 
         static String NUMBERED_METHOD_HEADER = "{ [START] NumberedMethod }";
-        static Line NUMBERED_METHOD_WRITER = new Line(
-            "method id:%d reobf:%s srg:%s class:%s signature:%s static:%s",
+        static Pattern NUMBERED_METHOD_LINE = Pattern.compile(
             "^method id:(?<id>\\d+) reobf:(?<reobf>.+?) srg:(?<srg>.+?) class:(?<class>.+?) signature:(?<signature>.+) " +
                 "static:(?<static>true|false)$");
-        static String NUMBERED_METHOD_FOOTER = "{ [END] Class }";
+        static String NUMBERED_METHOD_FOOTER = "{ [END] NumberedMethod }";
 
         static String CONSTRUCTOR_HEADER = "{ [START] Constructor }";
-        static Line CONSTRUCTOR_WRITER = new Line(
-            "constructor id:%d class:%s signature:%s",
+        static Pattern CONSTRUCTOR_LINE = Pattern.compile(
             "^constructor id:(?<id>\\d+) class:(?<class>.+?) signature:(?<signature>.+)$");
         static String CONSTRUCTOR_FOOTER = "{ [END] Constructor }";
 
+        // Parameter sections written by older versions, which are skipped when reading
         static String NAMED_METHOD_PARAMETER_HEADER = "{ [START] Parameter: NamedMethod }";
-        static Line NAMED_METHOD_PARAMETER_WRITER = new Line(
-            "parameter class:%s method_name:%s method_signature:%s index:%d",
-            "^parameter class:(?<class>.+?) method_name:(?<methodName>.+?) method_signature:(?<methodSignature>.+?) " +
-                "index: (?<index>\\d+)$");
-        static String NAMED_METHOD_PARAMETER_FOOTER = "{ [END] Parameter: NamedMethod }";
-
         static String NUMBERED_METHOD_PARAMETER_HEADER = "{ [START] Parameter: NumberedMethod }";
-        static Line NUMBERED_METHOD_PARAMETER_WRITER = new Line(
-            "parameter method_id:%d index:%d",
-            "^parameter method_id:(?<methodId>\\d+) index:(?<index>\\d+)$");
-        static String NUMBERED_METHOD_PARAMETER_FOOTER = "{ [END] Parameter: NumberedMethod }";
-
         static String CONSTRUCTOR_PARAMETER_HEADER = "{ [START] Parameter: Constructor }";
-        static Line CONSTRUCTOR_PARAMETER_WRITER = new Line(
-            "parameter constructor_id:%d index:%d",
-            "^parameter constructor_id:(?<constructorId>\\d+) index:(?<index>\\d+)$");
-        static String CONSTRUCTOR_PARAMETER_FOOTER = "{ [END] Parameter: Constructor }";
     }
 }
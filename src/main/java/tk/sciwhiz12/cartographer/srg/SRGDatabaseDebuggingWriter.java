@@ -64,9 +64,8 @@ public class SRGDatabaseDebuggingWriter {
                                                 + format(NUMBERED_METHOD_WRITER, method.srgID(), method.reobfName(),
                                                 method.srgName(), method.methodSignature(), method.isStatic())),
 
-                                        db.numberedMethodParameters().get(method).stream()
-                                                .mapToInt(SRGEntry.MethodParameter::index)
-                                                .mapToObj(Integer::toString)
+                                        db.parameterSlots(method).stream()
+                                                .map(Object::toString)
                                                 .reduce(joiningStringReduction())
                                                 .map(params -> indent(2)
                                                         + format(METHOD_PARAMETER_WRITER, params))
@@ -80,9 +79,8 @@ public class SRGDatabaseDebuggingWriter {
                                                 + format(NAMED_METHOD_WRITER, method.deobfName(), method.reobfName(),
                                                 method.methodSignature())),
 
-                                        db.namedMethodParameters().get(method).stream()
-                                                .mapToInt(SRGEntry.MethodParameter::index)
-                                                .mapToObj(Integer::toString)
+                                        db.parameterSlots(method).stream()
+                                                .map(Object::toString)
                                                 .reduce(joiningStringReduction())
                                                 .map(params -> indent(2)
                                                         + format(METHOD_PARAMETER_WRITER, params))
@@ -96,9 +94,8 @@ public class SRGDatabaseDebuggingWriter {
                                                 + format(CONSTRUCTOR_WRITER, constructor.srgID(),
                                                 constructor.methodSignature())),
 
-                                        db.constructorParameters().get(constructor).stream()
-                                                .mapToInt(SRGEntry.MethodParameter::index)
-                                                .mapToObj(Integer::toString)
+                                        db.parameterSlots(constructor).stream()
+                                                .map(Object::toString)
                                                 .reduce(joiningStringReduction())
                                                 .map(params -> indent(2)
                                                         + format(METHOD_PARAMETER_WRITER, params))
@@ -0,0 +1,193 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The TSRG class blocks which changed between the file that a database was imported from and a newer file.
+ *
+ * <p>Each block is one class header and its member lines, so a changed block is re-parsed as a whole and replaces
+ * every entry of its class. Blocks keep the name of the class before them in the newer file, so the updated database
+ * has the same iteration order as a full import.</p>
+ *
+ * <p>Written as a delta log of:</p>
+ * <pre>
+ *   base &lt;name of the database the delta applies to&gt;
+ *   - &lt;srg name of a removed class&gt;
+ *   @ &lt;srg name of the previous class, or nothing for the first class&gt;
+ *   &lt;TSRG lines of the block&gt;
+ * </pre>
+ */
+public record SRGDelta(String base, ImmutableList<String> removedClasses, ImmutableList<Block> blocks) {
+    private static final String BASE_PREFIX = "base ";
+    private static final String REMOVED_PREFIX = "- ";
+    private static final String BLOCK_PREFIX = "@";
+
+    public record Block(@Nullable String previousClass, ImmutableList<String> lines) {}
+
+    /**
+     * The hash of every class block in a TSRG file, in file order, and a digest of the static methods list the
+     * database was imported with.
+     */
+    public record Fingerprint(String staticsDigest, Object2LongMap<String> blocks) {
+        public static Fingerprint of(List<String> tsrgLines, String staticsDigest) {
+            final Object2LongMap<String> blocks = new Object2LongLinkedOpenHashMap<>(5000);
+            forEachBlock(tsrgLines, (name, start, end) -> blocks.put(name, hash(tsrgLines, start, end)));
+            return new Fingerprint(staticsDigest, blocks);
+        }
+
+        public List<String> write() {
+            final List<String> lines = new ArrayList<>(blocks.size() + 1);
+            lines.add(staticsDigest);
+            for (Object2LongMap.Entry<String> block : blocks.object2LongEntrySet()) {
+                lines.add(block.getKey() + '\t' + Long.toHexString(block.getLongValue()));
+            }
+            return lines;
+        }
+
+        public static Fingerprint read(List<String> lines) {
+            final Object2LongMap<String> blocks = new Object2LongLinkedOpenHashMap<>(lines.size());
+            for (int i = 1; i < lines.size(); i++) {
+                final String line = lines.get(i);
+                final int tab = line.indexOf('\t');
+                blocks.put(line.substring(0, tab), Long.parseUnsignedLong(line.substring(tab + 1), 16));
+            }
+            return new Fingerprint(lines.isEmpty() ? "" : lines.get(0), blocks);
+        }
+    }
+
+    /**
+     * Compares the blocks of the newer TSRG file against the fingerprint of the file the base database came from.
+     */
+    public static SRGDelta between(String base, Fingerprint baseFingerprint, List<String> tsrgLines) {
+        final ImmutableList.Builder<Block> blocks = ImmutableList.builder();
+        final Set<String> seen = new HashSet<>();
+        final String[] previous = {null};
+        forEachBlock(tsrgLines, (name, start, end) -> {
+            seen.add(name);
+            final long hash = hash(tsrgLines, start, end);
+            if (!baseFingerprint.blocks().containsKey(name) || baseFingerprint.blocks().getLong(name) != hash) {
+                blocks.add(new Block(previous[0], ImmutableList.copyOf(tsrgLines.subList(start, end))));
+            }
+            previous[0] = name;
+        });
+        final ImmutableList<String> removed = baseFingerprint.blocks().keySet().stream()
+            .filter(name -> !seen.contains(name))
+            .collect(ImmutableList.toImmutableList());
+        return new SRGDelta(base, removed, blocks.build());
+    }
+
+    public boolean isEmpty() {
+        return removedClasses.isEmpty() && blocks.isEmpty();
+    }
+
+    public int changedLines() {
+        return blocks.stream().mapToInt(block -> block.lines().size()).sum();
+    }
+
+    /**
+     * Whether the delta can be applied without re-importing everything. Method signatures of unchanged blocks were
+     * remapped through the old class names, so that is only the case when no class was removed and no existing
+     * reobfuscated class name now refers to a different class.
+     */
+    public boolean canApplyTo(SRGDatabase database) {
+        if (!removedClasses.isEmpty()) return false;
+        final Map<String, String> reobfToSrg = new HashMap<>(database.classes().size());
+        for (SRGEntry.Class clz : database.classes().values()) reobfToSrg.put(clz.reobfName(), clz.srgName());
+
+        final Set<String> anchors = new HashSet<>(database.classes().keySet());
+        final TSRGLexer lexer = new TSRGLexer();
+        for (Block block : blocks) {
+            if (block.lines().isEmpty() || lexer.lex(block.lines().get(0)) != TSRGLexer.LineType.CLASS) return false;
+            final String previousOwner = reobfToSrg.get(lexer.reobf());
+            final SRGEntry.Class existing = database.classes().get(lexer.name());
+            if (existing != null ? !existing.reobfName().equals(lexer.reobf()) : previousOwner != null) return false;
+            if (block.previousClass() != null && !anchors.contains(block.previousClass())) return false;
+            anchors.add(lexer.name());
+        }
+        return true;
+    }
+
+    public SRGDatabase applyTo(SRGDatabase database, List<String> staticsLines, List<String> constructorsLines,
+        StringPool pool) {
+        if (!canApplyTo(database)) throw new IllegalArgumentException("Delta cannot be applied to " + database);
+        return SRGParser.update(database, this, staticsLines, constructorsLines, pool);
+    }
+
+    public List<String> write() {
+        final List<String> lines = new ArrayList<>(changedLines() + removedClasses.size() + blocks.size() + 1);
+        lines.add(BASE_PREFIX + base);
+        for (String removed : removedClasses) lines.add(REMOVED_PREFIX + removed);
+        for (Block block : blocks) {
+            lines.add(block.previousClass() == null ? BLOCK_PREFIX : BLOCK_PREFIX + ' ' + block.previousClass());
+            lines.addAll(block.lines());
+        }
+        return lines;
+    }
+
+    public static SRGDelta read(List<String> lines) {
+        if (lines.isEmpty() || !lines.get(0).startsWith(BASE_PREFIX)) {
+            throw new IllegalArgumentException("Delta log does not start with its base");
+        }
+        final ImmutableList.Builder<String> removed = ImmutableList.builder();
+        final ImmutableList.Builder<Block> blocks = ImmutableList.builder();
+        String previousClass = null;
+        ImmutableList.Builder<String> blockLines = null;
+        for (int i = 1; i < lines.size(); i++) {
+            final String line = lines.get(i);
+            if (line.startsWith(REMOVED_PREFIX)) {
+                removed.add(line.substring(REMOVED_PREFIX.length()));
+            } else if (line.startsWith(BLOCK_PREFIX)) {
+                if (blockLines != null) blocks.add(new Block(previousClass, blockLines.build()));
+                previousClass = line.length() > BLOCK_PREFIX.length() + 1 ? line.substring(BLOCK_PREFIX.length() + 1) : null;
+                blockLines = ImmutableList.builder();
+            } else if (blockLines != null) {
+                blockLines.add(line);
+            } else {
+                throw new IllegalArgumentException("Delta log line %d is outside of a block: %s".formatted(i + 1, line));
+            }
+        }
+        if (blockLines != null) blocks.add(new Block(previousClass, blockLines.build()));
+        return new SRGDelta(lines.get(0).substring(BASE_PREFIX.length()), removed.build(), blocks.build());
+    }
+
+    private interface BlockConsumer {
+        void accept(String className, int startLine, int endLine);
+    }
+
+    private static void forEachBlock(List<String> tsrgLines, BlockConsumer consumer) {
+        final IntList blockStarts = SRGParser.findClassBlocks(tsrgLines);
+        final TSRGLexer lexer = new TSRGLexer();
+        for (int i = 0; i < blockStarts.size(); i++) {
+            final int start = blockStarts.getInt(i);
+            final int end = i + 1 < blockStarts.size() ? blockStarts.getInt(i + 1) : tsrgLines.size();
+            if (start == end) continue; // Empty file
+            // A header-less first block is not a valid TSRG file, and fails on import
+            final String name = lexer.lex(tsrgLines.get(start)) == TSRGLexer.LineType.CLASS ? lexer.name() : "";
+            consumer.accept(name, start, end);
+        }
+    }
+
+    private static long hash(List<String> lines, int start, int end) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (int i = start; i < end; i++) {
+            hasher.putString(lines.get(i), UTF_8).putByte((byte) '\n');
+        }
+        return hasher.hash().asLong();
+    }
+}
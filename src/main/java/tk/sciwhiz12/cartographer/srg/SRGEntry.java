@@ -11,6 +11,10 @@ public interface SRGEntry {
 
     interface Method extends ClassMember {
         String methodSignature();
+
+        default boolean isStatic() {
+            return false;
+        }
     }
 
     interface HasSrgName {
@@ -0,0 +1,200 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static tk.sciwhiz12.cartographer.srg.SRGEntry.*;
+
+/**
+ * Column store of the fields, numbered methods and constructors of a database, indexed directly by SRG ID.
+ *
+ * <p>SRG IDs are dense, so each column is a plain array with one slot per ID. If they are not, such as when one bogus
+ * entry has a huge ID, the columns only have a slot per used ID, found by binary search in a sorted array of the IDs.
+ * When an ID is used by more than one entry, the entry which {@link SRGDatabase#getEntryForID(int)} has always
+ * returned is kept: fields first, then the first numbered method for that ID, then constructors.</p>
+ */
+public final class SRGIDIndex {
+    public enum Kind {
+        NONE,
+        FIELD,
+        NUMBERED_METHOD,
+        CONSTRUCTOR;
+
+        private static final Kind[] VALUES = values();
+    }
+
+    // Largest number of slots per used ID which the columns may have before they are made sparse
+    private static final int MAX_SLOTS_PER_ID = 16;
+    private static final int MIN_DENSE_SLOTS = 1 << 16;
+
+    private final SRGEntry.Class[] classes;
+    private final int @Nullable [] ids; // Sorted IDs of the slots when sparse, or null when the slot is the ID itself
+    private final int maxID;
+    private final HasID[] entries;
+    private final byte[] kinds;
+    private final int[] parentClasses; // Index into classes, or -1
+    private final BitSet statics;
+
+    private SRGIDIndex(SRGEntry.Class[] classes, int @Nullable [] ids, int maxID, HasID[] entries, byte[] kinds,
+        int[] parentClasses, BitSet statics) {
+        this.classes = classes;
+        this.ids = ids;
+        this.maxID = maxID;
+        this.entries = entries;
+        this.kinds = kinds;
+        this.parentClasses = parentClasses;
+        this.statics = statics;
+    }
+
+    static SRGIDIndex build(ImmutableMap<String, SRGEntry.Class> classes, ImmutableMap<Integer, Field> fields,
+        ImmutableTable<Integer, SRGEntry.Class, NumberedMethod> numberedMethods,
+        ImmutableMap<Integer, Constructor> constructors) {
+        final SRGEntry.Class[] classArray = classes.values().toArray(new SRGEntry.Class[0]);
+        final Object2IntMap<SRGEntry.Class> classIndexes = new Object2IntOpenHashMap<>(classArray.length);
+        classIndexes.defaultReturnValue(-1);
+        for (int i = 0; i < classArray.length; i++) classIndexes.put(classArray[i], i);
+
+        final IntSet usedIDs = new IntOpenHashSet(fields.size() + numberedMethods.size() + constructors.size());
+        for (Field field : fields.values()) usedIDs.add(field.srgID());
+        for (NumberedMethod method : numberedMethods.values()) usedIDs.add(method.srgID());
+        for (Constructor constructor : constructors.values()) usedIDs.add(constructor.srgID());
+        final int[] sortedIDs = usedIDs.toIntArray();
+        IntArrays.parallelQuickSort(sortedIDs);
+        final int maxID = sortedIDs.length > 0 ? sortedIDs[sortedIDs.length - 1] : -1;
+        final boolean dense = maxID < Math.max(MIN_DENSE_SLOTS, (long) sortedIDs.length * MAX_SLOTS_PER_ID);
+        final int[] ids = dense ? null : sortedIDs;
+        final int slots = dense ? maxID + 1 : sortedIDs.length;
+
+        final HasID[] entries = new HasID[slots];
+        final byte[] kinds = new byte[slots];
+        final int[] parentClasses = new int[slots];
+        Arrays.fill(parentClasses, -1);
+        final BitSet statics = new BitSet(slots);
+
+        // Lower-priority kinds never overwrite an ID which is already taken
+        for (Field field : fields.values()) {
+            put(ids, entries, kinds, parentClasses, field, Kind.FIELD, classIndexes.getInt(field.parentClass()));
+        }
+        for (NumberedMethod method : numberedMethods.values()) {
+            final int slot = slot(ids, method.srgID());
+            if (kinds[slot] == 0) {
+                put(ids, entries, kinds, parentClasses, method, Kind.NUMBERED_METHOD,
+                    classIndexes.getInt(method.parentClass()));
+            }
+            if (method.isStatic()) statics.set(slot);
+        }
+        for (Constructor constructor : constructors.values()) {
+            if (kinds[slot(ids, constructor.srgID())] == 0) {
+                put(ids, entries, kinds, parentClasses, constructor, Kind.CONSTRUCTOR,
+                    classIndexes.getInt(constructor.parentClass()));
+            }
+        }
+
+        return new SRGIDIndex(classArray, ids, maxID, entries, kinds, parentClasses, statics);
+    }
+
+    private static int slot(int @Nullable [] ids, int srgID) {
+        return ids == null ? srgID : Arrays.binarySearch(ids, srgID);
+    }
+
+    private static void put(int @Nullable [] ids, HasID[] entries, byte[] kinds, int[] parentClasses, HasID entry,
+        Kind kind, int classIndex) {
+        final int slot = slot(ids, entry.srgID());
+        entries[slot] = entry;
+        kinds[slot] = (byte) kind.ordinal();
+        parentClasses[slot] = classIndex;
+    }
+
+    /**
+     * The slot of the ID in the columns, or -1 if it has none.
+     */
+    private int slot(int srgID) {
+        if (srgID < 0 || srgID > maxID) return -1;
+        return ids == null ? srgID : Math.max(Arrays.binarySearch(ids, srgID), -1);
+    }
+
+    public int maxID() {
+        return maxID;
+    }
+
+    /**
+     * The IDs which have an entry, in ascending order.
+     */
+    public int[] ids() {
+        if (ids != null) return ids.clone();
+        final int[] used = new int[entries.length];
+        int count = 0;
+        for (int id = 0; id < kinds.length; id++) if (kinds[id] != 0) used[count++] = id;
+        return Arrays.copyOf(used, count);
+    }
+
+    public boolean contains(int srgID) {
+        final int slot = slot(srgID);
+        return slot != -1 && kinds[slot] != 0;
+    }
+
+    public Kind kind(int srgID) {
+        final int slot = slot(srgID);
+        return slot != -1 ? Kind.VALUES[kinds[slot]] : Kind.NONE;
+    }
+
+    @Nullable
+    public HasID get(int srgID) {
+        final int slot = slot(srgID);
+        return slot != -1 ? entries[slot] : null;
+    }
+
+    @Nullable
+    public Field getField(int srgID) {
+        return kind(srgID) == Kind.FIELD ? (Field) get(srgID) : null;
+    }
+
+    @Nullable
+    public NumberedMethod getNumberedMethod(int srgID) {
+        return kind(srgID) == Kind.NUMBERED_METHOD ? (NumberedMethod) get(srgID) : null;
+    }
+
+    @Nullable
+    public Constructor getConstructor(int srgID) {
+        return kind(srgID) == Kind.CONSTRUCTOR ? (Constructor) get(srgID) : null;
+    }
+
+    public SRGEntry.@Nullable Class getParentClass(int srgID) {
+        final int slot = slot(srgID);
+        final int classIndex = slot != -1 ? parentClasses[slot] : -1;
+        return classIndex != -1 ? classes[classIndex] : null;
+    }
+
+    public boolean isStatic(int srgID) {
+        final int slot = slot(srgID);
+        return slot != -1 && statics.get(slot);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof SRGIDIndex other)) return false;
+        // The parent class column is derived from the entries, and only its indexes depend on the class order
+        return Arrays.equals(ids, other.ids) && Arrays.equals(kinds, other.kinds)
+            && Arrays.equals(entries, other.entries) && statics.equals(other.statics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(entries);
+    }
+
+    @Override
+    public String toString() {
+        return "SRGIDIndex[maxID=%d, classes=%d, sparse=%b]".formatted(maxID, classes.length, ids != null);
+    }
+}
@@ -0,0 +1,28 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * The ID-based queries shared by the fully loaded {@link SRGDatabase} and the {@link MappedSRGDatabase}.
+ */
+public interface SRGLookup {
+    @Nullable
+    SRGEntry getEntryForID(int srgID);
+
+    @NonNull
+    List<SRGEntry.MethodParameter> getParametersForMethod(int srgID);
+
+    /**
+     * Looks up many IDs at once.
+     *
+     * @return the entry for each ID, or null where there is none
+     */
+    default SRGEntry[] getEntriesForIDs(int[] srgIDs) {
+        final SRGEntry[] entries = new SRGEntry[srgIDs.length];
+        for (int i = 0; i < srgIDs.length; i++) entries[i] = getEntryForID(srgIDs[i]);
+        return entries;
+    }
+}
@@ -0,0 +1,143 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableTable;
+import tk.sciwhiz12.cartographer.util.LazyIndex;
+
+import java.util.function.Supplier;
+
+import static tk.sciwhiz12.cartographer.srg.SRGEntry.*;
+
+/**
+ * Hash indices of the entries of a database by their reobfuscated and SRG names.
+ *
+ * <p>Names may be shared by several entries (such as reobfuscated member names, which are only unique within a
+ * class, or the SRG name of a method which is overridden), so every lookup returns all matching entries in database
+ * order. The indices are only built on the first lookup, as most databases are only ever queried by ID.</p>
+ */
+public final class SRGNameIndex {
+    private final LazyIndex<Indices> indices;
+
+    private record Indices(
+        ImmutableListMultimap<String, SRGEntry.Class> classesByReobfName,
+        ImmutableListMultimap<String, ClassMember> membersByReobfName,
+        ImmutableListMultimap<MemberKey, ClassMember> membersByClassAndReobfName,
+        ImmutableListMultimap<String, SRGEntry> entriesBySrgName
+    ) {}
+
+    // Reobfuscated names are only unique within a class, so short names like "a" are shared by thousands of members
+    private record MemberKey(String classReobfName, String reobfName) {}
+
+    private SRGNameIndex(Supplier<Indices> factory) {
+        this.indices = new LazyIndex<>(factory);
+    }
+
+    static SRGNameIndex build(ImmutableMap<String, SRGEntry.Class> classes, ImmutableMap<Integer, Field> fields,
+        ImmutableMultimap<SRGEntry.Class, EnumValue> enumValues,
+        ImmutableTable<Integer, SRGEntry.Class, NumberedMethod> numberedMethods,
+        ImmutableMultimap<String, NamedMethod> namedMethods) {
+        return new SRGNameIndex(() -> {
+            final ImmutableListMultimap.Builder<String, SRGEntry.Class> classesByReobfName =
+                ImmutableListMultimap.builder();
+            final ImmutableListMultimap.Builder<String, ClassMember> membersByReobfName =
+                ImmutableListMultimap.builder();
+            final ImmutableListMultimap.Builder<MemberKey, ClassMember> membersByClassAndReobfName =
+                ImmutableListMultimap.builder();
+            final ImmutableListMultimap.Builder<String, SRGEntry> entriesBySrgName = ImmutableListMultimap.builder();
+
+            for (SRGEntry.Class clz : classes.values()) {
+                classesByReobfName.put(clz.reobfName(), clz);
+                entriesBySrgName.put(clz.srgName(), clz);
+            }
+            for (Field field : fields.values()) {
+                membersByReobfName.put(field.reobfName(), field);
+                membersByClassAndReobfName.put(
+                    new MemberKey(field.parentClass().reobfName(), field.reobfName()), field);
+                entriesBySrgName.put(field.srgName(), field);
+            }
+            for (EnumValue value : enumValues.values()) {
+                membersByReobfName.put(value.reobfName(), value);
+                membersByClassAndReobfName.put(
+                    new MemberKey(value.parentClass().reobfName(), value.reobfName()), value);
+                entriesBySrgName.put(value.valueName(), value);
+            }
+            for (NumberedMethod method : numberedMethods.values()) {
+                membersByReobfName.put(method.reobfName(), method);
+                membersByClassAndReobfName.put(
+                    new MemberKey(method.parentClass().reobfName(), method.reobfName()), method);
+                entriesBySrgName.put(method.srgName(), method);
+            }
+            for (NamedMethod method : namedMethods.values()) {
+                membersByReobfName.put(method.reobfName(), method);
+                membersByClassAndReobfName.put(
+                    new MemberKey(method.parentClass().reobfName(), method.reobfName()), method);
+                entriesBySrgName.put(method.deobfName(), method);
+            }
+
+            return new Indices(classesByReobfName.build(), membersByReobfName.build(),
+                membersByClassAndReobfName.build(), entriesBySrgName.build());
+        });
+    }
+
+    /**
+     * The classes with the given reobfuscated name, in internal form ({@code a/b/c}).
+     */
+    public ImmutableList<SRGEntry.Class> getClassesByReobfName(String reobfName) {
+        return indices().classesByReobfName().get(reobfName);
+    }
+
+    /**
+     * The fields, enum values and methods with the given reobfuscated name, in every class.
+     */
+    public ImmutableList<ClassMember> getMembersByReobfName(String reobfName) {
+        return indices().membersByReobfName().get(reobfName);
+    }
+
+    /**
+     * The fields, enum values and methods with the given reobfuscated name in the class with the given reobfuscated
+     * name.
+     */
+    public ImmutableList<ClassMember> getMembersByReobfName(String classReobfName, String reobfName) {
+        return indices().membersByClassAndReobfName().get(new MemberKey(classReobfName, reobfName));
+    }
+
+    /**
+     * The classes, fields, enum values and methods with the given SRG name. Class names are in internal form, and
+     * named methods and enum values are found by their (unobfuscated) name.
+     */
+    public ImmutableList<SRGEntry> getEntriesBySrgName(String srgName) {
+        return indices().entriesBySrgName().get(srgName);
+    }
+
+    /**
+     * The number of entries in the indices, or 0 before the first lookup builds them.
+     */
+    public int size() {
+        final Indices built = indices.getIfBuilt();
+        if (built == null) return 0;
+        return built.classesByReobfName().size() + built.membersByReobfName().size()
+            + built.membersByClassAndReobfName().size() + built.entriesBySrgName().size();
+    }
+
+    private Indices indices() {
+        return indices.get();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SRGNameIndex other && indices.equals(other.indices);
+    }
+
+    @Override
+    public int hashCode() {
+        return indices.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SRGNameIndex[built=%s]".formatted(indices.getIfBuilt() != null);
+    }
+}
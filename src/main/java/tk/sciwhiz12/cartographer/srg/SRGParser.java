@@ -11,107 +11,85 @@ import com.google.common.collect.Multimaps;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
 import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
-import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tk.sciwhiz12.cartographer.util.DescriptorRemapper;
+import tk.sciwhiz12.cartographer.util.MethodDescriptor;
+import tk.sciwhiz12.cartographer.util.StringPool;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.lang.Integer.parseInt;
-import static java.util.regex.Matcher.quoteReplacement;
 import static tk.sciwhiz12.cartographer.util.Logging.*;
 import static tk.sciwhiz12.cartographer.util.Patterns.*;
 
 class SRGParser {
-    static final ImmutableMap<Character, Integer> charMap = ImmutableMap.<Character, Integer>builder()
-        .put('B', 1).put('C', 1).put('F', 1).put('S', 1).put('Z', 1).put('I', 1).put('L', 1)
-        .put('D', 2).put('J', 2).build();
-
     private SRGParser() {}
 
     static SRGDatabase read(List<String> tsrgLines, List<String> staticsLines, List<String> constructorsLines) {
-        IntList staticList = parseStaticMethods(staticsLines);
+        return read(tsrgLines, staticsLines, constructorsLines, false, new StringPool());
+    }
+
+    static SRGDatabase read(List<String> tsrgLines, List<String> staticsLines, List<String> constructorsLines,
+        boolean parallel, StringPool pool) {
+        IntSet statics = parseStaticMethods(staticsLines);
 
-        Map<String, SRGEntry.Class> classes = new Object2ObjectArrayMap<>(5000);
-        Int2ObjectMap<SRGEntry.Field> fields = new Int2ObjectArrayMap<>(5000);
+        final List<ParsedBlock> blocks;
+        if (parallel) {
+            // Each unindented class header starts an independent block, so blocks can be parsed in any order;
+            // the ordered collect keeps them in file order for the merge below
+            final IntList blockStarts = findClassBlocks(tsrgLines);
+            blocks = IntStream.range(0, blockStarts.size())
+                .parallel()
+                .mapToObj(i -> parseBlock(tsrgLines, blockStarts.getInt(i),
+                    i + 1 < blockStarts.size() ? blockStarts.getInt(i + 1) : tsrgLines.size(), statics, pool))
+                .collect(Collectors.toList());
+            logf("Parsed %d TSRG class blocks in parallel%n", blocks.size());
+        } else {
+            blocks = List.of(parseBlock(tsrgLines, 0, tsrgLines.size(), statics, pool));
+        }
+
+        Map<String, SRGEntry.Class> classes = new Object2ObjectLinkedOpenHashMap<>(5000);
+        Int2ObjectMap<SRGEntry.Field> fields = new Int2ObjectLinkedOpenHashMap<>(30000);
         Multimap<SRGEntry.Class, SRGEntry.EnumValue> enumValues = MultimapBuilder.hashKeys(5000).arrayListValues(4).build();
         Table<Integer, SRGEntry.Class, SRGEntry.NumberedMethod> numbered = HashBasedTable.create(5000, 1000);
         Multimap<String, SRGEntry.NamedMethod> named = MultimapBuilder.hashKeys(5000).arrayListValues(2).build();
 
+        // Merging the blocks in file order gives every collection the same iteration order as a sequential parse
         int errCount = 0;
-        SRGEntry.Class lastKnownClass = null;
-        for (int lineNum = 0; lineNum < tsrgLines.size(); lineNum++) {
-            String line = tsrgLines.get(lineNum);
-            Matcher classMatcher = TSRG_CLASS_HEADER.matcher(line); // Class matching
-            if (classMatcher.matches()) {
-                String reobfName = classMatcher.group("reobf");
-                String deobfName = classMatcher.group("srg");
-                lastKnownClass = new SRGEntry.Class(deobfName, reobfName);
-                debugf("L%d - CLASS header: %s%n", lineNum + 1, lastKnownClass);
-                classes.put(deobfName, lastKnownClass);
-                continue;
-            }
-            if (lastKnownClass == null) { throw new RuntimeException("No class in first line?"); }
-            Matcher fieldMatcher = TSRG_FIELD.matcher(line); // Field matching
-            if (fieldMatcher.matches()) {
-                String reobfName = fieldMatcher.group("reobf");
-                String originalSrgName = fieldMatcher.group("srg");
-                int srgID = parseInt(fieldMatcher.group("id"));
-                SRGEntry.Field field = new SRGEntry.Field(srgID, originalSrgName, reobfName, lastKnownClass);
-                debugf("L%d - Field: %s%n", lineNum + 1, field);
-                fields.put(srgID, field);
-                continue;
-            }
-            Matcher enumMatcher = TSRG_ENUM_VALUE.matcher(line); // Enum value matching
-            if (enumMatcher.matches()) {
-                String reobfName = enumMatcher.group("reobf");
-                String valueName = enumMatcher.group("value");
-                SRGEntry.EnumValue enumValue = new SRGEntry.EnumValue(valueName, reobfName, lastKnownClass);
-                debugf("L%s - Enum value: %s%n", lineNum + 1, enumValue);
-                enumValues.put(lastKnownClass, enumValue);
-                continue;
-            }
-            Matcher numberedMatcher = TSRG_NUMBERED_METHOD.matcher(line); // Numbered (srg-id) method matching
-            if (numberedMatcher.matches()) {
-                String reobfName = numberedMatcher.group("reobf");
-                String methodSignature = numberedMatcher.group("signature");
-                String originalSrgName = numberedMatcher.group("srg");
-                int srgID = parseInt(numberedMatcher.group("id"));
-                boolean isStatic = staticList.contains(srgID);
-                SRGEntry.NumberedMethod method = new SRGEntry.NumberedMethod(srgID, originalSrgName, reobfName, lastKnownClass,
-                    methodSignature, isStatic);
-                debugf("L%d - Numbered method: %s%n", lineNum + 1, method);
-                numbered.put(srgID, lastKnownClass, method);
-                continue;
-            }
-            Matcher namedMatcher = TSRG_NAMED_METHOD.matcher(line); // Named method matching
-            if (namedMatcher.matches()) {
-                String reobfName = namedMatcher.group("reobf");
-                String methodSignature = namedMatcher.group("signature");
-                String deobfName = namedMatcher.group("deobf");
-                SRGEntry.NamedMethod method = new SRGEntry.NamedMethod(deobfName, reobfName, lastKnownClass,
-                    methodSignature);
-                debugf("L%d - Named method: %s%n", lineNum + 1, method);
-                named.put(deobfName, method);
-                continue;
+        for (ParsedBlock block : blocks) {
+            for (SRGEntry.Class clz : block.classes()) classes.put(clz.srgName(), clz);
+            for (SRGEntry.Field field : block.fields()) fields.put(field.srgID(), field);
+            for (SRGEntry.EnumValue enumValue : block.enumValues()) enumValues.put(enumValue.parentClass(), enumValue);
+            for (SRGEntry.NumberedMethod method : block.numberedMethods()) {
+                numbered.put(method.srgID(), method.parentClass(), method);
             }
-            errf("!!! L%d is not recognizable!: %s%n", lineNum + 1, line);
-            errCount++;
+            for (SRGEntry.NamedMethod method : block.namedMethods()) named.put(method.deobfName(), method);
+            for (String error : block.errors()) errf("%s%n", error);
+            errCount += block.errors().size();
         }
 
-        final Int2ObjectMap<SRGEntry.Constructor> constructors = parseConstructors(classes, constructorsLines);
-        final ImmutableMap<String, SRGEntry.Class> reobfClassesMap = Maps
-            .uniqueIndex(classes.values(), SRGEntry.Class::reobfName);
+        final Int2ObjectMap<SRGEntry.Constructor> constructors = parseConstructors(classes, constructorsLines, pool);
+        final DescriptorRemapper signatureRemapper = reobfToSrgRemapper(Maps
+            .uniqueIndex(classes.values(), SRGEntry.Class::reobfName));
 
         //noinspection UnstableApiUsage
         numbered = ImmutableTable.copyOf(Tables.transformValues(numbered, obfSignaturesTransformer(
-            reobfClassesMap,
+            signatureRemapper,
             (orig, newSig) -> new SRGEntry.NumberedMethod(
                 orig.srgID(),
                 orig.srgName(),
@@ -123,7 +101,7 @@ class SRGParser {
         ));
 
         named = ImmutableMultimap.copyOf(Multimaps.transformValues(named, obfSignaturesTransformer(
-            reobfClassesMap,
+            signatureRemapper,
             (orig, newSig) -> new SRGEntry.NamedMethod(
                 orig.deobfName(),
                 orig.reobfName(),
@@ -132,48 +110,273 @@ class SRGParser {
             )
         ));
 
-        final Multimap<SRGEntry.NumberedMethod, SRGEntry.MethodParameter> numberedParams = createParameters(numbered.values());
-        final Multimap<SRGEntry.NamedMethod, SRGEntry.MethodParameter> namedParams = createParameters(named.values());
-        final Multimap<SRGEntry.Constructor, SRGEntry.MethodParameter> constructorParams = createParameters(
-            constructors.values());
-
         final SRGDatabase srgDatabase = new SRGDatabase(
             ImmutableMap.copyOf(classes),
             ImmutableMap.copyOf(fields),
             ImmutableMultimap.copyOf(enumValues),
             ImmutableTable.copyOf(numbered),
             ImmutableMultimap.copyOf(named),
-            ImmutableMap.copyOf(constructors),
-            ImmutableMultimap.copyOf(numberedParams),
-            ImmutableMultimap.copyOf(namedParams),
-            ImmutableMultimap.copyOf(constructorParams));
+            ImmutableMap.copyOf(constructors));
+        checkDescriptors(srgDatabase, srgDatabase.numberedMethods().values());
+        checkDescriptors(srgDatabase, srgDatabase.namedMethods().values());
+        checkDescriptors(srgDatabase, srgDatabase.constructors().values());
 
         logf(" === SRG Import === %n");
         srgDatabase.printStatistics(System.out);
         logf("Number of errors: %d%n", errCount);
+        logf("String pool: %s%n", pool.statistics());
         logf(" === === == === === %n");
 
         return srgDatabase;
     }
 
+    /**
+     * Rebuilds the database with the class blocks of the delta re-parsed, reusing the entries of every other class.
+     * Method signatures of reused classes are only remapped again if the delta adds classes, as their reobfuscated
+     * names may have been unresolved before.
+     */
+    static SRGDatabase update(SRGDatabase base, SRGDelta delta, List<String> staticsLines,
+        List<String> constructorsLines, StringPool pool) {
+        final IntSet statics = parseStaticMethods(staticsLines);
+
+        final Map<String, ParsedBlock> changed = new HashMap<>();
+        final ClassOrder classOrder = new ClassOrder(base.classes().keySet());
+        boolean addedClasses = false;
+        int errCount = 0;
+        for (SRGDelta.Block deltaBlock : delta.blocks()) {
+            final ParsedBlock block = parseBlock(deltaBlock.lines(), 0, deltaBlock.lines().size(), statics, pool);
+            for (String error : block.errors()) errf("%s%n", error);
+            errCount += block.errors().size();
+
+            final String name = block.classes().get(0).srgName();
+            changed.put(name, block);
+            addedClasses |= !classOrder.moveAfter(name, deltaBlock.previousClass());
+        }
+
+        final Map<String, SRGEntry.Class> classes = new Object2ObjectLinkedOpenHashMap<>(classOrder.size());
+        for (String name : classOrder.names()) {
+            final ParsedBlock block = changed.get(name);
+            classes.put(name, block != null ? block.classes().get(0) : base.classes().get(name));
+        }
+        final DescriptorRemapper signatureRemapper = reobfToSrgRemapper(Maps
+            .uniqueIndex(classes.values(), SRGEntry.Class::reobfName));
+
+        final var baseFields = Multimaps.index(base.fields().values(), SRGEntry.ClassMember::parentClass);
+        final var baseNumbered = Multimaps.index(base.numberedMethods().values(), SRGEntry.ClassMember::parentClass);
+        final var baseNamed = Multimaps.index(base.namedMethods().values(), SRGEntry.ClassMember::parentClass);
+
+        final Int2ObjectMap<SRGEntry.Field> fields = new Int2ObjectLinkedOpenHashMap<>(base.fields().size());
+        final Multimap<SRGEntry.Class, SRGEntry.EnumValue> enumValues = MultimapBuilder.hashKeys(5000)
+            .arrayListValues(4).build();
+        final Table<Integer, SRGEntry.Class, SRGEntry.NumberedMethod> numbered = HashBasedTable.create(5000, 1000);
+        final Multimap<String, SRGEntry.NamedMethod> named = MultimapBuilder.hashKeys(5000).arrayListValues(2).build();
+        final List<SRGEntry.Method> parsedMethods = new ArrayList<>();
+
+        // Merged in class order, the same order in which a full import merges the blocks
+        for (SRGEntry.Class clz : classes.values()) {
+            final ParsedBlock block = changed.get(clz.srgName());
+            final boolean remap = block != null || addedClasses;
+            for (SRGEntry.Field field : block != null ? block.fields() : baseFields.get(clz)) {
+                fields.put(field.srgID(), field);
+            }
+            for (SRGEntry.EnumValue enumValue : block != null ? block.enumValues() : base.enumValues().get(clz)) {
+                enumValues.put(enumValue.parentClass(), enumValue);
+            }
+            for (SRGEntry.NumberedMethod method : block != null ? block.numberedMethods() : baseNumbered.get(clz)) {
+                final String signature = remap ? signatureRemapper.remap(method.methodSignature())
+                    : method.methodSignature();
+                if (!signature.equals(method.methodSignature())) {
+                    method = new SRGEntry.NumberedMethod(method.srgID(), method.srgName(), method.reobfName(),
+                        method.parentClass(), signature, method.isStatic());
+                }
+                numbered.put(method.srgID(), method.parentClass(), method);
+                if (block != null) parsedMethods.add(method);
+            }
+            for (SRGEntry.NamedMethod method : block != null ? block.namedMethods() : baseNamed.get(clz)) {
+                final String signature = remap ? signatureRemapper.remap(method.methodSignature())
+                    : method.methodSignature();
+                if (!signature.equals(method.methodSignature())) {
+                    method = new SRGEntry.NamedMethod(method.deobfName(), method.reobfName(), method.parentClass(),
+                        signature);
+                }
+                named.put(method.deobfName(), method);
+                if (block != null) parsedMethods.add(method);
+            }
+        }
+
+        final Int2ObjectMap<SRGEntry.Constructor> constructors = parseConstructors(classes, constructorsLines, pool);
+
+        final SRGDatabase srgDatabase = new SRGDatabase(
+            ImmutableMap.copyOf(classes),
+            ImmutableMap.copyOf(fields),
+            ImmutableMultimap.copyOf(enumValues),
+            ImmutableTable.copyOf(numbered),
+            ImmutableMultimap.copyOf(named),
+            ImmutableMap.copyOf(constructors));
+        checkDescriptors(srgDatabase, parsedMethods);
+
+        logf(" === SRG Update === %n");
+        srgDatabase.printStatistics(System.out);
+        logf("Re-parsed %d class blocks (%d lines)%n", delta.blocks().size(), delta.changedLines());
+        logf("Number of errors: %d%n", errCount);
+        logf(" === === == === === %n");
+
+        return srgDatabase;
+    }
+
+    /**
+     * The order of the classes of a database being updated, as a doubly linked list keyed by SRG name, so moving or
+     * inserting a changed class after the class before it takes constant time. The null key is both ends of the list.
+     */
+    private static final class ClassOrder {
+        private final Map<String, String> next;
+        private final Map<String, String> previous;
+
+        ClassOrder(Collection<String> names) {
+            next = new HashMap<>(names.size() * 2);
+            previous = new HashMap<>(names.size() * 2);
+            String last = null;
+            for (String name : names) {
+                link(last, name);
+                last = name;
+            }
+            link(last, null);
+        }
+
+        int size() {
+            return next.size() - 1;
+        }
+
+        /**
+         * Moves or inserts the class after the given one, or first if that is null.
+         *
+         * @return whether the class was already in the order
+         */
+        boolean moveAfter(String name, @Nullable String after) {
+            final boolean existed = next.containsKey(name);
+            if (existed) link(previous.get(name), next.get(name));
+            final String following = next.get(after);
+            link(after, name);
+            link(name, following);
+            return existed;
+        }
+
+        List<String> names() {
+            final List<String> names = new ArrayList<>(size());
+            for (String name = next.get(null); name != null; name = next.get(name)) names.add(name);
+            return names;
+        }
+
+        private void link(@Nullable String first, @Nullable String second) {
+            next.put(first, second);
+            previous.put(second, first);
+        }
+    }
+
+    static IntList findClassBlocks(List<String> tsrgLines) {
+        final IntList blockStarts = new IntArrayList(5000);
+        blockStarts.add(0); // Any lines before the first class header are kept, so they fail as they would sequentially
+        final TSRGLexer lexer = new TSRGLexer();
+        for (int lineNum = 1; lineNum < tsrgLines.size(); lineNum++) {
+            String line = tsrgLines.get(lineNum);
+            if (!TSRGLexer.isIndented(line) && lexer.lex(line) == TSRGLexer.LineType.CLASS) {
+                blockStarts.add(lineNum);
+            }
+        }
+        return blockStarts;
+    }
+
+    static ParsedBlock parseBlock(List<String> tsrgLines, int startLine, int endLine, IntSet statics,
+        StringPool pool) {
+        final ParsedBlock block = new ParsedBlock(new ArrayList<>(1), new ArrayList<>(), new ArrayList<>(0),
+            new ArrayList<>(), new ArrayList<>(), new ArrayList<>(0));
+        SRGEntry.Class lastKnownClass = null;
+        final TSRGLexer lexer = new TSRGLexer();
+        for (int lineNum = startLine; lineNum < endLine; lineNum++) {
+            String line = tsrgLines.get(lineNum);
+            final TSRGLexer.LineType type = lexer.lex(line);
+            if (type == TSRGLexer.LineType.CLASS) { // Class matching
+                String reobfName = pool.intern(lexer.reobf());
+                String deobfName = lexer.name();
+                lastKnownClass = new SRGEntry.Class(deobfName, reobfName);
+                debugf("L%d - CLASS header: %s%n", lineNum + 1, lastKnownClass);
+                block.classes().add(lastKnownClass);
+                continue;
+            }
+            if (lastKnownClass == null) { throw new RuntimeException("No class in first line?"); }
+            switch (type) {
+                case FIELD -> { // Field matching
+                    SRGEntry.Field field = new SRGEntry.Field(lexer.id(), lexer.name(), pool.intern(lexer.reobf()),
+                        lastKnownClass);
+                    debugf("L%d - Field: %s%n", lineNum + 1, field);
+                    block.fields().add(field);
+                }
+                case ENUM_VALUE -> { // Enum value matching
+                    SRGEntry.EnumValue enumValue = new SRGEntry.EnumValue(pool.intern(lexer.name()),
+                        pool.intern(lexer.reobf()), lastKnownClass);
+                    debugf("L%s - Enum value: %s%n", lineNum + 1, enumValue);
+                    block.enumValues().add(enumValue);
+                }
+                case NUMBERED_METHOD -> { // Numbered (srg-id) method matching
+                    int srgID = lexer.id();
+                    boolean isStatic = statics.contains(srgID);
+                    SRGEntry.NumberedMethod method = new SRGEntry.NumberedMethod(srgID, pool.intern(lexer.name()),
+                        pool.intern(lexer.reobf()), lastKnownClass, pool.intern(lexer.signature()), isStatic);
+                    debugf("L%d - Numbered method: %s%n", lineNum + 1, method);
+                    block.numberedMethods().add(method);
+                }
+                case NAMED_METHOD -> { // Named method matching
+                    SRGEntry.NamedMethod method = new SRGEntry.NamedMethod(pool.intern(lexer.name()),
+                        pool.intern(lexer.reobf()), lastKnownClass, pool.intern(lexer.signature()));
+                    debugf("L%d - Named method: %s%n", lineNum + 1, method);
+                    block.namedMethods().add(method);
+                }
+                default -> block.errors().add("!!! L%d is not recognizable!: %s".formatted(lineNum + 1, line));
+            }
+        }
+        return block;
+    }
+
+    record ParsedBlock(
+        List<SRGEntry.Class> classes,
+        List<SRGEntry.Field> fields,
+        List<SRGEntry.EnumValue> enumValues,
+        List<SRGEntry.NumberedMethod> numberedMethods,
+        List<SRGEntry.NamedMethod> namedMethods,
+        List<String> errors
+    ) {}
+
+    /**
+     * Creates a remapper from reobfuscated to SRG class names. Only reobfuscated names (no package and no uppercase
+     * characters) are looked up; everything else is kept as-is.
+     */
+    static DescriptorRemapper reobfToSrgRemapper(final Map<String, SRGEntry.Class> reobfClasses) {
+        return new DescriptorRemapper(name -> {
+            if (!isReobfName(name)) return null;
+            SRGEntry.Class deobfClass = reobfClasses.get(name);
+            if (deobfClass != null) return deobfClass.srgName();
+            errf("DEOBF_SIGNATURE: Cannot find deobf class name for %s%n", name);
+            return null;
+        });
+    }
+
+    private static boolean isReobfName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            final char ch = name.charAt(i);
+            if (ch == '/' || Character.isUpperCase(ch)) return false;
+        }
+        return true;
+    }
+
     @SuppressWarnings("Guava")
     static <M extends SRGEntry.Method> com.google.common.base.Function<M, M> obfSignaturesTransformer(
-        final Map<String, SRGEntry.Class> classes,
+        final DescriptorRemapper remapper,
         final SignatureModifier<M> modifier
     ) {
         return method -> {
             if (method == null) return null;
-            Matcher matcher = METHOD_DESCRIPTOR__REFERENCE_TYPE.matcher(method.methodSignature());
             debugf("Deobfuscating method signature: %s%n", method.methodSignature());
-            String newSignature = matcher.replaceAll(match -> {
-                String name = match.group(1);
-                if (!name.contains("/") && name.chars().noneMatch(Character::isUpperCase)) {
-                    SRGEntry.Class deobfClass = classes.get(name);
-                    if (deobfClass != null) return 'L' + quoteReplacement(deobfClass.srgName()) + ';';
-                    errf("DEOBF_SIGNATURE: Cannot find deobf class name for %s for %s%n", name, method);
-                }
-                return 'L' + quoteReplacement(name) + ';';
-            });
+            String newSignature = remapper.remap(method.methodSignature());
             debugf("Deobfuscated signature: %s%n", newSignature);
             return modifier.create(method, newSignature);
         };
@@ -183,28 +386,24 @@ class SRGParser {
         M create(M original, String newMethodSignature);
     }
 
-    static <T extends SRGEntry.Method> ImmutableMultimap<T, SRGEntry.MethodParameter> createParameters(Collection<T> methods) {
-        ImmutableMultimap.Builder<T, SRGEntry.MethodParameter> parameters = ImmutableMultimap.builder();
-        for (T method : methods) {
-            final Matcher signatureMatcher = METHOD_SIGNATURE_PARAMETERS.matcher(method.methodSignature());
-            if (!signatureMatcher.matches() || signatureMatcher.group("parameters").isEmpty()) continue;
-            final Matcher descriptor = METHOD_DESCRIPTOR.matcher(signatureMatcher.group("parameters"));
-            boolean isStatic = method instanceof SRGEntry.NumberedMethod && ((SRGEntry.NumberedMethod) method).isStatic();
-            // See JVM Spec section 4.3.3 for details of the parameter index/units
-            AtomicInteger index = new AtomicInteger(isStatic ? 0 : 1);
-            descriptor
-                .results()
-                .map(match -> match.group(1))
-                .map(str -> str.charAt(0))
-                .filter(charMap::containsKey)
-                .mapToInt(charMap::get)
-                .forEach(unit -> parameters.put(method, new SRGEntry.MethodParameter(method, index.getAndAdd(unit))));
+    /**
+     * Reports the methods whose descriptor is missing from the database's descriptor table because it is malformed,
+     * so they are reported once at import instead of silently having no parameters.
+     */
+    static void checkDescriptors(SRGDatabase database, Collection<? extends SRGEntry.Method> methods) {
+        for (SRGEntry.Method method : methods) {
+            if (database.descriptors().containsKey(method.methodSignature())) continue;
+            try {
+                MethodDescriptor.parse(method.methodSignature());
+            } catch (IllegalArgumentException e) {
+                errf("PARAMETERS: Cannot parse method signature of %s: %s%n", method, e.getMessage());
+            }
         }
-        return parameters.build();
     }
 
-    static IntList parseStaticMethods(List<String> lines) {
-        IntList staticsList = new IntArrayList();
+    static IntSet parseStaticMethods(List<String> lines) {
+        // A set rather than a bit set, since one bogus ID would size a bit set to match
+        IntSet statics = new IntOpenHashSet(lines.size());
         for (int i = 0; i < lines.size(); i++) {
             String line = lines.get(i);
             Matcher lineMatch = SRG_NUMBER.matcher(line);
@@ -215,15 +414,15 @@ class SRGParser {
                 errf("STATICS: L%d is not a function: %s%n", i + 1, line);
                 continue;
             }
-            staticsList.add(parseInt(lineMatch.group("id")));
+            statics.add(parseInt(lineMatch.group("id")));
         }
 
-        logf("Parsed %d static method declarations%n", staticsList.size());
-        return staticsList;
+        logf("Parsed %d static method declarations%n", statics.size());
+        return statics;
     }
 
     static Int2ObjectMap<SRGEntry.Constructor> parseConstructors(Map<String, SRGEntry.Class> classes,
-        List<String> lines) {
+        List<String> lines, StringPool pool) {
         Int2ObjectMap<SRGEntry.Constructor> constructors = Int2ObjectMaps.synchronize(new Int2ObjectArrayMap<>(1000));
 
         lines.parallelStream()
@@ -232,7 +431,7 @@ class SRGParser {
             .filter(matcher -> classes.containsKey(matcher.group("class")))
             .map(lineMatch -> new SRGEntry.Constructor(parseInt(lineMatch.group("id")),
                 classes.get(lineMatch.group("class")),
-                lineMatch.group("signature")))
+                pool.intern(lineMatch.group("signature"))))
             .forEach(constructor -> constructors.put(constructor.srgID(), constructor));
 
         logf("Found %d valid constructors%n", constructors.size());
@@ -0,0 +1,204 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import java.util.regex.Matcher;
+
+import static tk.sciwhiz12.cartographer.util.Patterns.*;
+
+/**
+ * Single-pass lexer for TSRG lines, which classifies a line from its leading whitespace and token count. Lines it
+ * cannot recognize fall back to the regex cascade in {@link tk.sciwhiz12.cartographer.util.Patterns}. Fields and
+ * numbered methods whose SRG ID does not fit in an {@code int} are unknown lines, whichever path recognizes them.
+ *
+ * <p>Instances are reusable but not thread-safe; the accessors refer to the most recently lexed line.</p>
+ */
+final class TSRGLexer {
+    enum LineType {
+        CLASS,
+        FIELD,
+        ENUM_VALUE,
+        NUMBERED_METHOD,
+        NAMED_METHOD,
+        UNKNOWN
+    }
+
+    private String line = "";
+    private int reobfStart, reobfEnd;
+    private int signatureStart, signatureEnd;
+    private int nameStart, nameEnd;
+    private int id = -1;
+    private boolean idOverflow;
+
+    LineType lex(String line) {
+        this.line = line;
+        this.id = -1;
+        this.idOverflow = false;
+        this.signatureStart = this.signatureEnd = 0;
+        final LineType type = scan();
+        if (idOverflow) return LineType.UNKNOWN; // The fallback would only find the same ID
+        return type != LineType.UNKNOWN ? type : fallback();
+    }
+
+    /**
+     * Class headers are the only unindented lines in a well-formed TSRG file.
+     */
+    static boolean isIndented(String line) {
+        return !line.isEmpty() && isWhitespace(line.charAt(0));
+    }
+
+    String reobf() {
+        return line.substring(reobfStart, reobfEnd);
+    }
+
+    /**
+     * The SRG name of a class, field or numbered method, the value name of an enum value, or the deobfuscated name of a
+     * named method.
+     */
+    String name() {
+        return line.substring(nameStart, nameEnd);
+    }
+
+    String signature() {
+        return line.substring(signatureStart, signatureEnd);
+    }
+
+    int id() {
+        return id;
+    }
+
+    private LineType scan() {
+        final String line = this.line;
+        final int length = line.length();
+        int pos = 0;
+        while (pos < length && isWhitespace(line.charAt(pos))) pos++;
+        final boolean indented = pos > 0;
+
+        // First token: the reobfuscated name
+        reobfStart = pos;
+        while (pos < length && isNameChar(line.charAt(pos))) pos++;
+        reobfEnd = pos;
+        if (reobfEnd == reobfStart || pos == length || line.charAt(pos) != ' ') return LineType.UNKNOWN;
+        pos++;
+
+        // Second token: either the SRG/value name, or the method signature
+        final int secondStart = pos;
+        while (pos < length && line.charAt(pos) != ' ') pos++;
+        final int secondEnd = pos;
+        if (secondEnd == secondStart) return LineType.UNKNOWN;
+
+        if (pos == length) { // Two tokens: class header, field or enum value
+            if (!isName(line, secondStart, secondEnd)) return LineType.UNKNOWN;
+            nameStart = secondStart;
+            nameEnd = secondEnd;
+            if (!indented) return LineType.CLASS;
+            return scanID(line, "field_", secondStart, secondEnd) ? LineType.FIELD : LineType.ENUM_VALUE;
+        }
+        pos++;
+
+        // Third token: the method name
+        final int thirdStart = pos;
+        while (pos < length && isNameChar(line.charAt(pos))) pos++;
+        if (pos != length || pos == thirdStart) return LineType.UNKNOWN;
+        signatureStart = secondStart;
+        signatureEnd = secondEnd;
+        nameStart = thirdStart;
+        nameEnd = pos;
+        return scanID(line, "func_", thirdStart, pos) ? LineType.NUMBERED_METHOD : LineType.NAMED_METHOD;
+    }
+
+    /**
+     * Checks if the given name is of the form {@code <prefix><digits>_<name>}, and if so, stores the numeric ID. An ID
+     * which overflows an {@code int} is flagged instead of stored.
+     */
+    private boolean scanID(String line, String prefix, int start, int end) {
+        if (!line.startsWith(prefix, start)) return false;
+        int pos = start + prefix.length();
+        long value = 0;
+        final int digitsStart = pos;
+        while (pos < end) {
+            final char ch = line.charAt(pos);
+            if (ch < '0' || ch > '9') break;
+            if (value <= Integer.MAX_VALUE) value = value * 10 + (ch - '0'); // Stops growing once it overflows
+            pos++;
+        }
+        // Requires at least one digit, then an underscore followed by at least one more name character
+        if (pos == digitsStart || pos + 1 >= end || line.charAt(pos) != '_') return false;
+        if (value > Integer.MAX_VALUE) {
+            idOverflow = true;
+        } else {
+            id = (int) value;
+        }
+        return true;
+    }
+
+    private static boolean isName(String line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isNameChar(line.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Matches the {@code \s} character class used by the TSRG patterns.
+     */
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+
+    /**
+     * Matches the {@code [$\w/]} character class used by the TSRG patterns.
+     */
+    private static boolean isNameChar(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+            || ch == '_' || ch == '$' || ch == '/';
+    }
+
+    private LineType fallback() {
+        Matcher matcher = TSRG_CLASS_HEADER.matcher(line);
+        if (matcher.matches()) {
+            return capture(matcher, "srg", LineType.CLASS);
+        }
+        matcher = TSRG_FIELD.matcher(line);
+        if (matcher.matches()) {
+            if (!captureID(matcher)) return LineType.UNKNOWN;
+            return capture(matcher, "srg", LineType.FIELD);
+        }
+        matcher = TSRG_ENUM_VALUE.matcher(line);
+        if (matcher.matches()) {
+            return capture(matcher, "value", LineType.ENUM_VALUE);
+        }
+        matcher = TSRG_NUMBERED_METHOD.matcher(line);
+        if (matcher.matches()) {
+            if (!captureID(matcher)) return LineType.UNKNOWN;
+            captureSignature(matcher);
+            return capture(matcher, "srg", LineType.NUMBERED_METHOD);
+        }
+        matcher = TSRG_NAMED_METHOD.matcher(line);
+        if (matcher.matches()) {
+            captureSignature(matcher);
+            return capture(matcher, "deobf", LineType.NAMED_METHOD);
+        }
+        return LineType.UNKNOWN;
+    }
+
+    private LineType capture(Matcher matcher, String nameGroup, LineType type) {
+        reobfStart = matcher.start("reobf");
+        reobfEnd = matcher.end("reobf");
+        nameStart = matcher.start(nameGroup);
+        nameEnd = matcher.end(nameGroup);
+        return type;
+    }
+
+    private boolean captureID(Matcher matcher) {
+        try {
+            id = Integer.parseInt(matcher.group("id"));
+            return true;
+        } catch (NumberFormatException e) {
+            return false; // Too large for an SRG ID
+        }
+    }
+
+    private void captureSignature(Matcher matcher) {
+        signatureStart = matcher.start("signature");
+        signatureEnd = matcher.end("signature");
+    }
+}
@@ -3,27 +3,77 @@ package tk.sciwhiz12.cartographer.util;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import tk.sciwhiz12.cartographer.srg.SRGEntry;
 
+import java.util.function.Function;
+
 public class AccessTransformers {
+    public static final String PUBLIC = "public";
+
     private AccessTransformers() {}
 
     @Nullable
     public static String makeFor(SRGEntry entry, @Nullable String mcpName) {
-        if (mcpName != null) mcpName = " # " + mcpName;
-        else mcpName = "";
-        if (entry instanceof SRGEntry.Class clz) {
-            return "public %s".formatted(clz.srgName());
+        return makeFor(PUBLIC, entry, mcpName, AccessTransformers::dottedName);
+    }
+
+    /**
+     * Makes the access transformer line for the entry, or null for entries which cannot be transformed.
+     *
+     * @param classNames the dotted name of each class, which callers making many lines may cache
+     */
+    @Nullable
+    public static String makeFor(String access, SRGEntry entry, @Nullable String mcpName,
+        Function<SRGEntry.Class, String> classNames) {
+        final String member = memberFor(entry);
+        if (member == null) return null;
+        final SRGEntry.Class clz = entry instanceof SRGEntry.ClassMember classMember
+            ? classMember.parentClass()
+            : (SRGEntry.Class) entry;
+        // Only the names of numbered entries differ from their MCP names
+        final boolean numbered = entry instanceof SRGEntry.Field || entry instanceof SRGEntry.NumberedMethod;
+        return write(access, classNames.apply(clz), member, numbered ? mcpName : null);
+    }
+
+    /**
+     * The member part of the access transformer line for the entry: empty for classes, the name for fields and the
+     * name and signature for methods. Returns null for entries which cannot be transformed.
+     */
+    @Nullable
+    public static String memberFor(SRGEntry entry) {
+        if (entry instanceof SRGEntry.Class) {
+            return "";
         } else if (entry instanceof SRGEntry.Field field) {
-            return "public %s %s".formatted(field.parentClass().srgName().replace('/', '.'), field.srgName()) + mcpName;
+            return field.srgName();
+        } else if (entry instanceof SRGEntry.EnumValue value) {
+            return value.valueName();
         } else if (entry instanceof SRGEntry.NamedMethod method) {
-            return "public %s %s%s"
-                .formatted(method.parentClass().srgName().replace('/', '.'), method.deobfName(), method.methodSignature());
+            return method.deobfName() + method.methodSignature();
         } else if (entry instanceof SRGEntry.NumberedMethod method) {
-            return "public %s %s%s".formatted(method.parentClass().srgName().replace('/', '.'), method.srgName(),
-                method.methodSignature()) + mcpName;
+            return method.srgName() + method.methodSignature();
         } else if (entry instanceof SRGEntry.Constructor constructor) {
-            return "public %s <init>%s"
-                .formatted(constructor.parentClass().srgName().replace('/', '.'), constructor.methodSignature());
+            return "<init>" + constructor.methodSignature();
         }
         return null;
     }
+
+    /**
+     * Writes an access transformer line.
+     *
+     * @param member  the member, or empty for the class itself
+     * @param comment the comment, usually the MCP name of the member
+     */
+    public static String write(String access, String className, String member, @Nullable String comment) {
+        final StringBuilder line = new StringBuilder(access.length() + className.length() + member.length()
+            + (comment != null ? comment.length() + 4 : 0) + 2);
+        line.append(access).append(' ').append(className);
+        if (!member.isEmpty()) line.append(' ').append(member);
+        if (comment != null) line.append(" # ").append(comment);
+        return line.toString();
+    }
+
+    /**
+     * The name of the class in binary form ({@code a.b.C$D}), as access transformers name classes.
+     */
+    public static String dottedName(SRGEntry.Class clz) {
+        return clz.srgName().replace('/', '.');
+    }
 }
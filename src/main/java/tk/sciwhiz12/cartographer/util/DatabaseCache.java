@@ -0,0 +1,155 @@
+package tk.sciwhiz12.cartographer.util;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static tk.sciwhiz12.cartographer.util.Logging.logf;
+
+/**
+ * A directory of database files, each named after the digest of the input files it was imported from.
+ *
+ * <p>An entry is only reused when its inputs are unchanged, so several versions can be kept side by side. Entries are
+ * written to a temporary file and moved into place, so an interrupted export never leaves a truncated entry behind.
+ * Once the directory grows past its size limit, the least recently used entries are deleted.</p>
+ */
+public final class DatabaseCache {
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxSize;
+
+    public DatabaseCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Streams the given files through a 128-bit Murmur3 digest. The file names and sizes are included, so moving
+     * content between the inputs changes the digest.
+     */
+    public static HashCode digest(Path... inputs) throws IOException {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        try (OutputStream sink = Funnels.asOutputStream(hasher)) {
+            for (Path input : inputs) {
+                hasher.putUnencodedChars(input.getFileName().toString()).putLong(Files.size(input));
+                try (InputStream in = Files.newInputStream(input)) {
+                    ByteStreams.copy(in, sink);
+                }
+            }
+        }
+        return hasher.hash();
+    }
+
+    public Path entry(String kind, HashCode digest, String extension) {
+        return directory.resolve(kind + '-' + digest + '.' + extension);
+    }
+
+    /**
+     * Returns the entry if it exists, marking it as recently used.
+     */
+    @Nullable
+    public Path lookup(String kind, HashCode digest, String extension) throws IOException {
+        final Path entry = entry(kind, digest, extension);
+        if (!Files.isRegularFile(entry)) return null;
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        return entry;
+    }
+
+    /**
+     * Returns the digest of the most recently used entry of the given kind and extension, if there is any.
+     */
+    @Nullable
+    public HashCode latest(String kind, String extension) throws IOException {
+        if (!Files.isDirectory(directory)) return null;
+        final String prefix = kind + '-';
+        final String suffix = '.' + extension;
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                    final String name = file.getFileName().toString();
+                    return name.startsWith(prefix) && name.endsWith(suffix);
+                })
+                .max(Comparator.comparing(DatabaseCache::lastModified))
+                .map(file -> {
+                    final String name = file.getFileName().toString();
+                    return HashCode.fromString(name.substring(prefix.length(), name.length() - suffix.length()));
+                })
+                .orElse(null);
+        }
+    }
+
+    /**
+     * Writes a new entry through the given writer, then evicts old entries if the cache is over its size limit.
+     */
+    public Path store(String kind, HashCode digest, String extension, EntryWriter writer) throws IOException {
+        Files.createDirectories(directory);
+        final Path entry = entry(kind, digest, extension);
+        final Path temporary = entry.resolveSibling(entry.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            writer.write(temporary);
+            Files.move(temporary, entry, ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict(entry);
+        return entry;
+    }
+
+    /**
+     * Deletes an entry which could not be read, so it is rebuilt on the next store.
+     */
+    public void invalidate(Path entry) throws IOException {
+        Files.deleteIfExists(entry);
+    }
+
+    private void evict(Path keep) throws IOException {
+        final List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(Files::isRegularFile)
+                .filter(file -> !file.getFileName().toString().endsWith(TEMPORARY_SUFFIX))
+                .collect(Collectors.toCollection(ArrayList::new));
+        }
+        final Comparator<Path> newestFirst = Comparator.comparing(DatabaseCache::lastModified).reversed();
+        entries.sort(newestFirst);
+
+        long size = 0;
+        for (Path entry : entries) {
+            final long entrySize = Files.size(entry);
+            if (size + entrySize > maxSize && !entry.equals(keep)) {
+                logf("Evicting cached database %s%n", entry.getFileName());
+                Files.deleteIfExists(entry);
+            } else {
+                size += entrySize;
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    public interface EntryWriter {
+        void write(Path file) throws IOException;
+    }
+}
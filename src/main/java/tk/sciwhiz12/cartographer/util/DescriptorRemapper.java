@@ -0,0 +1,64 @@
+package tk.sciwhiz12.cartographer.util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Remaps the class references ({@code L<name>;}) inside field and method descriptors, without regex.
+ *
+ * <p>The result is cached per distinct input descriptor, so repeated descriptors are only scanned once. The class
+ * remapper returns {@code null} for names which should be left as-is. Instances are thread-safe.</p>
+ */
+public final class DescriptorRemapper {
+    private final Function<String, @Nullable String> classRemapper;
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    public DescriptorRemapper(Function<String, @Nullable String> classRemapper) {
+        this.classRemapper = classRemapper;
+    }
+
+    public String remap(String descriptor) {
+        final String cached = cache.get(descriptor);
+        if (cached != null) return cached;
+        return cache.computeIfAbsent(descriptor, this::remapUncached);
+    }
+
+    /**
+     * Remaps a single internal class name, such as the owner of a member.
+     */
+    public String remapClass(String className) {
+        final String remapped = classRemapper.apply(className);
+        return remapped != null ? remapped : className;
+    }
+
+    public int cachedDescriptors() {
+        return cache.size();
+    }
+
+    private String remapUncached(String descriptor) {
+        final int length = descriptor.length();
+        int classStart = descriptor.indexOf('L');
+        if (classStart == -1) return descriptor; // Only primitives, nothing to remap
+
+        StringBuilder builder = null;
+        int copiedUpTo = 0;
+        while (classStart != -1) {
+            // Same as the METHOD_DESCRIPTOR__REFERENCE_TYPE pattern: 'L', at least one character, then ';'
+            final int classEnd = descriptor.indexOf(';', classStart + 2);
+            if (classEnd == -1) break;
+            final String name = descriptor.substring(classStart + 1, classEnd);
+            final String remapped = classRemapper.apply(name);
+            if (remapped != null && !remapped.equals(name)) {
+                if (builder == null) builder = new StringBuilder(length + 32);
+                builder.append(descriptor, copiedUpTo, classStart + 1).append(remapped);
+                copiedUpTo = classEnd;
+            }
+            classStart = descriptor.indexOf('L', classEnd + 1);
+        }
+        if (builder == null) return descriptor; // Unchanged, so share the original instance
+        return builder.append(descriptor, copiedUpTo, length).toString();
+    }
+}
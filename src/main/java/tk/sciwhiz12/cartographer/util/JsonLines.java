@@ -0,0 +1,62 @@
+package tk.sciwhiz12.cartographer.util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Appends JSON values to a builder, for output with one JSON object per line. Fields may only be appended inside an
+ * object or array which was opened on the same builder.
+ */
+public final class JsonLines {
+    private JsonLines() {}
+
+    /**
+     * Appends the name of a field, preceded by a comma unless it is the first in its object.
+     */
+    public static StringBuilder name(StringBuilder out, String name) {
+        separate(out);
+        return string(out, name).append(':');
+    }
+
+    /**
+     * Appends a string field, unless the value is null.
+     */
+    public static StringBuilder field(StringBuilder out, String name, @Nullable String value) {
+        return value != null ? string(name(out, name), value) : out;
+    }
+
+    public static StringBuilder field(StringBuilder out, String name, long value) {
+        return name(out, name).append(value);
+    }
+
+    public static StringBuilder field(StringBuilder out, String name, boolean value) {
+        return name(out, name).append(value);
+    }
+
+    /**
+     * Appends a comma unless the builder is at the start of an object or array.
+     */
+    public static StringBuilder separate(StringBuilder out) {
+        final char last = out.isEmpty() ? '{' : out.charAt(out.length() - 1);
+        return last == '{' || last == '[' ? out : out.append(',');
+    }
+
+    public static StringBuilder string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            switch (ch) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (ch < 0x20) out.append("\\u00").append(Character.forDigit(ch >> 4, 16))
+                        .append(Character.forDigit(ch & 0xF, 16));
+                    else out.append(ch);
+                }
+            }
+        }
+        return out.append('"');
+    }
+}
@@ -0,0 +1,56 @@
+package tk.sciwhiz12.cartographer.util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * Indices of a database which are built from its other components on the first lookup.
+ *
+ * <p>The indices are derived from the other components of the database, so they take no part in its equality: every
+ * instance is equal to every other.</p>
+ */
+public final class LazyIndex<T> implements Supplier<T> {
+    private final Supplier<T> factory;
+    @Nullable
+    private volatile T built;
+
+    public LazyIndex(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public T get() {
+        T value = built;
+        if (value == null) {
+            synchronized (this) {
+                value = built;
+                if (value == null) built = value = factory.get();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The indices, or null if they are not built yet.
+     */
+    @Nullable
+    public T getIfBuilt() {
+        return built;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof LazyIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LazyIndex[built=%s]".formatted(built != null);
+    }
+}
@@ -0,0 +1,107 @@
+package tk.sciwhiz12.cartographer.util;
+
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
+
+/**
+ * A parsed method descriptor, with the JVM local variable slot of each parameter precomputed for both static and
+ * instance methods.
+ *
+ * <p>Descriptors are not interned globally: each loaded database keeps a table of the descriptors of its methods, so
+ * each descriptor is parsed once per database and freed along with it.</p>
+ */
+public final class MethodDescriptor {
+    private final String descriptor;
+    private final ImmutableList<String> parameterTypes;
+    private final String returnType;
+    private final IntList staticSlots;
+    private final IntList instanceSlots;
+
+    private MethodDescriptor(String descriptor, ImmutableList<String> parameterTypes, String returnType,
+        int[] staticSlots, int[] instanceSlots) {
+        this.descriptor = descriptor;
+        this.parameterTypes = parameterTypes;
+        this.returnType = returnType;
+        this.staticSlots = IntLists.unmodifiable(IntArrayList.wrap(staticSlots));
+        this.instanceSlots = IntLists.unmodifiable(IntArrayList.wrap(instanceSlots));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the descriptor is malformed
+     */
+    public static MethodDescriptor parse(String descriptor) {
+        final int length = descriptor.length();
+        if (length == 0 || descriptor.charAt(0) != '(') {
+            throw new IllegalArgumentException("Method descriptor does not start with '(': " + descriptor);
+        }
+        final ImmutableList.Builder<String> types = ImmutableList.builder();
+        final IntList staticSlots = new IntArrayList(4);
+        final IntList instanceSlots = new IntArrayList(4);
+        // See JVM Spec section 4.3.3 for details of the parameter index/units
+        int slot = 0;
+        int pos = 1;
+        while (pos < length && descriptor.charAt(pos) != ')') {
+            final int start = pos;
+            while (pos < length && descriptor.charAt(pos) == '[') pos++;
+            if (pos == length) break;
+            final char type = descriptor.charAt(pos);
+            if (type == 'L') {
+                pos = descriptor.indexOf(';', pos);
+                if (pos == -1) throw new IllegalArgumentException("Unterminated class type in descriptor: " + descriptor);
+            } else if ("BCDFIJSZ".indexOf(type) == -1) {
+                throw new IllegalArgumentException("Unknown type '" + type + "' in descriptor: " + descriptor);
+            }
+            pos++;
+            types.add(descriptor.substring(start, pos));
+            staticSlots.add(slot);
+            instanceSlots.add(slot + 1);
+            // Only non-array longs and doubles take up two slots
+            slot += pos - start == 1 && (type == 'J' || type == 'D') ? 2 : 1;
+        }
+        if (pos >= length - 1) {
+            throw new IllegalArgumentException("Missing return type in descriptor: " + descriptor);
+        }
+        return new MethodDescriptor(descriptor, types.build(), descriptor.substring(pos + 1),
+            staticSlots.toIntArray(), instanceSlots.toIntArray());
+    }
+
+    public String descriptor() {
+        return descriptor;
+    }
+
+    public ImmutableList<String> parameterTypes() {
+        return parameterTypes;
+    }
+
+    public int parameterCount() {
+        return parameterTypes.size();
+    }
+
+    public String returnType() {
+        return returnType;
+    }
+
+    /**
+     * The local variable slot of each parameter, in order. Instance methods start at slot 1, after {@code this}.
+     */
+    public IntList parameterSlots(boolean isStatic) {
+        return isStatic ? staticSlots : instanceSlots;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj instanceof MethodDescriptor other && descriptor.equals(other.descriptor);
+    }
+
+    @Override
+    public int hashCode() {
+        return descriptor.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return descriptor;
+    }
+}
@@ -5,40 +5,6 @@ import java.util.regex.Pattern;
 import static java.util.regex.Pattern.compile;
 
 public final class Patterns {
-    /*
-      ^                                                    - match start of string
-       (?:func|field)                                      - match either literal 'func' or 'field' {non-capturing group}
-                     _                                     - match literal '_' (underscore)
-                      (\d+)                                - match 1 or more digits {group 1}
-                           _                               - match literal '_' (underscore)
-                            [$\w/]+?                       - lazily match 1 or more of [$ (dollar sign), any word character,
-                                                                                        / (forward slash)]
-                                    _??                    - lazily match 0 or 1 of literal '_' (underscore)
-                                       ,                   - match literal ',' (comma)
-                                        (.+?)              - lazily match 1 or more of any character except newline {group 2}
-                                             ,             - match literal ',' (comma)
-                                              (.+?)        - lazily match 1 or more of any character except newline {group 3}
-                                                   ,       - match literal ',' (comma)
-                                                    (.*)   - match 0 or more of any character except newline {group 4}
-                                                        $  - match end of string
-     */
-    public static final Pattern CSV = compile("^(?:func|field)_(\\d+)_[$\\w/]+?_??,(.+?),(.+?),(.*)$");
-    /*
-      ^                                     - match start of string
-       p_                                   - match literal 'p_'
-         (i??)                              - lazily match 0 or 1 of literal 'i' {group 1}
-              (\d+?)                        - lazily match 1 or more digits {group 2}
-                    _                       - match literal '_' (underscore)
-                     (\d+?)                 - lazily match 1 or more digits {group 3}
-                           _??              - lazily match 0 or 1 of literal '_' (underscore)
-                              ,             - match literal ',' (comma)
-                               (.+?)        - lazily match 1 or more of any character except newline {group 4}
-                                    ,       - match literal ',' (comma)
-                                     (\d)   - match any digit {group 5}
-                                         $  - match end of string
-     */
-    public static final Pattern PARAM_CSV = compile("^p_(i??)(\\d+?)_(\\d+?)_??,(.+?),(\\d)$");
-
     /*
       ^                                    - match start of string
        (?<reobf>[$\w/]+)                   - match 1 or more of: [$ (dollar sign), any word character,
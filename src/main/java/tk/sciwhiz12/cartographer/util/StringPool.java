@@ -0,0 +1,71 @@
+package tk.sciwhiz12.cartographer.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent deduplication pool for strings, used while loading the databases.
+ *
+ * <p>Unlike {@link String#intern()}, the pool is an ordinary object: once loading is done, it can be dropped and only
+ * the deduplicated strings stay reachable from the loaded entries.</p>
+ */
+public final class StringPool {
+    // Estimated shallow size of a String (header, hash, coder, value reference) and of a byte array header
+    private static final int STRING_SHALLOW_SIZE = 24;
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    private final Map<String, String> pool;
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    public StringPool() {
+        this(16384);
+    }
+
+    public StringPool(int expectedSize) {
+        this.pool = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    public String intern(String str) {
+        final String existing = pool.putIfAbsent(str, str);
+        if (existing == null) return str;
+        if (existing != str) {
+            deduplicated.increment();
+            savedBytes.add(estimateSize(str));
+        }
+        return existing;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+    public long deduplicated() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * The estimated number of heap bytes taken by the duplicate strings which were replaced by a pooled instance.
+     */
+    public long savedBytes() {
+        return savedBytes.sum();
+    }
+
+    public String statistics() {
+        return "%d unique strings, %d duplicates replaced, ~%d KiB saved"
+            .formatted(size(), deduplicated(), savedBytes() / 1024);
+    }
+
+    /**
+     * Estimates the heap bytes taken by a string and its value array.
+     */
+    public static long estimateSize(String str) {
+        boolean latin1 = true;
+        for (int i = 0; i < str.length() && latin1; i++) {
+            latin1 = str.charAt(i) <= 0xFF;
+        }
+        final long valueSize = ARRAY_HEADER_SIZE + (long) str.length() * (latin1 ? 1 : 2);
+        return STRING_SHALLOW_SIZE + ((valueSize + 7) & ~7); // Objects are aligned to 8 bytes
+    }
+}
@@ -0,0 +1,155 @@
+package tk.sciwhiz12.cartographer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tk.sciwhiz12.cartographer.mcp.MCPDatabase;
+import tk.sciwhiz12.cartographer.srg.SRGDatabase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryServerTest {
+    private QueryServer server;
+
+    @Before
+    public void start() throws IOException {
+        final SRGDatabase srg = SRGDatabase.parse(List.of(
+            "a net/minecraft/Example",
+            "\ta field_1001_a",
+            "\tb ()Z func_1002_b"
+        ), List.of("func_1002_b"), List.of());
+        final MCPDatabase mcp = MCPDatabase.parse(
+            List.of("searge,name,side,desc", "field_1001_a,exampleField,2,"),
+            List.of("searge,name,side,desc", "func_1002_b,isExample,2,"),
+            List.of("param,name,side"));
+        final MappingReloader.Mappings mappings = new MappingReloader.Mappings(srg, mcp, null);
+        server = QueryServer.start(() -> mappings, 0, 2);
+    }
+
+    @After
+    public void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void answersPipelinedQueriesInOrder() throws IOException {
+        final StringBuilder queries = new StringBuilder();
+        for (int id = 0; id < 2000; id++) queries.append(id).append('\n');
+        queries.append("id 1001\n");
+
+        try (Socket socket = connect()) {
+            send(socket, queries.toString());
+            final BufferedReader answers = reader(socket);
+            for (int id = 0; id < 2000; id++) {
+                final String answer = answers.readLine();
+                if (id == 1001 || id == 1002) {
+                    assertTrue(answer, answer.startsWith("{\"type\":") && answer.contains("\"id\":" + id + ','));
+                } else {
+                    assertEquals("{\"id\":" + id + ",\"found\":false}", answer);
+                }
+            }
+            final String field = answers.readLine();
+            assertTrue(field, field.contains("\"srg\":\"field_1001_a\"") && field.contains("\"mcp\":\"exampleField\""));
+            assertNull(answers.readLine());
+        }
+    }
+
+    @Test
+    public void answersOverlongQueryWithError() throws IOException {
+        try (Socket socket = connect()) {
+            // Exactly fills the read buffer without a line break, so the server reads everything that was sent
+            send(socket, "1001\n" + "a".repeat(64 * 1024));
+            final BufferedReader answers = reader(socket);
+            assertTrue(answers.readLine().contains("\"id\":1001,"));
+            assertEquals("{\"error\":\"query is longer than 65536 bytes\"}", answers.readLine());
+            assertNull(answers.readLine());
+        }
+    }
+
+    @Test
+    public void answersMalformedQueriesWithErrors() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "frobnicate 12\nid twelve\n1002\n");
+            final BufferedReader answers = reader(socket);
+            assertEquals("{\"query\":\"frobnicate 12\",\"error\":\"unknown query\"}", answers.readLine());
+            assertEquals("{\"query\":\"id twelve\",\"error\":\"not an SRG ID: twelve\"}", answers.readLine());
+            assertTrue(answers.readLine().contains("\"srg\":\"func_1002_b\""));
+            assertNull(answers.readLine());
+        }
+    }
+
+    @Test
+    public void stopsReadingWhileAnswersAreNotRead() throws IOException, InterruptedException {
+        // Each answer is much longer than its query, so the answers would fill the heap if they were not bounded
+        final ByteBuffer queries = ByteBuffer.wrap("1001\n".repeat(16 * 1024).getBytes(UTF_8));
+        final long limit = 64L * 1024 * 1024;
+        long sent = 0;
+        try (SocketChannel channel = SocketChannel.open()) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 64 * 1024);
+            channel.connect(server.address());
+            channel.configureBlocking(false);
+
+            // Sends without reading until the server stops reading, which stalls the writes
+            long lastProgress = System.nanoTime();
+            while (System.nanoTime() - lastProgress < TimeUnit.MILLISECONDS.toNanos(500)) {
+                final int written = channel.write(queries);
+                if (!queries.hasRemaining()) queries.rewind();
+                if (written > 0) {
+                    sent += written;
+                    lastProgress = System.nanoTime();
+                } else {
+                    Thread.sleep(10);
+                }
+                assertTrue("server kept reading " + sent + " bytes of queries", sent < limit);
+            }
+            final long answeredWhileStalled = server.answered();
+            Thread.sleep(200);
+            assertEquals(answeredWhileStalled, server.answered());
+
+            // Once the client reads, every query sent is answered
+            channel.shutdownOutput();
+            channel.configureBlocking(true);
+            final long queryCount = sent / 5 + (sent % 5 != 0 ? 1 : 0);
+            final BufferedReader answers = new BufferedReader(Channels.newReader(channel, UTF_8));
+            long answerCount = 0;
+            String answer;
+            while ((answer = answers.readLine()) != null) {
+                if (answerCount++ == 0) assertTrue(answer, answer.contains("\"id\":1001,"));
+            }
+            assertEquals(queryCount, answerCount);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(server.address().getAddress(), server.address().getPort());
+    }
+
+    /**
+     * Sends the queries and ends the input, so the server closes the connection once it has answered them.
+     */
+    private static void send(Socket socket, String queries) throws IOException {
+        final OutputStream output = socket.getOutputStream();
+        output.write(queries.getBytes(UTF_8));
+        output.flush();
+        socket.shutdownOutput();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+    }
+}
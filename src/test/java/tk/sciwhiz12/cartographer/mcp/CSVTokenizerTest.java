@@ -0,0 +1,55 @@
+package tk.sciwhiz12.cartographer.mcp;
+
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVTokenizerTest {
+    private static final String CSV = String.join("\n",
+        "searge,name,side,desc",
+        "field_1_a,first,0,A \"stray\" quote in an unquoted column",
+        "field_2_b,second,0,\"A quoted column,",
+        "over two lines\"",
+        "field_3_c,third,1,\"Doubled \"\"quotes\"\"",
+        "and a line break\"",
+        "field_4_d,fourth,2,Trailing quote\"",
+        "",
+        "field_9_i,ninth,0,\"After the stray quote,",
+        "over two lines\"",
+        "field_5_e,fifth,0,\"\"",
+        "field_6_f,sixth,0,\"Closed\" with trailing text",
+        "field_7_g,seventh,0,Plain\r",
+        "field_8_h,eighth,0,Last");
+
+    @Test
+    public void chunksReadTheSameRowsAsTheWholeFile() {
+        final List<List<String>> expected = rows(CSV, 0, CSV.length());
+        assertEquals(10, expected.size());
+        assertEquals("A \"stray\" quote in an unquoted column", expected.get(1).get(3));
+        assertEquals("Doubled \"quotes\"\nand a line break", expected.get(3).get(3));
+        assertEquals("After the stray quote,\nover two lines", expected.get(5).get(3));
+        assertEquals("Plain", expected.get(8).get(3));
+
+        for (int chunkSize = 1; chunkSize <= CSV.length(); chunkSize++) {
+            final IntList bounds = CSVTokenizer.splitRows(CSV, 0, chunkSize);
+            final List<List<String>> rows = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.size(); i++) rows.addAll(rows(CSV, bounds.getInt(i), bounds.getInt(i + 1)));
+            assertEquals("Chunks of " + chunkSize + " at " + bounds, expected, rows);
+        }
+    }
+
+    private static List<List<String>> rows(String csv, int start, int end) {
+        final CSVTokenizer tokenizer = new CSVTokenizer(csv, start, end);
+        final List<List<String>> rows = new ArrayList<>();
+        while (tokenizer.next()) {
+            final List<String> row = new ArrayList<>();
+            for (int column = 0; column < tokenizer.columns(); column++) row.add(tokenizer.get(column));
+            rows.add(row);
+        }
+        return rows;
+    }
+}
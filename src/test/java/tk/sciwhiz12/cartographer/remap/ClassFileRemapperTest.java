@@ -0,0 +1,180 @@
+package tk.sciwhiz12.cartographer.remap;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ClassFileRemapperTest {
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static final String EXAMPLE = """
+        package example;
+
+        import java.util.function.IntSupplier;
+        import java.util.function.Supplier;
+
+        public class Example implements IntSupplier, Supplier<String> {
+            private int value = 20;
+
+            @Override
+            public int getAsInt() {
+                final IntSupplier doubled = () -> Helper.twice(value);
+                return doubled.getAsInt() + Helper.twice(1);
+            }
+
+            @Override
+            public String get() {
+                return "value"; // Shares its pool entry with the field name
+            }
+        }
+        """;
+    private static final String HELPER = """
+        package example;
+
+        class Helper {
+            static int twice(int value) {
+                return value * 2;
+            }
+        }
+        """;
+
+    private static final Map<String, String> CLASSES = Map.of(
+        "example/Example", "remapped/Renamed",
+        "example/Helper", "remapped/Doubler");
+    private static final Map<String, String> MEMBERS = Map.of(
+        "example/Example.value", "count",
+        "example/Helper.twice", "apply");
+
+    private static final Map<String, byte[]> classFiles = new HashMap<>();
+
+    @BeforeClass
+    public static void compile() throws IOException {
+        final Path sources = FOLDER.newFolder("src").toPath();
+        final Path output = FOLDER.newFolder("classes").toPath();
+        final Path example = Files.writeString(sources.resolve("Example.java"), EXAMPLE);
+        final Path helper = Files.writeString(sources.resolve("Helper.java"), HELPER);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, "-d", output.toString(), example.toString(), helper.toString()));
+        for (String name : CLASSES.keySet()) classFiles.put(name, Files.readAllBytes(output.resolve(name + ".class")));
+    }
+
+    @Test
+    public void remappedClassesLoadAndRun() throws ReflectiveOperationException {
+        final Map<String, byte[]> remapped = remapAll(classFiles, new MapNames(CLASSES, MEMBERS));
+        final Class<?> renamed = new ClassFilesLoader(remapped).loadClass("remapped.Renamed");
+        assertEquals("count", renamed.getDeclaredField("count").getName());
+
+        final Object instance = renamed.getConstructor().newInstance();
+        assertEquals(42, ((IntSupplier) instance).getAsInt());
+        assertEquals("value", ((Supplier<?>) instance).get());
+        assertEquals("apply", renamed.getClassLoader().loadClass("remapped.Doubler")
+            .getDeclaredMethod("apply", int.class).getName());
+        assertArrayEquals(new String[]{"remapped/Renamed", "java/lang/Object", "java/util/function/IntSupplier",
+            "java/util/function/Supplier"}, ClassFileRemapper.readHierarchy(remapped.get("remapped/Renamed")));
+    }
+
+    @Test
+    public void remappingBackRestoresTheNames() throws ReflectiveOperationException {
+        final Map<String, byte[]> remapped = remapAll(classFiles, new MapNames(CLASSES, MEMBERS));
+        final Map<String, String> classes = new HashMap<>();
+        CLASSES.forEach((from, to) -> classes.put(to, from));
+        final Map<String, String> members = new HashMap<>();
+        MEMBERS.forEach((from, to) -> {
+            final String owner = from.substring(0, from.indexOf('.'));
+            members.put(CLASSES.get(owner) + '.' + to, from.substring(from.indexOf('.') + 1));
+        });
+        final Map<String, byte[]> restored = remapAll(remapped, new MapNames(classes, members));
+        assertEquals(classFiles.keySet(), restored.keySet());
+
+        final Class<?> example = new ClassFilesLoader(restored).loadClass("example.Example");
+        example.getDeclaredField("value");
+        final Object instance = example.getConstructor().newInstance();
+        assertEquals(42, ((IntSupplier) instance).getAsInt());
+        assertEquals("value", ((Supplier<?>) instance).get());
+    }
+
+    @Test
+    public void unchangedClassIsReturnedAsIs() {
+        final byte[] helper = classFiles.get("example/Helper");
+        assertSame(helper, ClassFileRemapper.remap(helper, new MapNames(Map.of(), Map.of())));
+        assertNotSame(helper, ClassFileRemapper.remap(helper, new MapNames(CLASSES, MEMBERS)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedClassFile() {
+        final byte[] example = classFiles.get("example/Example");
+        ClassFileRemapper.remap(Arrays.copyOf(example, example.length / 2), new MapNames(CLASSES, MEMBERS));
+    }
+
+    private static Map<String, byte[]> remapAll(Map<String, byte[]> classFiles, MapNames names) {
+        final Map<String, byte[]> remapped = new HashMap<>();
+        classFiles.forEach((name, bytes) -> remapped.put(names.mapClass(name), ClassFileRemapper.remap(bytes, names)));
+        return remapped;
+    }
+
+    private record MapNames(Map<String, String> classes, Map<String, String> members)
+        implements ClassFileRemapper.Names {
+        private static final Pattern CLASS_TYPE = Pattern.compile("L([^;<]+)([;<])");
+
+        @Override
+        public String mapClass(String internalName) {
+            return classes.getOrDefault(internalName, internalName);
+        }
+
+        @Override
+        public String mapDescriptor(String descriptor) {
+            final Matcher matcher = CLASS_TYPE.matcher(descriptor);
+            return matcher.replaceAll(result -> Matcher.quoteReplacement(
+                'L' + mapClass(result.group(1)) + result.group(2)));
+        }
+
+        @Override
+        public String mapField(String owner, String name, String descriptor) {
+            return members.getOrDefault(owner + '.' + name, name);
+        }
+
+        @Override
+        public String mapMethod(String owner, String name, String descriptor) {
+            return members.getOrDefault(owner + '.' + name, name);
+        }
+    }
+
+    /**
+     * Defines the classes from their class files, which verifies them.
+     */
+    private static final class ClassFilesLoader extends ClassLoader {
+        private final Map<String, byte[]> classFiles;
+
+        ClassFilesLoader(Map<String, byte[]> classFiles) {
+            super(ClassFileRemapperTest.class.getClassLoader());
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final byte[] classFile = classFiles.get(name.replace('.', '/'));
+            if (classFile == null) throw new ClassNotFoundException(name);
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MappedSRGDatabaseTest {
+    private static final SRGDatabase DATABASE = SRGDatabase.parse(List.of(
+        "a net/minecraft/Alpha",
+        "\ta field_1001_a",
+        "\tb (Lb;)V func_1002_b",
+        "\tc (JI)V func_1003_c",
+        "b net/minecraft/Beta",
+        "\ta field_2001_a"
+    ), List.of("func_1003_c"), List.of("3001 net/minecraft/Alpha (I)V"));
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mappedDatabaseAnswersLikeTheDatabase() throws IOException {
+        final Path file = folder.newFile().toPath();
+        MappedSRGDatabase.write(DATABASE, file);
+        final MappedSRGDatabase mapped = MappedSRGDatabase.open(file);
+        assertEquals(2, mapped.classCount());
+        assertEquals(5, mapped.entryCount());
+        for (int id : new int[]{1001, 1002, 1003, 2001, 3001}) {
+            assertEquals(DATABASE.getEntryForID(id), mapped.getEntryForID(id));
+            assertEquals(DATABASE.getParametersForMethod(id), mapped.getParametersForMethod(id));
+        }
+        assertNull(mapped.getEntryForID(1004));
+    }
+
+    @Test
+    public void truncatedDatabaseIsRejectedOnOpen() throws IOException {
+        final Path file = folder.newFile().toPath();
+        MappedSRGDatabase.write(DATABASE, file);
+        final byte[] written = Files.readAllBytes(file);
+        // The string heap is not checked until it is read, so only cut into the tables
+        final int stringHeap = ByteBuffer.wrap(written).getInt(24);
+        for (int length = 0; length < stringHeap; length++) {
+            Files.write(file, Arrays.copyOf(written, length));
+            try {
+                MappedSRGDatabase.open(file);
+                fail("Opened a database truncated to " + length + " bytes");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+}
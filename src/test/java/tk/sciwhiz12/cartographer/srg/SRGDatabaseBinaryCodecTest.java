@@ -0,0 +1,91 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import org.junit.Test;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SRGDatabaseBinaryCodecTest {
+    private static final SRGDatabase DATABASE = SRGDatabase.parse(List.of(
+        "a net/minecraft/Alpha",
+        "\ta field_1001_a",
+        "\tb (Lb;)V func_1002_b",
+        "\tc ()V func_1003_c",
+        "\td ()Ljava/lang/String; toString",
+        "b net/minecraft/Beta",
+        "\tA RED",
+        "\tB GREEN"
+    ), List.of("func_1003_c"), List.of("3001 net/minecraft/Alpha (I)V"));
+
+    @Test
+    public void writtenDatabaseIsReadBack() throws IOException {
+        final SRGDatabase read = SRGDatabaseBinaryCodec.read(ByteBuffer.wrap(write()), new StringPool());
+        assertEquals(List.copyOf(DATABASE.classes().keySet()), List.copyOf(read.classes().keySet()));
+        assertEquals(DATABASE.classes(), read.classes());
+        assertEquals(DATABASE.fields(), read.fields());
+        assertEquals(DATABASE.enumValues(), read.enumValues());
+        assertEquals(DATABASE.numberedMethods(), read.numberedMethods());
+        assertEquals(DATABASE.namedMethods(), read.namedMethods());
+        assertEquals(DATABASE.constructors(), read.constructors());
+        assertEquals(DATABASE.descriptors(), read.descriptors());
+    }
+
+    @Test
+    public void truncatedDatabaseIsRejected() throws IOException {
+        final byte[] written = write();
+        for (int length = 0; length < written.length; length++) {
+            assertCorrupt(Arrays.copyOf(written, length));
+        }
+    }
+
+    @Test
+    public void corruptCountsAreRejected() {
+        // Magic, version 2, then a string count of -1, an overlong varint, and a count past the end of the file
+        assertCorrupt(new byte[]{0x43, 0x53, 0x52, 0x47, 2, -1, -1, -1, -1, 0x0F});
+        assertCorrupt(new byte[]{0x43, 0x53, 0x52, 0x47, 2, -1, -1, -1, -1, -1, -1, 0});
+        assertCorrupt(new byte[]{0x43, 0x53, 0x52, 0x47, 2, 100, 0, 0});
+        // One string with a length of -1
+        assertCorrupt(new byte[]{0x43, 0x53, 0x52, 0x47, 2, 1, -1, -1, -1, -1, 0x0F});
+        // One empty string, then two classes with the same names, and a field of a class that does not exist
+        assertCorrupt(new byte[]{0x43, 0x53, 0x52, 0x47, 2, 1, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        assertCorrupt(new byte[]{0x43, 0x53, 0x52, 0x47, 2, 1, 0, 0, 1, 1, 0, 0, 5, 0, 0, 0, 0});
+    }
+
+    @Test
+    public void everyCorruptByteIsRejectedOrRead() throws IOException {
+        final byte[] written = write();
+        for (int i = 0; i < written.length; i++) {
+            for (byte value : new byte[]{-1, 0, 1, 0x7F}) {
+                final byte[] corrupt = written.clone();
+                corrupt[i] = value;
+                try {
+                    SRGDatabaseBinaryCodec.read(ByteBuffer.wrap(corrupt), new StringPool());
+                } catch (IOException e) {
+                    // Expected for most bytes
+                }
+            }
+        }
+    }
+
+    private static byte[] write() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SRGDatabaseBinaryCodec.write(DATABASE, output);
+        return output.toByteArray();
+    }
+
+    private static void assertCorrupt(byte[] bytes) {
+        try {
+            SRGDatabaseBinaryCodec.read(ByteBuffer.wrap(bytes), new StringPool());
+            fail("Read a corrupt database: " + Arrays.toString(bytes));
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
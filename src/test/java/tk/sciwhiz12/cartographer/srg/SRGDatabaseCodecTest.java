@@ -0,0 +1,39 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import org.junit.Test;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SRGDatabaseCodecTest {
+    private static final SRGDatabase DATABASE = SRGDatabase.parse(List.of(
+        "a net/minecraft/Alpha",
+        "\ta field_1001_a",
+        "\tb (Lb;)V func_1002_b",
+        "\tc ()V func_1003_c",
+        "\td ()Ljava/lang/String; toString",
+        "b net/minecraft/Beta",
+        "\tA RED",
+        "\tB GREEN"
+    ), List.of("func_1003_c"), List.of("3001 net/minecraft/Alpha (I)V"));
+
+    @Test
+    public void writtenLinesMatchTheirSectionPatterns() throws IOException {
+        final StringBuilder written = new StringBuilder();
+        SRGDatabaseCodec.write(DATABASE, written, false);
+        final List<String> lines = written.toString().lines().toList();
+        assertEquals(lines, SRGDatabaseCodec.write(DATABASE));
+
+        final SRGDatabase read = SRGDatabaseCodec.read(lines, new StringPool());
+        assertEquals(List.copyOf(DATABASE.classes().keySet()), List.copyOf(read.classes().keySet()));
+        assertEquals(DATABASE.classes(), read.classes());
+        assertEquals(DATABASE.fields(), read.fields());
+        assertEquals(DATABASE.enumValues(), read.enumValues());
+        assertEquals(DATABASE.numberedMethods(), read.numberedMethods());
+        assertEquals(DATABASE.namedMethods(), read.namedMethods());
+        assertEquals(DATABASE.constructors(), read.constructors());
+    }
+}
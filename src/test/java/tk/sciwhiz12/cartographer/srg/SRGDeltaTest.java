@@ -0,0 +1,119 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import org.junit.Test;
+import tk.sciwhiz12.cartographer.util.StringPool;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SRGDeltaTest {
+    private static final List<String> STATICS = List.of("func_1004_d", "func_2002_b");
+    private static final List<String> CONSTRUCTORS = List.of("3001 net/minecraft/Alpha (Lnet/minecraft/Gamma;)V");
+
+    private static final List<String> BASE = List.of(
+        "a net/minecraft/Alpha",
+        "\ta field_1001_a",
+        "\tb (Lc;)V func_1002_b",
+        "\tc (Ld;)Lb; func_1003_c",
+        "\td ()V func_1004_d",
+        "b net/minecraft/Beta",
+        "\ta field_2001_a",
+        "\tb (I)Lb; func_2002_b",
+        "\tc ()V toString",
+        "c net/minecraft/Gamma",
+        "\tA RED",
+        "\tB GREEN"
+    );
+
+    private static final List<String> NEXT = List.of(
+        "e net/minecraft/Epsilon", // Added as the first class
+        "\ta field_5001_a",
+        "a net/minecraft/Alpha",
+        "\ta field_1001_a",
+        "\tb (Lc;)V func_1002_b",
+        "\tc (Ld;)Lb; func_1003_c", // Unchanged, but d is only mapped by the added class
+        "\td ()V func_1004_d",
+        "d net/minecraft/Delta", // Inserted between existing classes
+        "\ta (Lb;)Ld; func_4001_a",
+        "b net/minecraft/Beta", // Changed
+        "\ta field_2001_a",
+        "\tb (I)Lb; func_2002_b",
+        "\te (Le;)V func_2003_e",
+        "\tc ()V toString",
+        "c net/minecraft/Gamma",
+        "\tA RED",
+        "\tB GREEN"
+    );
+
+    @Test
+    public void updateMatchesFullParse() {
+        final SRGDatabase base = SRGDatabase.parse(BASE, STATICS, CONSTRUCTORS);
+        final SRGDelta delta = SRGDelta.between("base", SRGDelta.Fingerprint.of(BASE, ""), NEXT);
+        assertEquals(3, delta.blocks().size());
+        assertTrue(delta.canApplyTo(base));
+
+        final SRGDatabase updated = delta.applyTo(base, STATICS, CONSTRUCTORS, new StringPool());
+        final SRGDatabase full = SRGDatabase.parse(NEXT, STATICS, CONSTRUCTORS);
+        assertEquals(List.copyOf(full.classes().keySet()), List.copyOf(updated.classes().keySet()));
+        assertEquals(full.classes(), updated.classes());
+        assertEquals(full.fields(), updated.fields());
+        assertEquals(List.copyOf(full.fields().keySet()), List.copyOf(updated.fields().keySet()));
+        assertEquals(full.enumValues(), updated.enumValues());
+        assertEquals(full.numberedMethods(), updated.numberedMethods());
+        assertEquals(full.namedMethods(), updated.namedMethods());
+        assertEquals(full.constructors(), updated.constructors());
+        assertEquals(full.descriptors(), updated.descriptors());
+        assertEquals("(Lnet/minecraft/Delta;)Lnet/minecraft/Beta;",
+            updated.idIndex().getNumberedMethod(1003).methodSignature());
+        for (int id : List.of(1003, 2003, 3001, 4001, 5001)) {
+            assertEquals(full.idIndex().get(id), updated.idIndex().get(id));
+        }
+        assertEquals(full.nameIndex().size(), updated.nameIndex().size());
+        assertEquals(full.nameIndex().getMembersByReobfName("b", "e"),
+            updated.nameIndex().getMembersByReobfName("b", "e"));
+        assertEquals(full.nameIndex().getClassesByReobfName("d"), updated.nameIndex().getClassesByReobfName("d"));
+    }
+
+    @Test
+    public void unchangedFileGivesEmptyDelta() {
+        final SRGDelta delta = SRGDelta.between("base", SRGDelta.Fingerprint.of(BASE, ""), BASE);
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void removedOrReassignedClassesCannotBeApplied() {
+        final SRGDatabase base = SRGDatabase.parse(BASE, STATICS, CONSTRUCTORS);
+        final SRGDelta removed = SRGDelta.between("base", SRGDelta.Fingerprint.of(BASE, ""), BASE.subList(0, 9));
+        assertEquals(List.of("net/minecraft/Gamma"), removed.removedClasses());
+        assertFalse(removed.canApplyTo(base));
+
+        final List<String> reassigned = List.of(
+            "a net/minecraft/Alpha",
+            "\ta field_1001_a",
+            "\tb (Lc;)V func_1002_b",
+            "\tc (Ld;)Lb; func_1003_c",
+            "\td ()V func_1004_d",
+            "b net/minecraft/Beta",
+            "\ta field_2001_a",
+            "\tb (I)Lb; func_2002_b",
+            "\tc ()V toString",
+            "f net/minecraft/Gamma", // Was c
+            "\tA RED",
+            "\tB GREEN",
+            "c net/minecraft/Zeta"
+        );
+        assertFalse(SRGDelta.between("base", SRGDelta.Fingerprint.of(BASE, ""), reassigned).canApplyTo(base));
+    }
+
+    @Test
+    public void writtenDeltaAndFingerprintAreReadBack() {
+        final SRGDelta.Fingerprint fingerprint = SRGDelta.Fingerprint.of(BASE, "statics");
+        assertEquals(fingerprint, SRGDelta.Fingerprint.read(fingerprint.write()));
+
+        final SRGDelta delta = SRGDelta.between("base", fingerprint, NEXT);
+        assertEquals(delta, SRGDelta.read(delta.write()));
+    }
+}
@@ -0,0 +1,63 @@
+package tk.sciwhiz12.cartographer.srg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SRGIDIndexTest {
+    private static final List<String> TSRG = List.of(
+        "a net/minecraft/Alpha",
+        "\ta field_1001_a",
+        "\tb ()V func_1002_b",
+        "\tc ()V func_1001_c", // Shares its ID with the field, which is kept
+        "b net/minecraft/Beta",
+        "\ta (I)V func_2002_a"
+    );
+    private static final List<String> CONSTRUCTORS = List.of("3001 net/minecraft/Beta (J)V");
+
+    @Test
+    public void denseIndexFindsEveryEntry() {
+        final SRGIDIndex index = SRGDatabase.parse(TSRG, List.of("func_2002_a"), CONSTRUCTORS).idIndex();
+        assertEntries(index);
+        assertEquals(3001, index.maxID());
+    }
+
+    @Test
+    public void hugeIDMakesTheIndexSparse() {
+        final List<String> tsrg = new ArrayList<>(TSRG);
+        tsrg.add("\tb field_2147483646_b");
+        final SRGIDIndex index = SRGDatabase.parse(tsrg, List.of("func_2002_a", "func_2147483647_c"), CONSTRUCTORS)
+            .idIndex();
+        assertTrue(index.toString().contains("sparse=true"));
+        assertEntries(index);
+        assertEquals(2147483646, index.maxID());
+        assertEquals(SRGIDIndex.Kind.FIELD, index.kind(2147483646));
+        assertEquals("net/minecraft/Beta", index.getParentClass(2147483646).srgName());
+        assertArrayEquals(new int[]{1001, 1002, 2002, 3001, 2147483646}, index.ids());
+    }
+
+    private static void assertEntries(SRGIDIndex index) {
+        assertEquals(SRGIDIndex.Kind.FIELD, index.kind(1001));
+        assertEquals("field_1001_a", index.getField(1001).srgName());
+        assertNull(index.getNumberedMethod(1001));
+        assertEquals("func_1002_b", index.getNumberedMethod(1002).srgName());
+        assertFalse(index.isStatic(1002));
+        assertTrue(index.isStatic(2002));
+        assertEquals("net/minecraft/Beta", index.getParentClass(2002).srgName());
+        assertEquals("(J)V", index.getConstructor(3001).methodSignature());
+        for (int id : new int[]{-1, 0, 1000, 1003, 2001, 3000, 3002, Integer.MAX_VALUE}) {
+            assertFalse(index.contains(id));
+            assertEquals(SRGIDIndex.Kind.NONE, index.kind(id));
+            assertNull(index.get(id));
+            assertNull(index.getParentClass(id));
+            assertFalse(index.isStatic(id));
+        }
+    }
+}